@@ -1,41 +1,71 @@
 package it.pgp.xfiles;
 
-import android.widget.Checkable;
-
 import java.io.Serializable;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import it.pgp.xfiles.comparators.FilenameSortKey;
 import it.pgp.xfiles.roothelperclient.resps.ls_resp;
 
 /**
  * Created by pgp on 26/09/16
+ *
+ * Attributes are kept in primitive fields, and the extension and the filename sort key are computed once,
+ * at listing time, since listings may have hundreds of thousands of entries, each compared many times when sorting
  */
 
-public class BrowserItem implements Serializable, Checkable, Comparable<BrowserItem> {
-    public Boolean isDirectory;
-    public Boolean isLink;
+public class BrowserItem implements Serializable, Comparable<BrowserItem> {
+    public boolean isDirectory;
+    public boolean isLink;
     protected String filename;
-    public Long size;
-    public Date date;
-    private boolean checked = false;
+    public long size;
+    public long mtime; // modification time, epoch millis
+    private String ext; // interned, see internExt
+    private transient byte[] sortKey; // see FilenameSortKey
+    private transient String lowerCaseFilename; // lazily computed, see foldCase
+    private transient String sizeText, dateText; // lazily computed on first display, rows are bound many times while scrolling
+    private transient long totalSize = -1; // recursive size of directories, -1 if not computed, see FolderSizeEngine and ArchiveIndex
+
+    // few distinct extensions are shared by most entries, bounded against pathological listings
+    private static final int MAX_INTERNED_EXTS = 4096;
+    private static final Map<String,String> internedExts = new ConcurrentHashMap<>();
+
+    private static String internExt(String ext) {
+        String e = internedExts.get(ext);
+        if (e != null) return e;
+        if (internedExts.size() >= MAX_INTERNED_EXTS) return ext;
+        e = internedExts.putIfAbsent(ext,ext);
+        return e != null ? e : ext;
+    }
+
+    private static String computeExt(String filename) {
+        int i = filename.lastIndexOf('.');
+        return (i > 0) ? internExt(filename.substring(i+1)) : "";
+    }
 
-    public BrowserItem(String filename, long size, Date date, Boolean isDirectory, Boolean isLink) {
+    public BrowserItem(String filename, long size, long mtime, boolean isDirectory, boolean isLink) {
         this.filename = filename;
         this.size = size;
-        this.date = date;
+        this.mtime = mtime;
         this.isDirectory = isDirectory;
         this.isLink = isLink;
+        initDerived();
+    }
+
+    public BrowserItem(String filename, long size, Date date, boolean isDirectory, boolean isLink) {
+        this(filename,size,date.getTime(),isDirectory,isLink);
     }
 
     // build from roothelper ls response
     public BrowserItem(ls_resp resp) {
         filename = new String(resp.filename); // new String(resp.filename,"UTF-8")
         size = resp.size;
-        date = new Date(resp.date*1000);
+        mtime = resp.date*1000L;
         isDirectory = resp.permissions[0]=='d' || resp.permissions[0]=='L'; // new String(resp.permissions, "UTF-8").charAt(0) == 'd')
         isLink = resp.permissions[0]=='l' || resp.permissions[0]=='L';
+        initDerived();
     }
 
     // build item from vMap node properties
@@ -46,44 +76,88 @@ public class BrowserItem implements Serializable, Checkable, Comparable<BrowserI
         if (nodeProperties == null) {
             this.isDirectory = true;
             this.size = 0L;
-            this.date = new Date(0);
+            this.mtime = 0L;
             this.isLink = false; // assume no directory softlink in archive
-            this.checked = false;
         }
         else {
             this.size = nodeProperties.containsKey("size")?(Long)nodeProperties.get("size"):0;
-            this.date = nodeProperties.containsKey("date")?(Date)nodeProperties.get("date"):new Date(0);
+            this.mtime = nodeProperties.containsKey("date")?((Date)nodeProperties.get("date")).getTime():0L;
             this.isDirectory = nodeProperties.containsKey("isDir")?(Boolean)nodeProperties.get("isDir"):true;
             this.isLink = nodeProperties.containsKey("isLink")?(Boolean)nodeProperties.get("isLink"):false;
-            this.checked = false;
         }
+        initDerived();
+    }
+
+    // copy for listings shared by several views (e.g. cached ones), sorted in place
+    public BrowserItem(BrowserItem b) {
+        filename = b.filename;
+        size = b.size;
+        mtime = b.mtime;
+        isDirectory = b.isDirectory;
+        isLink = b.isLink;
+        ext = b.ext;
+        sortKey = b.sortKey;
+        lowerCaseFilename = b.lowerCaseFilename;
+        sizeText = b.sizeText;
+        dateText = b.dateText;
+        totalSize = b.totalSize;
+    }
+
+    private void initDerived() {
+        ext = computeExt(filename);
+        sortKey = FilenameSortKey.compute(filename);
+    }
+
+    public byte[] getSortKey() {
+        if (sortKey == null) sortKey = FilenameSortKey.compute(filename); // after deserialization
+        return sortKey;
     }
 
     public String getFileExt() {
-        String extension = "";
-        int i = filename.lastIndexOf('.');
-        if (i > 0) extension = filename.substring(i+1);
-        return extension;
+        return ext;
     }
 
-    public boolean hasExt() {
-        int i = filename.lastIndexOf('.');
-        return (i>0);
+    /**
+     * Char-by-char lowercase mapping, unlike {@link String#toLowerCase()} it preserves length and positions,
+     * so that a substring match on the original strings is also a match on the folded ones
+     * (required by the quick-find trigram index, see {@link it.pgp.xfiles.adapters.QuickFindFilter})
+     */
+    public static String foldCase(String s) {
+        char[] c = s.toCharArray();
+        for (int i=0;i<c.length;i++) c[i] = Character.toLowerCase(c[i]);
+        return new String(c);
     }
 
-    @Override
-    public boolean isChecked() {
-        return checked;
+    public String getLowerCaseFilename() {
+        if (lowerCaseFilename == null) lowerCaseFilename = foldCase(filename);
+        return lowerCaseFilename;
     }
 
-    @Override
-    public void setChecked(boolean checked) {
-        this.checked = checked;
+    /**
+     * @return the recursive size for directories, if computed, else the size attribute
+     */
+    public long getEffectiveSize() {
+        return (isDirectory && totalSize >= 0) ? totalSize : size;
     }
 
-    @Override
-    public void toggle() {
-        checked = !checked;
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+        sizeText = null;
+    }
+
+    public String getSizeText() {
+        if (sizeText == null) sizeText = String.valueOf(getEffectiveSize());
+        return sizeText;
+    }
+
+    public String getDateText() {
+        if (dateText == null) dateText = new Date(mtime).toString(); // TODO DateFormat
+        return dateText;
+    }
+
+    public boolean hasExt() {
+        int i = filename.lastIndexOf('.');
+        return (i>0);
     }
 
     @Override
@@ -93,7 +167,7 @@ public class BrowserItem implements Serializable, Checkable, Comparable<BrowserI
 
     @Override
     public String toString() {
-        return filename+"\t"+size+"\t"+date+"\t"+isDirectory+"\t"+isLink;
+        return filename+"\t"+size+"\t"+new Date(mtime)+"\t"+isDirectory+"\t"+isLink;
     }
 
     public String getFilename() {
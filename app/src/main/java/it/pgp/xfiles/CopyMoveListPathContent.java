@@ -4,7 +4,6 @@ import android.support.annotation.NonNull;
 
 import java.io.Serializable;
 import java.util.AbstractMap;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -28,12 +27,7 @@ public class CopyMoveListPathContent implements Serializable,Iterable<String> {
     public CopyMoveListPathContent(BrowserAdapter ba, CopyMoveMode copyOrMove, BasePathContent parentDir) {
         this.copyOrMove = copyOrMove;
         this.parentDir = parentDir;
-        this.files = new ArrayList<>();
-
-        for(int i=0; i<ba.getCount(); i++) {
-            BrowserItem b = ba.getItem(i);
-            if (b != null && b.isChecked()) this.files.add(b);
-        }
+        this.files = ba.getSelectedItems();
     }
 
     // single-file
@@ -104,4 +98,19 @@ public class CopyMoveListPathContent implements Serializable,Iterable<String> {
             }
         };
     }
+
+    // lazy iterable of full paths the items would have if they were in the given directory
+    public Iterable<String> getPathsIn(String dir) {
+        return () -> new Iterator<String>() {
+            final Iterator<BrowserItem> i = files.iterator();
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+            @Override
+            public String next() {
+                return dir + "/" + i.next().filename;
+            }
+        };
+    }
 }
@@ -83,10 +83,12 @@ import it.pgp.xfiles.roothelperclient.RootHelperClientUsingPathContent;
 import it.pgp.xfiles.service.BaseBackgroundService;
 import it.pgp.xfiles.service.HTTPDownloadService;
 import it.pgp.xfiles.service.CopyMoveService;
+import it.pgp.xfiles.service.DeleteService;
 import it.pgp.xfiles.service.NonInteractiveSftpService;
 import it.pgp.xfiles.service.NonInteractiveSmbService;
 import it.pgp.xfiles.service.NonInteractiveXFilesRemoteTransferService;
 import it.pgp.xfiles.service.params.CopyMoveParams;
+import it.pgp.xfiles.service.params.DeleteParams;
 import it.pgp.xfiles.service.params.DownloadParams;
 import it.pgp.xfiles.service.visualization.ProgressIndicator;
 import it.pgp.xfiles.sftpclient.SFTPProviderUsingPathContent;
@@ -94,11 +96,14 @@ import it.pgp.xfiles.sftpclient.SftpRetryLsListener;
 import it.pgp.xfiles.sftpclient.VaultActivity;
 import it.pgp.xfiles.smbclient.SmbProviderUsingPathContent;
 import it.pgp.xfiles.smbclient.SmbVaultActivity;
+import it.pgp.xfiles.utils.AsyncFileOperationHelperUsingPathContent;
 import it.pgp.xfiles.utils.ContentProviderUtils;
 import it.pgp.xfiles.utils.DirCommanderCUsingBrowserItemsAndPathContent;
-import it.pgp.xfiles.utils.FileOperationHelperUsingPathContent;
+import it.pgp.xfiles.utils.FileOpFuture;
+import it.pgp.xfiles.utils.StampedLruCache;
 import it.pgp.xfiles.utils.XFilesUtilsUsingPathContent;
 import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
+import it.pgp.xfiles.utils.dircontent.ListingPrefetcher;
 import it.pgp.xfiles.utils.pathcontent.ArchivePathContent;
 import it.pgp.xfiles.utils.pathcontent.BasePathContent;
 import it.pgp.xfiles.utils.pathcontent.LocalPathContent;
@@ -135,15 +140,80 @@ public class MainActivity extends EffectActivity {
 
     public static XFilesUtilsUsingPathContent xFilesUtils;
     private static RootHelperClientUsingPathContent rootHelperClient;
+    private static FileOpFuture<RootHelperClientUsingPathContent> rootHelperStartup; // pre-warm started in onCreate
 
-    public static RootHelperClientUsingPathContent getRootHelperClient(Context... context) {
+    // waits for the pre-warm started in onCreate, if any
+    private static synchronized void awaitRootHelperStartup() {
+        if (rootHelperStartup == null) return;
+        try {
+            rootHelperClient = rootHelperStartup.get();
+        }
+        catch (Exception e) {
+            Log.e("RH","Roothelper background start failed",e);
+        }
+        rootHelperStartup = null;
+    }
+
+    public static synchronized RootHelperClientUsingPathContent getRootHelperClient(Context... context) {
+        awaitRootHelperStartup();
         if (rootHelperClient == null) {
             rootHelperClient = RootHandler.startAndGetRH(context);
         }
         return rootHelperClient;
     }
 
+    /**
+     * Starts the roothelper off the UI thread, so that activity creation (and first listing, done
+     * with the Java helper by default) is not gated on process spawn and su grant latency;
+     * {@link #getRootHelperClient} waits for this start instead of spawning another instance
+     */
+    private void startRootHelperInBackground() {
+        FileOpFuture<RootHelperClientUsingPathContent> f;
+        synchronized (MainActivity.class) {
+            if (rootHelperClient != null || rootHelperStartup != null) return;
+            f = new FileOpFuture<>(RootHandler::startAndGetRH);
+            rootHelperStartup = f;
+        }
+        Thread t = new Thread(f,"RHStartup");
+        t.setDaemon(true);
+        t.start();
+        f.then((rh,error) -> {
+            if (mainActivity == null) return; // destroyed meanwhile
+            if (rh != null) {
+                if (RootHandler.isRootAvailableAndGranted) {
+                    Toast.makeText(mainActivityContext, "Started roothelper in root mode", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(mainActivityContext, "Root privileges not available, started roothelper in normal mode", Toast.LENGTH_SHORT).show();
+                }
+            }
+            else {
+                Toast.makeText(mainActivityContext, "Unable to start roothelper", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
     public static void killRHWrapper() {
+        // still starting: killed once started, without blocking the caller (e.g. onDestroy) on the startup
+        final FileOpFuture<RootHelperClientUsingPathContent> pending;
+        synchronized (MainActivity.class) {
+            pending = (rootHelperStartup != null && !rootHelperStartup.isDone()) ? rootHelperStartup : null;
+            if (pending != null) rootHelperStartup = null;
+        }
+        if (pending != null) {
+            Thread t = new Thread(() -> {
+                try {
+                    pending.get().killServer();
+                }
+                catch (Exception e) {
+                    Log.e("RH","Unable to kill roothelper server after background start",e);
+                }
+            },"RHStartupKill");
+            t.setDaemon(true);
+            t.start();
+            return;
+        }
+
+        awaitRootHelperStartup();
         try {
             rootHelperClient.killServer();
             rootHelperClient = null;
@@ -159,7 +229,13 @@ public class MainActivity extends EffectActivity {
     public static final RemoteClientManager rootHelperRemoteClientManager = new RemoteClientManager();
     public static boolean usingRootHelperForLocal = false;
 
-    public static FileOperationHelperUsingPathContent currentHelper;
+    public static AsyncFileOperationHelperUsingPathContent currentHelper;
+
+    // on successful listing; listings done by the prefetcher must not change the helper of the displayed directory
+    public static void setCurrentHelperOnListing(AsyncFileOperationHelperUsingPathContent helper) {
+        if (ListingPrefetcher.isPrefetching() || DirCommanderCUsingBrowserItemsAndPathContent.captureListingHelper(helper)) return;
+        currentHelper = helper;
+    }
 
     public BrowserAdapter getCurrentBrowserAdapter() {
         return browserPagerAdapter.browserAdapters[browserPager.getCurrentItem()];
@@ -219,7 +295,7 @@ public class MainActivity extends EffectActivity {
 
             if (browserPagerAdapter.multiSelectModes[browserPager.getCurrentItem()]) {
                 // if in multi select mode, simply select item
-                ba.toggleSelectOne(browserItem);
+                ba.toggleSelectOne(position);
                 return;
             }
 //            String currentFile = getCurrentDirCommander().getCurrentDirectoryPathname() + "/" + browserItem.filename;
@@ -285,16 +361,11 @@ public class MainActivity extends EffectActivity {
         bld.setIcon(R.drawable.xf_recycle_bin);
         bld.setNegativeButton("No", (dialog, which) -> {/*no action*/});
         bld.setPositiveButton("Yes", (dialog, which) -> {
-            try {
-                int posToRestore = browserPagerAdapter.mainBrowserViews[browserPager.getCurrentItem()].getFirstVisiblePosition();
-
-                currentHelper.deleteFilesOrDirectories(selection);
-                Toast.makeText(MainActivity.this,selection.size()+" files deleted",Toast.LENGTH_SHORT).show();
-                browserPagerAdapter.showDirContent(getCurrentDirCommander().refresh(),browserPager.getCurrentItem(),posToRestore);
-            } catch (IOException e) {
-                e.printStackTrace();
-                Toast.makeText(MainActivity.this,"Unable to delete some files",Toast.LENGTH_SHORT).show();
-            }
+            // deletion runs in background, dir content is refreshed by DeleteTask on completion
+            Intent startIntent = new Intent(MainActivity.this,DeleteService.class);
+            startIntent.setAction(BaseBackgroundService.START_ACTION);
+            startIntent.putExtra("params",new DeleteParams(selection));
+            startService(startIntent);
         });
         AlertDialog alertDialog = bld.create();
         alertDialog.show();
@@ -527,28 +598,28 @@ public class MainActivity extends EffectActivity {
             // sorting
             // TODO need to add directory priority switch some way (used priority on as default)
             case R.id.sortByFilename:
-                browserPagerAdapter.showSortedDirContent(getCurrentDirCommander().refresh(), ComparatorField.FILENAME, false,browserPager.getCurrentItem());
+                browserPagerAdapter.sortDirContent(browserPager.getCurrentItem(), ComparatorField.FILENAME, false);
                 return true;
             case R.id.sortByFilenameDesc:
-                browserPagerAdapter.showSortedDirContent(getCurrentDirCommander().refresh(), ComparatorField.FILENAME, true,browserPager.getCurrentItem());
+                browserPagerAdapter.sortDirContent(browserPager.getCurrentItem(), ComparatorField.FILENAME, true);
                 return true;
             case R.id.sortByDate:
-                browserPagerAdapter.showSortedDirContent(getCurrentDirCommander().refresh(), ComparatorField.DATE, false,browserPager.getCurrentItem());
+                browserPagerAdapter.sortDirContent(browserPager.getCurrentItem(), ComparatorField.DATE, false);
                 return true;
             case R.id.sortByDateDesc:
-                browserPagerAdapter.showSortedDirContent(getCurrentDirCommander().refresh(), ComparatorField.DATE, true,browserPager.getCurrentItem());
+                browserPagerAdapter.sortDirContent(browserPager.getCurrentItem(), ComparatorField.DATE, true);
                 return true;
             case R.id.sortBySize:
-                browserPagerAdapter.showSortedDirContent(getCurrentDirCommander().refresh(), ComparatorField.SIZE, false,browserPager.getCurrentItem());
+                browserPagerAdapter.sortDirContent(browserPager.getCurrentItem(), ComparatorField.SIZE, false);
                 return true;
             case R.id.sortBySizeDesc:
-                browserPagerAdapter.showSortedDirContent(getCurrentDirCommander().refresh(), ComparatorField.SIZE, true,browserPager.getCurrentItem());
+                browserPagerAdapter.sortDirContent(browserPager.getCurrentItem(), ComparatorField.SIZE, true);
                 return true;
             case R.id.sortByType:
-                browserPagerAdapter.showSortedDirContent(getCurrentDirCommander().refresh(), ComparatorField.TYPE, false,browserPager.getCurrentItem());
+                browserPagerAdapter.sortDirContent(browserPager.getCurrentItem(), ComparatorField.TYPE, false);
                 return true;
             case R.id.sortByTypeDesc:
-                browserPagerAdapter.showSortedDirContent(getCurrentDirCommander().refresh(), ComparatorField.TYPE, true,browserPager.getCurrentItem());
+                browserPagerAdapter.sortDirContent(browserPager.getCurrentItem(), ComparatorField.TYPE, true);
                 return true;
 
             // browser view
@@ -828,18 +899,7 @@ public class MainActivity extends EffectActivity {
         credsFavsButton.setOnClickListener(this::openContextMenu);
         registerForContextMenu(chooseBrowserViewButton);
 
-        rootHelperClient = RootHandler.startAndGetRH();
-
-        if (rootHelperClient != null) {
-            if (RootHandler.isRootAvailableAndGranted) {
-                Toast.makeText(mainActivityContext, "Started roothelper in root mode", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(mainActivityContext, "Root privileges not available, started roothelper in normal mode", Toast.LENGTH_SHORT).show();
-            }
-        }
-        else {
-            Toast.makeText(mainActivityContext, "Unable to start roothelper", Toast.LENGTH_SHORT).show();
-        }
+        startRootHelperInBackground();
 
         browserPagerAdapter = new BrowserPagerAdapter(this,this);
 
@@ -917,13 +977,14 @@ public class MainActivity extends EffectActivity {
         bld.setPositiveButton("Yes", (dialog, which) -> {
             // disabled, better user experience, to be tested
             // browserPagerAdapter.createStandardCommanders();
+            DirCommanderCUsingBrowserItemsAndPathContent.clearListingCache(); // listings may differ between helpers
             if (isRootHelperUsed) { // switch to normal dircommander
                 currentHelper = xFilesUtils;
                 usingRootHelperForLocal = false;
                 fileOperationHelperSwitcher.setImageResource(R.drawable.xfiles_root_off);
             }
             else { // switch to roothelper-based dircommander
-                currentHelper = rootHelperClient;
+                currentHelper = getRootHelperClient();
                 usingRootHelperForLocal = true;
                 fileOperationHelperSwitcher.setImageResource(R.drawable.xfiles_root_on);
             }
@@ -1173,7 +1234,7 @@ public class MainActivity extends EffectActivity {
                     try {
                         currentHelper.copyMoveFilesToDirectory(copyMoveList,destPath);
                         copyMoveList = null;
-                        browserPagerAdapter.showDirContent(getCurrentDirCommander().refresh(),browserPager.getCurrentItem());
+                        browserPagerAdapter.refreshDirContent(browserPager.getCurrentItem());
                         Toast.makeText(this,"Remote-to-remote move completed",Toast.LENGTH_SHORT).show();
                     }
                     catch (IOException e) {
@@ -1265,32 +1326,56 @@ public class MainActivity extends EffectActivity {
         goDir(parentFile);
     }
 
+    public interface GoDirListener {
+        void onGoDir(FileOpsErrorCodes result);
+    }
+
+    public void goDir(Object dirOrDirection, String... targetFilenameToHighlight) {
+        goDir(dirOrDirection,null,targetFilenameToHighlight);
+    }
+
     /**
+     * Navigation is asynchronous (see {@link DirCommanderCUsingBrowserItemsAndPathContent#navigate}),
+     * a loading placeholder is shown if listing takes long
      * @param dirOrDirection Target path to be loaded, or direction as boolean (back or ahead)
+     * @param listener Optional, notified of the outcome on the UI thread, unless the navigation is superseded by a newer one
      * @param targetFilenameToHighlight Target filename to be highlighted and centered in the listview (in case of Locate command from {@link FindActivity})
      */
-    public FileOpsErrorCodes goDir(Object dirOrDirection, String... targetFilenameToHighlight) {
-        GenericDirWithContent dwc;
-        int prevPos = getCurrentMainBrowserView().getFirstVisiblePosition();
+    public void goDir(Object dirOrDirection, GoDirListener listener, String... targetFilenameToHighlight) {
+        DirCommanderCUsingBrowserItemsAndPathContent dc = getCurrentDirCommander();
+        DirCommanderCUsingBrowserItemsAndPathContent.Navigation n;
         if (dirOrDirection instanceof Boolean) {
             Boolean b = (Boolean)dirOrDirection;
-            if (b) dwc = getCurrentDirCommander().goBack(prevPos);
-            else dwc = getCurrentDirCommander().goAhead(prevPos);
+            if (b) n = dc.prepareGoBack();
+            else n = dc.prepareGoAhead();
         }
         else if (dirOrDirection instanceof BasePathContent) {
-            dwc = getCurrentDirCommander().setDir((BasePathContent) dirOrDirection, prevPos);
+            n = dc.prepareSetDir((BasePathContent) dirOrDirection);
         }
         else {
             Toast.makeText(this,"Invalid object type for dir browsing",Toast.LENGTH_SHORT).show();
-            return FileOpsErrorCodes.ILLEGAL_ARGUMENT;
+            if (listener != null) listener.onGoDir(FileOpsErrorCodes.ILLEGAL_ARGUMENT);
+            return;
         }
 
+        final int position = browserPager.getCurrentItem();
+        int prevPos = getCurrentMainBrowserView().getFirstVisiblePosition();
+        browserPagerAdapter.showLoading(position,n.target);
+        dc.navigate(n,prevPos,dwc -> {
+            browserPagerAdapter.hideLoading(position);
+            FileOpsErrorCodes ret = dwc == null ? FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS : // discarded, stale
+                    onDirListed(dwc,n.target,position,targetFilenameToHighlight);
+            if (listener != null) listener.onGoDir(ret);
+        });
+    }
+
+    private FileOpsErrorCodes onDirListed(GenericDirWithContent dwc, BasePathContent target, int position, String... targetFilenameToHighlight) {
         // check for errors here
         if (dwc.errorCode != null) {
             if (dwc.errorCode == FileOpsErrorCodes.NULL_OR_WRONG_PASSWORD) {
                 AskPasswordDialogOnListing askPasswordDialogOnListing = new AskPasswordDialogOnListing(
                         MainActivity.this,
-                        (BasePathContent) dirOrDirection // tested, no classCastException on go back/ahead into an archive
+                        target // tested, no classCastException on go back/ahead into an archive
                 );
                 askPasswordDialogOnListing.show();
                 return dwc.errorCode;
@@ -1301,10 +1386,17 @@ public class MainActivity extends EffectActivity {
             return dwc.errorCode;
         }
 
-        browserPagerAdapter.showDirContent(dwc,browserPager.getCurrentItem(),targetFilenameToHighlight);
+        browserPagerAdapter.showDirContent(dwc,position,targetFilenameToHighlight);
         return FileOpsErrorCodes.OK;
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        StampedLruCache.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_MODERATE) DirCommanderCUsingBrowserItemsAndPathContent.clearListingCache();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -4,26 +4,42 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import it.pgp.xfiles.BrowserItem;
 import it.pgp.xfiles.MainActivity;
 import it.pgp.xfiles.R;
+import it.pgp.xfiles.SortingItem;
+import it.pgp.xfiles.adapters.continuousselection.ContSelTarget;
 import it.pgp.xfiles.enums.ArchiveType;
+import it.pgp.xfiles.utils.dircontent.ListingColumns;
 import it.pgp.xfiles.utils.pathcontent.BasePathContent;
 
 /**
  * Created by pgp on 26/09/16
  */
 
-public class BrowserAdapter extends ArrayAdapter<BrowserItem> {
+public class BrowserAdapter extends ArrayAdapter<BrowserItem> implements ContSelTarget {
 
     public static Bitmap dirIV,fileIV,linkIV;
     public static Map<String,Bitmap> archiveIcons;
@@ -48,25 +64,45 @@ public class BrowserAdapter extends ArrayAdapter<BrowserItem> {
         archiveIcons.put(ArchiveType.TAR.getValue(),BitmapFactory.decodeResource(context.getResources(), R.drawable.xfiles_archive_tar));
     }
 
+    // composed icons, built once: base icon by extension (see getFileExt, interned) and link overlay by base icon
+    // accessed from the UI thread only
+    private static final Map<String,Bitmap> iconsByExt = new HashMap<>();
+    private static final Map<Bitmap,Bitmap> linkOverlays = new IdentityHashMap<>();
+
     public static Bitmap getBitmapByExtension(BrowserItem item) {
         Bitmap target;
         if (item.isDirectory)
             target = dirIV;
         else {
-            String ext = item.getFileExt().toLowerCase();
-            if (ArchiveType.formats.contains(ext)) target = archiveIcons.get(ext);
-            else target = fileIV;
+            String ext = item.getFileExt();
+            target = iconsByExt.get(ext);
+            if (target == null) {
+                String lowerCaseExt = ext.toLowerCase();
+                target = ArchiveType.formats.contains(lowerCaseExt) ? archiveIcons.get(lowerCaseExt) : fileIV;
+                iconsByExt.put(ext,target);
+            }
+        }
+        if(item.isLink) {
+            Bitmap base = target;
+            target = linkOverlays.get(base);
+            if (target == null) {
+                target = overlay(base,linkIV);
+                linkOverlays.put(base,target);
+            }
         }
-        if(item.isLink)
-            target = overlay(target,linkIV);
 
         return target;
     }
 
+    public static final int SELECTED_COLOR = 0x9934B5E4;
+
     protected LayoutInflater inflater;
     protected int containerLayout; // to be assigned in subclasses constructors
     public List<BrowserItem> objects,currentObjects;
     // "objects" (full objects) as reference list, and currentObjects for quick find currently shown results
+    private int[] currentPositions; // positions in objects of currentObjects, null if not filtered
+    public final SelectionModel selection = new SelectionModel(); // by position in objects
+    private AbsListView attachedView;
 
     BrowserAdapter(Context context, List<BrowserItem> objects) {
         super(context, android.R.layout.simple_list_item_1, objects);
@@ -80,6 +116,11 @@ public class BrowserAdapter extends ArrayAdapter<BrowserItem> {
         if (archiveIcons == null) loadArchiveIcons(context);
     }
 
+    public void attach(AbsListView view) {
+        attachedView = view;
+        view.setAdapter(this);
+    }
+
     @Override
     public long getItemId(int position) {
         return position; //return position here
@@ -95,30 +136,117 @@ public class BrowserAdapter extends ArrayAdapter<BrowserItem> {
         return currentObjects.size();
     }
 
+    // adapter position -> position in objects
+    private int toObjectsPosition(int position) {
+        return currentPositions == null ? position : currentPositions[position];
+    }
+
     @Override
-    public boolean areAllItemsEnabled() {
-        for(int i=0; i<getCount() ; i++) {
-            BrowserItem b = getItem(i);
-            if (!b.isChecked()) return false;
+    public int size() {
+        return getCount();
+    }
+
+    @Override
+    public boolean isSelected(int position) {
+        return selection.isSelected(toObjectsPosition(position));
+    }
+
+    @Override
+    public void setSelected(int position, boolean selected) {
+        selection.set(toObjectsPosition(position),selected);
+    }
+
+    @Override
+    public void setRangeSelected(int from, int to, boolean selected) {
+        if (currentPositions == null) selection.setRange(from,to,selected);
+        else for (int i=from;i<to;i++) selection.set(currentPositions[i],selected);
+    }
+
+    @Override
+    public BitSet getSelection() {
+        if (currentPositions == null) return selection.get(0,getCount());
+        BitSet b = new BitSet(currentPositions.length);
+        for (int i=0;i<currentPositions.length;i++)
+            if (selection.isSelected(currentPositions[i])) b.set(i);
+        return b;
+    }
+
+    @Override
+    public void setSelection(BitSet s) {
+        if (currentPositions == null) selection.setAll(s.get(0,getCount()));
+        else for (int i=0;i<currentPositions.length;i++) selection.set(currentPositions[i],s.get(i));
+    }
+
+    protected static void bindSelection(View row, boolean selected) {
+        row.setBackgroundColor(selected ? SELECTED_COLOR : Color.TRANSPARENT);
+    }
+
+    // selection changes affect only the background of the rows, rebind only the displayed ones
+    @Override
+    public void onSelectionChanged() {
+        if (attachedView == null || attachedView.getAdapter() != this) {
+            notifyDataSetChanged();
+            return;
+        }
+        int first = attachedView.getFirstVisiblePosition();
+        for (int i=0;i<attachedView.getChildCount();i++) {
+            int position = first+i;
+            if (position < getCount()) bindSelection(attachedView.getChildAt(i),isSelected(position));
         }
-        return true;
     }
 
+    /**
+     * @return the selected entries among all the objects, by identity, to be carried over to the next adapter
+     * of the same page (see {@link #retainSelection}); to be taken before objects are sorted in place
+     */
+    public Set<BrowserItem> getSelectedItemSet() {
+        Set<BrowserItem> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i=selection.nextSelected(0); i>=0 && i<objects.size(); i=selection.nextSelected(i+1))
+            selected.add(objects.get(i));
+        return selected;
+    }
+
+    /**
+     * Carries over the selection of the adapter previously displayed in the same page,
+     * if displaying the same entries (e.g. after sorting or view mode change)
+     */
+    public void retainSelection(Set<BrowserItem> selected) {
+        if (selected == null || selected.isEmpty()) return;
+        for (int i=0;i<objects.size();i++)
+            if (selected.contains(objects.get(i))) selection.set(i,true);
+    }
+
+    @Override
+    public boolean areAllItemsEnabled() {
+        return getSelectedCount() == getCount();
+    }
+
+    // selected among the displayed items, as per quick find
     public int getSelectedCount() {
+        if (currentPositions == null) return selection.getCount();
         int selectedCount=0;
-        for(int i=0; i<getCount() ; i++) {
-            BrowserItem b = getItem(i);
-            if (b.isChecked()) selectedCount++;
-        }
+        for (int p : currentPositions)
+            if (selection.isSelected(p)) selectedCount++;
         return selectedCount;
     }
 
+    public List<BrowserItem> getSelectedItems() {
+        List<BrowserItem> selectedItems = new ArrayList<>();
+        if (currentPositions == null) {
+            for (int i=selection.nextSelected(0); i>=0 && i<objects.size(); i=selection.nextSelected(i+1))
+                selectedItems.add(objects.get(i));
+        }
+        else {
+            for (int p : currentPositions)
+                if (selection.isSelected(p)) selectedItems.add(objects.get(p));
+        }
+        return selectedItems;
+    }
+
     // remove return value when checksum directory protocol will be implemented
     public boolean ensureOnlyFilesSelection() {
-        for (BrowserItem b : objects) {
-            if (b.isChecked()) {
-                if (b.isDirectory) return false;
-            }
+        for (int i=selection.nextSelected(0); i>=0 && i<objects.size(); i=selection.nextSelected(i+1)) {
+            if (objects.get(i).isDirectory) return false;
         }
         return true;
     }
@@ -137,31 +265,24 @@ public class BrowserAdapter extends ArrayAdapter<BrowserItem> {
 
     public List<String> getSelectedItemsAsNameOnlyStrings() {
         List<String> selectedItems = new ArrayList<>();
-        for(int i=0; i<getCount() ; i++) {
-            BrowserItem b = getItem(i);
-            if (b.isChecked()) {
-                selectedItems.add(b.getFilename());
-            }
-        }
+        for (BrowserItem b : getSelectedItems())
+            selectedItems.add(b.getFilename());
         return selectedItems;
     }
 
     public List<BasePathContent> getSelectedItemsAsPathContents() {
         List<BasePathContent> selectedFiles = new ArrayList<>();
-        for(int i=0; i<getCount() ; i++) {
-            BrowserItem b = getItem(i);
-            if (b.isChecked()) {
-                BasePathContent f = MainActivity.mainActivity.getCurrentDirCommander().getCurrentDirectoryPathname().concat(b.getFilename());
-                selectedFiles.add(f);
-            }
-        }
+        BasePathContent dir = MainActivity.mainActivity.getCurrentDirCommander().getCurrentDirectoryPathname();
+        for (BrowserItem b : getSelectedItems())
+            selectedFiles.add(dir.concat(b.getFilename()));
         return selectedFiles;
     }
 
 
-    public void toggleSelectOne(BrowserItem b) {
-        b.toggle();
-        notifyDataSetChanged();
+    public void toggleSelectOne(int position) {
+        int p = toObjectsPosition(position);
+        selection.toggle(p);
+        onSelectionChanged();
     }
 
     // method used for one-click select all / deselect all switching
@@ -171,27 +292,19 @@ public class BrowserAdapter extends ArrayAdapter<BrowserItem> {
 //    }
 
     public void selectAll() {
-        for(int i=0; i<getCount() ; i++) {
-            BrowserItem b = getItem(i);
-            b.setChecked(true);
-        }
-        notifyDataSetChanged();
+        setRangeSelected(0,getCount(),true);
+        onSelectionChanged();
     }
 
     public void selectNone() {
-        for(int i=0; i<getCount() ; i++) {
-            BrowserItem b = getItem(i);
-            b.setChecked(false);
-        }
-        notifyDataSetChanged();
+        setRangeSelected(0,getCount(),false);
+        onSelectionChanged();
     }
 
     public void invertSelection() {
-        for(int i=0; i<getCount() ; i++) {
-            BrowserItem b = getItem(i);
-            b.toggle();
-        }
-        notifyDataSetChanged();
+        if (currentPositions == null) selection.flipRange(0,getCount());
+        else for (int p : currentPositions) selection.toggle(p);
+        onSelectionChanged();
     }
 
     // from RAR UI
@@ -199,32 +312,119 @@ public class BrowserAdapter extends ArrayAdapter<BrowserItem> {
         for(int i=0; i<getCount() ; i++) {
             BrowserItem b = getItem(i);
             if (b.getFilename().contains(content)) {
-                b.setChecked(selectOrDeselect);
+                setSelected(i,selectOrDeselect);
             }
         }
+        onSelectionChanged();
+    }
+
+    // quick find: small listings are filtered synchronously, large ones off the UI thread, after a debounce delay
+    private static final long QUICK_FIND_DEBOUNCE_MS = 100;
+    private static final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private static final ExecutorService quickFindExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r,"QuickFind");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private QuickFindFilter quickFindFilter; // over a snapshot of objects, null if not yet needed or outdated
+    private String quickFindQuery = "";
+    private boolean quickFindIgnoreCase;
+    private int quickFindGeneration; // results of outdated queries are discarded
+    private Runnable pendingQuickFind;
+
+    private QuickFindFilter getQuickFindFilter() {
+        if (quickFindFilter == null) quickFindFilter = new QuickFindFilter(objects);
+        return quickFindFilter;
+    }
+
+    private void showFiltered(int[] positions) {
+        currentPositions = positions;
+        currentObjects = new AbstractList<BrowserItem>() {
+            @Override
+            public BrowserItem get(int index) {
+                return objects.get(positions[index]);
+            }
+
+            @Override
+            public int size() {
+                return positions.length;
+            }
+        };
+        notifyDataSetChanged();
+    }
+
+    /**
+     * To be called on quick find activation, builds in advance the name index of large listings
+     */
+    public void prepareQuickFind() {
+        if (objects.size() < QuickFindFilter.LARGE_LISTING) return;
+        quickFindExecutor.execute(getQuickFindFilter()::buildIndex);
+    }
+
+    /**
+     * To be called when objects are rearranged or replaced by a superset of them (e.g. sorting, progressive listing merges);
+     * the current results are shown at their new positions, and the filter is re-applied as in {@link #filterObjects}
+     * (off the UI thread for large listings), since new entries may match
+     * @param newPositions new positions of the previous entries of objects, by old position
+     */
+    public void onObjectsChanged(List<BrowserItem> newObjects, int[] newPositions) {
+        objects = newObjects;
+        selection.remap(newPositions);
+        quickFindFilter = null;
+        if (currentPositions == null) currentObjects = newObjects;
+        else {
+            int[] remapped = new int[currentPositions.length];
+            for (int i=0;i<remapped.length;i++) remapped[i] = newPositions[currentPositions[i]];
+            Arrays.sort(remapped);
+            showFiltered(remapped);
+        }
+        if (!quickFindQuery.isEmpty()) filterObjects(quickFindQuery,quickFindIgnoreCase);
+    }
+
+    /**
+     * Sorts objects in place (see {@link ListingColumns}), keeping the selection on the same entries
+     */
+    public void sortObjects(SortingItem... attributes) {
+        onObjectsChanged(objects,ListingColumns.sort(objects,attributes));
         notifyDataSetChanged();
     }
 
     public void filterObjects(CharSequence content, boolean ignoreCase) {
-        if (content.equals("")) {
+        final String query = content.toString();
+        quickFindQuery = query;
+        quickFindIgnoreCase = ignoreCase;
+        final int generation = ++quickFindGeneration;
+        if (pendingQuickFind != null) {
+            uiHandler.removeCallbacks(pendingQuickFind);
+            pendingQuickFind = null;
+        }
+
+        if (query.isEmpty()) {
             // no filter, revert to full list of objects
+            currentPositions = null;
             currentObjects = objects;
+            notifyDataSetChanged();
+            return;
         }
-        else {
-            currentObjects = new ArrayList<>();
-            // TODO to be replace with recursive filtering (on currentObjects)
-            if (ignoreCase) {
-                for (BrowserItem b : objects) {
-                    if (b.getFilename().toLowerCase().contains(content.toString().toLowerCase())) currentObjects.add(b);
-                }
-            }
-            else {
-                for (BrowserItem b : objects) {
-                    if (b.getFilename().contains(content)) currentObjects.add(b);
-                }
-            }
+
+        final QuickFindFilter filter = getQuickFindFilter();
+        if (objects.size() < QuickFindFilter.LARGE_LISTING) {
+            showFiltered(filter.filter(query,ignoreCase));
+            return;
         }
-        notifyDataSetChanged();
+
+        pendingQuickFind = () -> {
+            pendingQuickFind = null;
+            quickFindExecutor.execute(() -> {
+                int[] results = filter.filter(query,ignoreCase);
+                uiHandler.post(() -> {
+                    if (generation != quickFindGeneration || filter != quickFindFilter) return;
+                    showFiltered(results);
+                });
+            });
+        };
+        uiHandler.postDelayed(pendingQuickFind,QUICK_FIND_DEBOUNCE_MS);
     }
 
     /**
@@ -1,7 +1,6 @@
 package it.pgp.xfiles.adapters;
 
 import android.content.Context;
-import android.graphics.Color;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -12,6 +11,9 @@ import java.util.List;
 import it.pgp.xfiles.BrowserItem;
 import it.pgp.xfiles.MainActivity;
 import it.pgp.xfiles.R;
+import it.pgp.xfiles.enums.ProviderType;
+import it.pgp.xfiles.utils.ThumbnailLoader;
+import it.pgp.xfiles.utils.pathcontent.BasePathContent;
 
 /**
  * Created by pgp on 01/11/16
@@ -27,9 +29,19 @@ public class BrowserGridAdapter extends BrowserAdapter {
         }
     }
 
+    private final BasePathContent dir; // null if unknown
+    private final ThumbnailLoader thumbnailLoader; // null if thumbnails are not available for dir
+
     public BrowserGridAdapter(Context context, List<BrowserItem> objects) {
+        this(context, objects, null);
+    }
+
+    public BrowserGridAdapter(Context context, List<BrowserItem> objects, BasePathContent dir) {
         super(context, objects);
         containerLayout = R.layout.browser_item_grid;
+        this.dir = dir;
+        thumbnailLoader = (dir != null && dir.providerType == ProviderType.LOCAL) ?
+                ThumbnailLoader.getInstance(context) : null;
     }
 
     @Override
@@ -52,12 +64,17 @@ public class BrowserGridAdapter extends BrowserAdapter {
             imageView = viewHolder.imageView;
         }
 
-        convertView.setBackgroundColor(item.isChecked()? 0x9934B5E4: Color.TRANSPARENT);
+        bindSelection(convertView,isSelected(position));
 
         name.setText(item.getFilename());
 
 //        imageView.setImageBitmap(item.isDirectory?dirIV:fileIV);
         imageView.setImageBitmap(getBitmapByExtension(item));
+        if (thumbnailLoader != null) {
+            if (!item.isDirectory && thumbnailLoader.hasThumbnail(item.getFileExt()))
+                thumbnailLoader.load(imageView,dir.concat(item.getFilename()).dir,item.getFileExt(),item.size,item.mtime);
+            else thumbnailLoader.cancel(imageView);
+        }
         return convertView;
     }
 }
@@ -1,7 +1,6 @@
 package it.pgp.xfiles.adapters;
 
 import android.content.Context;
-import android.graphics.Color;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
@@ -59,11 +58,11 @@ public class BrowserListAdapter extends BrowserAdapter {
             imageView = viewHolder.imageView;
         }
 
-        convertView.setBackgroundColor(item.isChecked()? 0x9934B5E4: Color.TRANSPARENT);
+        bindSelection(convertView,isSelected(position));
 
         name.setText(item.getFilename());
-        size.setText(""+item.size);
-        date.setText(""+item.date); // TODO DateFormat
+        size.setText(item.getSizeText());
+        date.setText(item.getDateText());
 
 //        imageView.setImageBitmap(item.isDirectory?dirIV:fileIV);
         imageView.setImageBitmap(getBitmapByExtension(item));
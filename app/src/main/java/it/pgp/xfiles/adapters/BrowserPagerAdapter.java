@@ -2,11 +2,15 @@ package it.pgp.xfiles.adapters;
 
 import android.content.Context;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewPager;
 import android.text.Editable;
 import android.text.TextWatcher;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,8 +22,14 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import it.pgp.xfiles.BrowserItem;
 import it.pgp.xfiles.MainActivity;
 import it.pgp.xfiles.R;
 import it.pgp.xfiles.SortingItem;
@@ -28,13 +38,16 @@ import it.pgp.xfiles.adapters.continuousselection.CSCheckboxes;
 import it.pgp.xfiles.adapters.continuousselection.ContSelHandlingLayout;
 import it.pgp.xfiles.adapters.continuousselection.ContSelListener;
 import it.pgp.xfiles.comparators.AdvancedComparator;
-import it.pgp.xfiles.comparators.FilenameComparator;
 import it.pgp.xfiles.enums.BrowserViewMode;
 import it.pgp.xfiles.enums.ComparatorField;
+import it.pgp.xfiles.enums.ProviderType;
 import it.pgp.xfiles.exceptions.DirCommanderException;
 import it.pgp.xfiles.exceptions.InvalidBrowserViewModeException;
 import it.pgp.xfiles.utils.DirCommanderCUsingBrowserItemsAndPathContent;
+import it.pgp.xfiles.utils.FolderSizeEngine;
 import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
+import it.pgp.xfiles.utils.dircontent.ListingColumns;
+import it.pgp.xfiles.utils.dircontent.ProgressiveListing;
 import it.pgp.xfiles.utils.pathcontent.BasePathContent;
 import it.pgp.xfiles.utils.pathcontent.LocalPathContent;
 
@@ -78,6 +91,34 @@ public class BrowserPagerAdapter extends PagerAdapter {
     private final LinearLayout[] quickFindModeLayouts = new LinearLayout[ADAPTER_SIZE];
     /**************************/
 
+    // loading placeholder not shown for navigations completing within the delay (e.g. from listing cache), to avoid flickering
+    public static final long LOADING_PLACEHOLDER_DELAY_MS = 150;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final Runnable[] loadingPlaceholders = new Runnable[ADAPTER_SIZE];
+
+    /**
+     * Shows the target path and the refresh indicator while the page is listing it, current content stays visible meanwhile
+     */
+    public void showLoading(int position, BasePathContent target) {
+        if (loadingPlaceholders[position] != null) uiHandler.removeCallbacks(loadingPlaceholders[position]);
+        loadingPlaceholders[position] = () -> {
+            currentDirectoryTextViews[position].setText(target.toString());
+            swipeRefreshLayouts[position].setRefreshing(true);
+        };
+        uiHandler.postDelayed(loadingPlaceholders[position],LOADING_PLACEHOLDER_DELAY_MS);
+    }
+
+    public void hideLoading(int position) {
+        if (loadingPlaceholders[position] != null) {
+            uiHandler.removeCallbacks(loadingPlaceholders[position]);
+            loadingPlaceholders[position] = null;
+        }
+        swipeRefreshLayouts[position].setRefreshing(false);
+        // restored on failed navigations, set again to the new path on successful ones
+        currentDirectoryTextViews[position].setText(
+                dirCommanders[position].getCurrentDirectoryPathname().toString());
+    }
+
     public void createStandardCommanders() {
         BasePathContent path0, path1;
         path0 = dirCommanders[0]==null?
@@ -145,10 +186,7 @@ public class BrowserPagerAdapter extends PagerAdapter {
 
         swipeRefreshLayouts[position] = browserPageLayout.findViewById(R.id.activity_main_swipe_refresh_layout);
         swipeRefreshLayouts[position].setParentActivity(mainActivity);
-        swipeRefreshLayouts[position].setOnRefreshListener(() -> {
-            showDirContent(mainActivity.getCurrentDirCommander().refresh(),position);
-            swipeRefreshLayouts[position].setRefreshing(false);
-        });
+        swipeRefreshLayouts[position].setOnRefreshListener(() -> refreshDirContent(position));
 
         mainBrowserViewLayouts[position] = browserPageLayout.findViewById(R.id.mainBrowserViewLayout);
         mainBrowserViewLayoutParents[position] = browserPageLayout.findViewById(R.id.mainBrowserViewLayoutParent);
@@ -161,7 +199,9 @@ public class BrowserPagerAdapter extends PagerAdapter {
         mainBrowserViews[position].setFastScrollEnabled(true);
         currentDirectoryTextViews[position] = browserPageLayout.findViewById(R.id.currentDirectoryTextView);
 
-        showDirContent(dirCommanders[position].refresh(),position);
+        // empty until listed
+        showDirContent(new GenericDirWithContent(dirCommanders[position].getCurrentDirectoryPathname().dir,new ArrayList<>()),position);
+        refreshDirContent(position);
 
         // mainBrowserViews[position].setAdapter(browserAdapters[position]); // already called in showDirContent
         mainBrowserViews[position].setOnItemClickListener(mainActivity.listViewLevelOICL);
@@ -190,7 +230,7 @@ public class BrowserPagerAdapter extends PagerAdapter {
                 ),
                 position);
 
-        mainBrowserViews[position].setAdapter(browserAdapters[position]); // already called in showDirContent
+        browserAdapters[position].attach(mainBrowserViews[position]); // already called in showDirContent
         mainBrowserViews[position].setOnItemClickListener(mainActivity.listViewLevelOICL);
         mainActivity.registerForContextMenu(mainBrowserViews[position]);
     }
@@ -222,11 +262,44 @@ public class BrowserPagerAdapter extends PagerAdapter {
         changeMainViews(browserViewModes[position], position);
     }
 
+    /**
+     * Lists again the current directory of the page, off the UI thread (see {@link DirCommanderCUsingBrowserItemsAndPathContent#navigate}),
+     * e.g. after file operations, then shows it
+     * @param targetFilenameToHighlight as in {@link #showDirContent}
+     */
+    public void refreshDirContent(int position, Object... targetFilenameToHighlight) {
+        DirCommanderCUsingBrowserItemsAndPathContent dc = dirCommanders[position];
+        DirCommanderCUsingBrowserItemsAndPathContent.Navigation n = dc.prepareRefresh();
+        showLoading(position,n.target);
+        dc.navigate(n,mainBrowserViews[position].getFirstVisiblePosition(),cwd -> {
+            hideLoading(position);
+            if (cwd != null) showDirContent(cwd,position,targetFilenameToHighlight);
+        });
+    }
+
+    // re-sorts the last listing if still valid, lists the directory again otherwise
+    public void sortDirContent(int position, ComparatorField whichAttribute, boolean reverse) {
+        DirCommanderCUsingBrowserItemsAndPathContent dc = dirCommanders[position];
+        GenericDirWithContent listing = dc.getSortableListing();
+        if (listing != null) {
+            showSortedDirContent(listing,whichAttribute,reverse,position);
+            return;
+        }
+        DirCommanderCUsingBrowserItemsAndPathContent.Navigation n = dc.prepareRefresh();
+        showLoading(position,n.target);
+        dc.navigate(n,mainBrowserViews[position].getFirstVisiblePosition(),cwd -> {
+            hideLoading(position);
+            if (cwd != null) showSortedDirContent(cwd,whichAttribute,reverse,position);
+        });
+    }
+
     public void showDirContent(GenericDirWithContent dirWithContent,
                                int position,
-                               Object... targetFilenameToHighlight) { // with filename comparator
+                               Object... targetFilenameToHighlight) { // directories first, by filename
 
-        Collections.sort(dirWithContent.content,new FilenameComparator());
+        // taken before sorting, content may be the same list object of the previous adapter (e.g. on re-sort or view mode change)
+        Set<BrowserItem> previousSelection = browserAdapters[position] == null ? null : browserAdapters[position].getSelectedItemSet();
+        ListingColumns.sort(dirWithContent.content,ListingColumns.DIRS_FIRST_BY_NAME);
 
         currentDirectoryTextViews[position].setText(
                 dirCommanders[position].getCurrentDirectoryPathname().toString());
@@ -236,32 +309,49 @@ public class BrowserPagerAdapter extends PagerAdapter {
                 browserAdapters[position] = new BrowserListAdapter(mainActivity,dirWithContent.content);
                 break;
             case GRID:
-                browserAdapters[position] = new BrowserGridAdapter(mainActivity,dirWithContent.content);
+                browserAdapters[position] = new BrowserGridAdapter(mainActivity,dirWithContent.content,dirCommanders[position].getCurrentDirectoryPathname());
                 break;
             default:
                 throw new InvalidBrowserViewModeException();
         }
-        mainBrowserViews[position].setAdapter(browserAdapters[position]);
-        if (targetFilenameToHighlight.length>0) {
-            if (targetFilenameToHighlight[0] instanceof String) { // reposition listview with FindActivity locate
-                int locatedPos = browserAdapters[position].findPositionByFilename((String)targetFilenameToHighlight[0]);
-                if (locatedPos < 0)
-                    Toast.makeText(mainActivity, "Unable to find file position in browser adapter", Toast.LENGTH_SHORT).show();
-                else mainBrowserViews[position].setSelection(locatedPos);
-            }
-            else { // reposition listview after delete operation
-                Integer locatedPos = (Integer)targetFilenameToHighlight[0];
-                mainBrowserViews[position].setSelection(locatedPos);
-            }
+        browserAdapters[position].retainSelection(previousSelection);
+        browserAdapters[position].attach(mainBrowserViews[position]);
+
+        // filename to highlight (e.g. FindActivity locate), or position to restore (after delete, or going back)
+        Object target = targetFilenameToHighlight.length>0 ? targetFilenameToHighlight[0] : dirWithContent.listViewPosition;
+        boolean complete = dirWithContent.remaining == null;
+        if (highlight(position,target,complete)) target = null;
+        if (complete) computeFolderSizes(position,dirWithContent.content);
+        appendRemaining(dirWithContent,ListingColumns.DIRS_FIRST_BY_NAME,position,target);
+    }
+
+    /**
+     * Repositions the listview on a filename or on a position; in progressive listings, positions beyond
+     * the first entries and filenames (whose positions change as the remaining entries are merged)
+     * are left to be resolved once the listing is complete
+     * @return false if not resolved yet
+     */
+    private boolean highlight(int position, Object target, boolean complete) {
+        if (target instanceof String) {
+            if (!complete) return false;
+            int locatedPos = browserAdapters[position].findPositionByFilename((String)target);
+            if (locatedPos < 0)
+                Toast.makeText(mainActivity, "Unable to find file position in browser adapter", Toast.LENGTH_SHORT).show();
+            else mainBrowserViews[position].setSelection(locatedPos);
         }
-        else { // reposition listview when going back in dir navigation
-            mainBrowserViews[position].setSelection(dirWithContent.listViewPosition);
+        else {
+            int locatedPos = (Integer)target;
+            if (!complete && locatedPos >= browserAdapters[position].getCount()) return false;
+            mainBrowserViews[position].setSelection(locatedPos);
         }
+        return true;
     }
 
     public void showSortedDirContent(GenericDirWithContent dirWithContent, ComparatorField whichAttribute, boolean reverse, int position) {
-        Collections.sort(dirWithContent.content,
-                new AdvancedComparator(new SortingItem(whichAttribute, true, reverse)));
+        // taken before sorting, content may be the same list object of the previous adapter (e.g. on re-sort or view mode change)
+        Set<BrowserItem> previousSelection = browserAdapters[position] == null ? null : browserAdapters[position].getSelectedItemSet();
+        SortingItem[] order = {new SortingItem(whichAttribute, true, reverse)};
+        ListingColumns.sort(dirWithContent.content,order);
 
         currentDirectoryTextViews[position].setText(
                 dirCommanders[position].getCurrentDirectoryPathname().toString());
@@ -271,12 +361,129 @@ public class BrowserPagerAdapter extends PagerAdapter {
                 browserAdapters[position] = new BrowserListAdapter(mainActivity,dirWithContent.content);
                 break;
             case GRID:
-                browserAdapters[position] = new BrowserGridAdapter(mainActivity,dirWithContent.content);
+                browserAdapters[position] = new BrowserGridAdapter(mainActivity,dirWithContent.content,dirCommanders[position].getCurrentDirectoryPathname());
                 break;
             default:
                 throw new InvalidBrowserViewModeException();
         }
-        mainBrowserViews[position].setAdapter(browserAdapters[position]);
+        browserAdapters[position].retainSelection(previousSelection);
+        browserAdapters[position].attach(mainBrowserViews[position]);
+        if (dirWithContent.remaining == null) computeFolderSizes(position,dirWithContent.content);
+        appendRemaining(dirWithContent,order,position,null);
+    }
+
+    // recursive sizes of subdirectories, for local listings only, once complete
+    private void computeFolderSizes(int position, List<BrowserItem> content) {
+        BasePathContent dir = dirCommanders[position].getCurrentDirectoryPathname();
+        if (dir.providerType != ProviderType.LOCAL) return;
+        FolderSizeEngine.getInstance(mainActivity).computeSizes(dir.dir,content,() -> {
+            BrowserAdapter adapter = browserAdapters[position];
+            if (adapter != null && adapter.objects == content) adapter.notifyDataSetChanged();
+        });
+    }
+
+    private static final long MERGE_INTERVAL_MS = 250;
+
+    /**
+     * Receives the remaining entries of a progressive listing off the UI thread, where they are sorted
+     * and merged, at most every {@link #MERGE_INTERVAL_MS}, into a sorted copy of the displayed content,
+     * which is then swapped into the adapter; until the listing is complete (when the displayed content
+     * gets all the entries, and the pending highlight target is resolved) or it is no longer displayed in its page
+     */
+    private void appendRemaining(GenericDirWithContent dirWithContent,
+                                 SortingItem[] order,
+                                 int position,
+                                 Object pendingTarget) {
+        final ProgressiveListing remaining = dirWithContent.remaining;
+        if (remaining == null) return;
+        dirWithContent.remaining = null; // consumed here, content object may be displayed again (e.g. on view mode change)
+        final List<BrowserItem> content = dirWithContent.content;
+        final List<BrowserItem> first = new ArrayList<>(content); // the displayed list can be sorted in place meanwhile
+        final Comparator<BrowserItem> comparator = new AdvancedComparator(order); // same order as ListingColumns
+
+        new Thread(() -> {
+            final AtomicBoolean displayed = new AtomicBoolean(true);
+            List<BrowserItem> sorted = first;
+            List<BrowserItem> shown = content;
+            List<BrowserItem> received = new ArrayList<>();
+            long lastMerge = SystemClock.elapsedRealtime();
+            try {
+                while (!remaining.isComplete() && displayed.get()) {
+                    received.addAll(remaining.nextBatch(ProgressiveListing.BATCH_SIZE));
+                    final boolean last = remaining.isComplete();
+                    if (!last && (received.isEmpty() || SystemClock.elapsedRealtime() - lastMerge < MERGE_INTERVAL_MS)) continue;
+                    lastMerge = SystemClock.elapsedRealtime();
+
+                    ListingColumns.sort(received,order);
+                    final int[] newPositions = new int[sorted.size()];
+                    sorted = mergeSorted(sorted,received,comparator,newPositions);
+                    received = new ArrayList<>();
+                    if (last && sortsBySize(order)) { // directory sizes may have been completed with the listing (see archives)
+                        int[] resorted = ListingColumns.sort(sorted,order);
+                        for (int i=0;i<newPositions.length;i++) newPositions[i] = resorted[newPositions[i]];
+                    }
+                    final List<BrowserItem> previous = shown;
+                    final List<BrowserItem> merged = last ? sorted : new ArrayList<>(sorted);
+                    shown = merged;
+
+                    mainActivity.runOnUiThread(() -> {
+                        BrowserAdapter adapter = browserAdapters[position];
+                        if (adapter == null || adapter.objects != previous) {
+                            displayed.set(false); // navigated away, stop receiving
+                            return;
+                        }
+                        if (!last) {
+                            adapter.onObjectsChanged(merged,newPositions);
+                            adapter.notifyDataSetChanged();
+                            return;
+                        }
+                        // complete, back to the original content list, that is the one referenced by the commander
+                        content.clear();
+                        content.addAll(merged);
+                        adapter.onObjectsChanged(content,newPositions);
+                        adapter.notifyDataSetChanged();
+                        dirCommanders[position].onListingComplete(content);
+                        computeFolderSizes(position,content);
+                        if (pendingTarget != null) highlight(position,pendingTarget,true);
+                    });
+                }
+            }
+            catch (IOException e) {
+                Log.e(getClass().getName(),"Error while receiving listing, displayed content is incomplete",e);
+                mainActivity.runOnUiThread(() -> Toast.makeText(mainActivity,"Unable to list all the entries of the directory",Toast.LENGTH_SHORT).show());
+            }
+            finally {
+                remaining.close();
+            }
+        },"ProgressiveListing").start();
+    }
+
+    private static boolean sortsBySize(SortingItem[] order) {
+        for (SortingItem s : order)
+            if (s.comparatorField == ComparatorField.SIZE) return true;
+        return false;
+    }
+
+    /**
+     * Merges a sorted batch into a sorted list, into a new list
+     * @param newPositions filled with the new positions of the entries of the list
+     */
+    private static List<BrowserItem> mergeSorted(List<BrowserItem> target, List<BrowserItem> sortedBatch, Comparator<BrowserItem> comparator, int[] newPositions) {
+        List<BrowserItem> merged = new ArrayList<>(target.size()+sortedBatch.size());
+        int i=0, j=0;
+        while (i<target.size() && j<sortedBatch.size()) {
+            if (comparator.compare(target.get(i),sortedBatch.get(j)) <= 0) {
+                newPositions[i] = merged.size();
+                merged.add(target.get(i++));
+            }
+            else merged.add(sortedBatch.get(j++));
+        }
+        for (;i<target.size();i++) {
+            newPositions[i] = merged.size();
+            merged.add(target.get(i));
+        }
+        merged.addAll(sortedBatch.subList(j,sortedBatch.size()));
+        return merged;
     }
 
 //    private final LinearLayout.LayoutParams offParams =
@@ -326,8 +533,6 @@ public class BrowserPagerAdapter extends PagerAdapter {
             csCheckBoxes[position] = new CSCheckboxes();
             csListeners[position] = browserViewModes[position].buildCSListener(
                     mainBrowserViews[position],
-                    browserAdapters[position],
-                    browserAdapters[position].objects,
                     csCheckBoxes[position]
             );
 
@@ -376,7 +581,7 @@ public class BrowserPagerAdapter extends PagerAdapter {
 
                 @Override
                 public void onTextChanged(CharSequence s, int start, int before, int count) {
-                    // reload filter results on every typed character
+                    // reload filter results on every typed character (narrowing the previous ones, debounced on large listings)
                     browserAdapters[position].filterObjects(s,quickFindIgnoreCases[position].isChecked());
                 }
 
@@ -385,6 +590,7 @@ public class BrowserPagerAdapter extends PagerAdapter {
             });
 
             quickFindIgnoreCases[position] = rootLayouts[position].findViewById(R.id.quickFindIgnoreCase);
+            browserAdapters[position].prepareQuickFind();
 
             quickFindIgnoreCases[position].setOnCheckedChangeListener((buttonView, isChecked) -> browserAdapters[position].filterObjects(
                     quickFindEditTexts[position].getText(),
@@ -0,0 +1,146 @@
+package it.pgp.xfiles.adapters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import it.pgp.xfiles.BrowserItem;
+
+/**
+ * Quick-find matcher over a snapshot of a listing, to be discarded when the listing changes.
+ *
+ * When a query contains the previous one (e.g. a character has been typed), only the previous results are scanned;
+ * for listings of at least {@link #LARGE_LISTING} entries a trigram index over the case-folded filenames
+ * (see {@link BrowserItem#foldCase(String)}) is built once, and candidates for queries of at least 3 characters
+ * are taken from the intersection of the posting lists of their trigrams, then verified.
+ * Methods are synchronized, matching is meant to run off the UI thread for large listings.
+ */
+
+class QuickFindFilter {
+
+    static final int LARGE_LISTING = 5000;
+
+    private static class Postings {
+        int[] a = new int[4];
+        int n;
+
+        void add(int i) {
+            if (n > 0 && a[n-1] == i) return; // trigram repeated in the same filename
+            if (n == a.length) a = Arrays.copyOf(a,n*2);
+            a[n++] = i;
+        }
+    }
+
+    private final BrowserItem[] items;
+    private Map<Long,int[]> trigrams; // trigram -> ascending item positions, null if not (yet) built
+
+    private String lastQuery;
+    private boolean lastIgnoreCase;
+    private int[] lastResult; // ascending item positions
+
+    QuickFindFilter(List<BrowserItem> objects) {
+        items = objects.toArray(new BrowserItem[0]);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long)s.charAt(i) << 32) | ((long)s.charAt(i+1) << 16) | s.charAt(i+2);
+    }
+
+    synchronized void buildIndex() {
+        if (trigrams != null || items.length < LARGE_LISTING) return;
+        Map<Long,Postings> m = new HashMap<>();
+        for (int i=0;i<items.length;i++) {
+            String s = items[i].getLowerCaseFilename();
+            for (int j=0;j+3<=s.length();j++) {
+                long t = trigram(s,j);
+                Postings p = m.get(t);
+                if (p == null) {
+                    p = new Postings();
+                    m.put(t,p);
+                }
+                p.add(i);
+            }
+        }
+        trigrams = new HashMap<>(m.size()*4/3+1);
+        for (Map.Entry<Long,Postings> e : m.entrySet()) {
+            Postings p = e.getValue();
+            trigrams.put(e.getKey(),Arrays.copyOf(p.a,p.n));
+        }
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] r = new int[Math.min(a.length,b.length)];
+        int i=0, j=0, n=0;
+        while (i<a.length && j<b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                r[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(r,n);
+    }
+
+    // candidate positions for a folded query of at least 3 characters
+    private int[] lookup(String foldedQuery) {
+        Set<Long> distinct = new HashSet<>();
+        List<int[]> lists = new ArrayList<>();
+        for (int j=0;j+3<=foldedQuery.length();j++) {
+            long t = trigram(foldedQuery,j);
+            if (!distinct.add(t)) continue;
+            int[] p = trigrams.get(t);
+            if (p == null) return new int[0];
+            lists.add(p);
+        }
+        Collections.sort(lists,(x,y) -> Integer.compare(x.length,y.length));
+        int[] r = lists.get(0);
+        for (int k=1;k<lists.size() && r.length>0;k++)
+            r = intersect(r,lists.get(k));
+        return r;
+    }
+
+    private boolean matches(int i, String query, String foldedQuery, boolean ignoreCase) {
+        return ignoreCase ?
+                items[i].getLowerCaseFilename().contains(foldedQuery) :
+                items[i].getFilename().contains(query);
+    }
+
+    /**
+     * @return ascending positions of the matching items
+     */
+    synchronized int[] filter(String query, boolean ignoreCase) {
+        String foldedQuery = BrowserItem.foldCase(query);
+
+        int[] candidates = null; // null: all items
+        if (lastQuery != null && lastIgnoreCase == ignoreCase && query.contains(lastQuery))
+            candidates = lastResult; // narrowing
+        if (items.length >= LARGE_LISTING && query.length() >= 3) {
+            buildIndex();
+            int[] indexed = lookup(foldedQuery);
+            if (candidates == null || indexed.length < candidates.length) candidates = indexed;
+        }
+
+        int[] result = new int[candidates == null ? items.length : candidates.length];
+        int n = 0;
+        if (candidates == null) {
+            for (int i=0;i<items.length;i++)
+                if (matches(i,query,foldedQuery,ignoreCase)) result[n++] = i;
+        }
+        else {
+            for (int i : candidates)
+                if (matches(i,query,foldedQuery,ignoreCase)) result[n++] = i;
+        }
+
+        lastQuery = query;
+        lastIgnoreCase = ignoreCase;
+        lastResult = Arrays.copyOf(result,n);
+        return lastResult;
+    }
+}
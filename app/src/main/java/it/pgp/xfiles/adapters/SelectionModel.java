@@ -0,0 +1,83 @@
+package it.pgp.xfiles.adapters;
+
+import java.util.BitSet;
+
+/**
+ * Selection of the entries of a listing, by position in the full (unfiltered) listing,
+ * with count maintained incrementally and bulk operations on ranges
+ */
+
+public class SelectionModel {
+
+    private BitSet bits = new BitSet();
+    private int count;
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isSelected(int position) {
+        return bits.get(position);
+    }
+
+    public void set(int position, boolean selected) {
+        if (bits.get(position) == selected) return;
+        bits.set(position,selected);
+        count += selected ? 1 : -1;
+    }
+
+    public void toggle(int position) {
+        set(position,!bits.get(position));
+    }
+
+    // [from,to)
+    public void setRange(int from, int to, boolean selected) {
+        if (from >= to) return;
+        int before = bits.get(from,to).cardinality();
+        bits.set(from,to,selected);
+        count += (selected ? to-from : 0) - before;
+    }
+
+    // [from,to)
+    public void flipRange(int from, int to) {
+        if (from >= to) return;
+        int before = bits.get(from,to).cardinality();
+        bits.flip(from,to);
+        count += (to-from) - 2*before;
+    }
+
+    public void clear() {
+        bits.clear();
+        count = 0;
+    }
+
+    /**
+     * @return first selected position greater or equal than from, -1 if none
+     */
+    public int nextSelected(int from) {
+        return bits.nextSetBit(from);
+    }
+
+    // [from,to), positions relative to from
+    public BitSet get(int from, int to) {
+        return bits.get(from,to);
+    }
+
+    public void setAll(BitSet selection) {
+        bits = (BitSet) selection.clone();
+        count = bits.cardinality();
+    }
+
+    /**
+     * To be called after entries have been moved in the listing (e.g. merged with new ones)
+     * @param newPositions new position of each entry, by old position
+     */
+    public void remap(int[] newPositions) {
+        if (count == 0) return;
+        BitSet remapped = new BitSet();
+        for (int i=bits.nextSetBit(0); i>=0 && i<newPositions.length; i=bits.nextSetBit(i+1))
+            remapped.set(newPositions[i]);
+        bits = remapped;
+        count = remapped.cardinality();
+    }
+}
@@ -5,28 +5,20 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnTouchListener;
 import android.widget.AbsListView;
-import android.widget.ArrayAdapter;
-import android.widget.Checkable;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.BitSet;
 
 public abstract class ContSelListener implements OnTouchListener {
 
     protected final AbsListView lv;
-    protected final ArrayAdapter adapter;
-    protected final List<? extends Checkable> objects; // adapter objects
     protected final CSCheckboxes csCheckboxes;
 
     public boolean active = false;
 
     protected boolean atLeastOneMoveAfterDown = false;
 
-    public ContSelListener(AbsListView lv, ArrayAdapter adapter, List<? extends Checkable> objects, CSCheckboxes csCheckboxes) {
+    public ContSelListener(AbsListView lv, CSCheckboxes csCheckboxes) {
         this.lv = lv;
-        this.adapter = adapter;
-        this.objects = objects;
         this.csCheckboxes = csCheckboxes;
     }
 
@@ -34,18 +26,22 @@ public abstract class ContSelListener implements OnTouchListener {
         return lv;
     }
 
+    // looked up on each use, the adapter is replaced on directory change
+    protected ContSelTarget getTarget() {
+        return (ContSelTarget) lv.getAdapter();
+    }
+
     protected boolean destCheckStatus = true;
-    protected final Set<Integer> selectionBeforeStart = new HashSet<>();
+    protected final BitSet selectionBeforeStart = new BitSet(); // positions already in destCheckStatus at start
     protected void fillSelectionBeforeStart() {
         selectionBeforeStart.clear();
         if (!getStickySel()) {
             setAllSelection(getInvSel());
         }
         else {
-            for (int ii=0;ii<objects.size();ii++) {
-                if (objects.get(ii).isChecked() == destCheckStatus)
-                    selectionBeforeStart.add(ii);
-            }
+            ContSelTarget target = getTarget();
+            selectionBeforeStart.or(target.getSelection());
+            if (!destCheckStatus) selectionBeforeStart.flip(0,target.size());
         }
     }
 
@@ -55,7 +51,7 @@ public abstract class ContSelListener implements OnTouchListener {
             Log.e("MOTION", "Repeated ACTION_DOWN events (multitouch?), ignoring...");
             return;
         }
-        if (startPos < 0 || startPos >= objects.size()) return;
+        if (startPos < 0 || startPos >= getTarget().size()) return;
         active = true;
     }
 
@@ -63,14 +59,15 @@ public abstract class ContSelListener implements OnTouchListener {
     abstract void endSelectMode(int endPos);
 
     public void toggleSelectOne(int position) {
-        objects.get(position).toggle();
-        adapter.notifyDataSetChanged();
+        ContSelTarget target = getTarget();
+        target.setSelected(position,!target.isSelected(position));
+        target.onSelectionChanged();
     }
 
     public void setAllSelection(boolean checked) {
-        for (Checkable i : objects)
-            i.setChecked(checked);
-        adapter.notifyDataSetChanged();
+        ContSelTarget target = getTarget();
+        target.setRangeSelected(0,target.size(),checked);
+        target.onSelectionChanged();
     }
 
     public boolean getInvSel() {
@@ -2,11 +2,9 @@ package it.pgp.xfiles.adapters.continuousselection;
 
 import android.util.Log;
 import android.widget.AbsListView;
-import android.widget.ArrayAdapter;
-import android.widget.Checkable;
 import android.widget.GridView;
 
-import java.util.List;
+import java.util.BitSet;
 
 import it.pgp.xfiles.utils.Pair;
 
@@ -29,8 +27,8 @@ public class ContSelListenerGrid extends ContSelListener {
 
     private final Pair<Integer,Integer> startPos = new Pair<>(-1,-1);
 
-    public ContSelListenerGrid(AbsListView lv, ArrayAdapter adapter, List<? extends Checkable> objects, CSCheckboxes csCheckboxes) {
-        super(lv, adapter, objects, csCheckboxes);
+    public ContSelListenerGrid(AbsListView lv, CSCheckboxes csCheckboxes) {
+        super(lv, csCheckboxes);
     }
 
     @Override
@@ -42,20 +40,21 @@ public class ContSelListenerGrid extends ContSelListener {
         destCheckStatus = !getInvSel();
         fillSelectionBeforeStart();
 
-        objects.get(startPos).setChecked(destCheckStatus);
-        adapter.notifyDataSetChanged();
+        getTarget().setSelected(startPos,destCheckStatus);
+        getTarget().onSelectionChanged();
     }
 
     // restart from initially selected items on each action move
     private void startFromInitialSelection() {
-        for (int i=0;i<objects.size();i++)
-            if (!selectionBeforeStart.contains(i))
-                objects.get(i).setChecked(getInvSel());
+        // positions not in selectionBeforeStart get the opposite status of destCheckStatus
+        BitSet initialSelection = (BitSet) selectionBeforeStart.clone();
+        if (!destCheckStatus) initialSelection.flip(0,getTarget().size());
+        getTarget().setSelection(initialSelection);
     }
 
     @Override
     public void ongoingSelectMode(int position_) {
-        if (position_ < 0 || position_ >= objects.size() || position_ == pointToInt(p_1,colsInRow)) return;
+        if (position_ < 0 || position_ >= getTarget().size() || position_ == pointToInt(p_1,colsInRow)) return;
 
         Log.e("EEE", "Abs: "+position_+" p_1: "+p_1+"p_1_flat: "+pointToInt(p_1,colsInRow));
 
@@ -71,10 +70,10 @@ public class ContSelListenerGrid extends ContSelListener {
         maxy = startPos.j>position.j?startPos.j:position.j;
 
         boolean checked = !getInvSel();
+        ContSelTarget target = getTarget();
         for (int i=minx;i<=maxx;i++)
-            for (int j=miny;j<=maxy;j++)
-                objects.get(i*colsInRow+j).setChecked(checked);
-        adapter.notifyDataSetChanged();
+            target.setRangeSelected(i*colsInRow+miny,Math.min(i*colsInRow+maxy+1,target.size()),checked);
+        getTarget().onSelectionChanged();
     }
 
     @Override
@@ -85,8 +84,8 @@ public class ContSelListenerGrid extends ContSelListener {
             return;
         }
         if (startPos.equals(intToPoint(endPos,colsInRow)) && !atLeastOneMoveAfterDown) {
-            if (!selectionBeforeStart.contains(endPos)) {
-                objects.get(endPos).setChecked(!destCheckStatus);
+            if (!selectionBeforeStart.get(endPos)) {
+                getTarget().setSelected(endPos,!destCheckStatus);
             }
         }
 
@@ -94,6 +93,6 @@ public class ContSelListenerGrid extends ContSelListener {
         p_1.set(-1,-1);
         active = false;
         atLeastOneMoveAfterDown = false;
-        adapter.notifyDataSetChanged();
+        getTarget().onSelectionChanged();
     }
 }
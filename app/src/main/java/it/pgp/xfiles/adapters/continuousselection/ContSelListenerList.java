@@ -2,10 +2,6 @@ package it.pgp.xfiles.adapters.continuousselection;
 
 import android.util.Log;
 import android.widget.AbsListView;
-import android.widget.ArrayAdapter;
-import android.widget.Checkable;
-
-import java.util.List;
 
 public class ContSelListenerList extends ContSelListener {
 
@@ -18,8 +14,8 @@ public class ContSelListenerList extends ContSelListener {
     private int startPos;
 
 
-    public ContSelListenerList(AbsListView lv, ArrayAdapter adapter, List<? extends Checkable> objects, CSCheckboxes csCheckboxes) {
-        super(lv, adapter, objects, csCheckboxes);
+    public ContSelListenerList(AbsListView lv, CSCheckboxes csCheckboxes) {
+        super(lv, csCheckboxes);
     }
 
     @Override
@@ -29,25 +25,25 @@ public class ContSelListenerList extends ContSelListener {
         destCheckStatus = initialDestCheckStatus = !getInvSel();
         fillSelectionBeforeStart();
 
-        objects.get(startPos).setChecked(destCheckStatus);
-        adapter.notifyDataSetChanged();
+        getTarget().setSelected(startPos,destCheckStatus);
+        getTarget().onSelectionChanged();
     }
 
     @Override
     public void ongoingSelectMode(int position) {
         Log.d("POSITION", "Current: "+position+" Previous: "+idx_1+" Old: "+idx_2);
-        if (position < 0 || position >= objects.size() || position == idx_1) return;
+        if (position < 0 || position >= getTarget().size() || position == idx_1) return;
         Log.e("SelectModeContinue", "SelectModeContinue");
 
         atLeastOneMoveAfterDown = true;
 
         if (position == startPos && idx_1 >= 0) { // returned to startPos after having left it
             destCheckStatus = initialDestCheckStatus;
-            if (!selectionBeforeStart.contains(idx_1)) {
-                objects.get(idx_1).setChecked(!destCheckStatus);
+            if (!selectionBeforeStart.get(idx_1)) {
+                getTarget().setSelected(idx_1,!destCheckStatus);
             }
-            if (idx_2 >= 0 && !selectionBeforeStart.contains(idx_2)) {
-                objects.get(idx_2).setChecked(!destCheckStatus);
+            if (idx_2 >= 0 && !selectionBeforeStart.get(idx_2)) {
+                getTarget().setSelected(idx_2,!destCheckStatus);
             }
             idx_1 = -1;
             idx_2 = -1;
@@ -57,19 +53,19 @@ public class ContSelListenerList extends ContSelListener {
         if (position != idx_1) {
             if (position == idx_2) { // direction inverted, deselect previous
                 destCheckStatus = !destCheckStatus;
-                if (!selectionBeforeStart.contains(idx_1)) {
-                    objects.get(idx_1).setChecked(destCheckStatus);
+                if (!selectionBeforeStart.get(idx_1)) {
+                    getTarget().setSelected(idx_1,destCheckStatus);
                 }
-                if (!selectionBeforeStart.contains(position)) {
-                    objects.get(position).setChecked(destCheckStatus);
+                if (!selectionBeforeStart.get(position)) {
+                    getTarget().setSelected(position,destCheckStatus);
                 }
             }
             else {
-                if (!selectionBeforeStart.contains(position)) {
-                    objects.get(position).setChecked(destCheckStatus);
+                if (!selectionBeforeStart.get(position)) {
+                    getTarget().setSelected(position,destCheckStatus);
                 }
             }
-            adapter.notifyDataSetChanged();
+            getTarget().onSelectionChanged();
 
             if (idx_1 < 0) {
                 idx_1 = idx_2 = position;
@@ -96,8 +92,8 @@ public class ContSelListenerList extends ContSelListener {
             return;
         }
         if (startPos == endPos && !atLeastOneMoveAfterDown) {
-            if (!selectionBeforeStart.contains(startPos)) {
-                objects.get(startPos).setChecked(!initialDestCheckStatus);
+            if (!selectionBeforeStart.get(startPos)) {
+                getTarget().setSelected(startPos,!initialDestCheckStatus);
             }
         }
 
@@ -107,6 +103,6 @@ public class ContSelListenerList extends ContSelListener {
         active = false;
         destCheckStatus = initialDestCheckStatus;
         atLeastOneMoveAfterDown = false;
-        adapter.notifyDataSetChanged();
+        getTarget().onSelectionChanged();
     }
 }
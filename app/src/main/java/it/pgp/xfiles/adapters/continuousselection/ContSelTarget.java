@@ -0,0 +1,22 @@
+package it.pgp.xfiles.adapters.continuousselection;
+
+import java.util.BitSet;
+
+/**
+ * Selection of the items of an adapter, by adapter position, as seen by continuous selection listeners;
+ * to be implemented by the adapter of the listener's view
+ */
+
+public interface ContSelTarget {
+    int size();
+    boolean isSelected(int position);
+    void setSelected(int position, boolean selected);
+    void setRangeSelected(int from, int to, boolean selected); // [from,to)
+    BitSet getSelection();
+    void setSelection(BitSet selection);
+
+    /**
+     * Refreshes the selection state of the displayed items only
+     */
+    void onSelectionChanged();
+}
@@ -20,6 +20,11 @@ public class AdvancedComparator implements Comparator<BrowserItem> {
         this.attributes = attributes;
     }
 
+    // extensions are interned, most comparisons between equal ones are resolved by identity
+    static int compareExts(String e1, String e2) {
+        return (e1 == e2) ? 0 : e1.compareTo(e2);
+    }
+
     @Override
     public int compare(BrowserItem o1, BrowserItem o2) {
         int currentComparisonResult = 0;
@@ -27,27 +32,27 @@ public class AdvancedComparator implements Comparator<BrowserItem> {
         for (SortingItem a : attributes) {
             switch (a.comparatorField) {
                 case FILENAME:
-                    currentComparisonResult = o1.getFilename().compareTo(o2.getFilename());
+                    currentComparisonResult = FilenameComparator.compareFilenames(o1,o2);
                     if (a.isReversed()) currentComparisonResult*=-1;
                     if (currentComparisonResult == 0) continue;
                     else return currentComparisonResult;
                 case DATE:
-                    currentComparisonResult = o1.date.compareTo(o2.date);
+                    currentComparisonResult = Long.compare(o1.mtime,o2.mtime);
                     if (a.isReversed()) currentComparisonResult*=-1;
                     if (currentComparisonResult == 0) continue;
                     else return currentComparisonResult;
                 case SIZE:
-                    currentComparisonResult = o1.size.compareTo(o2.size);
+                    currentComparisonResult = Long.compare(o1.getEffectiveSize(),o2.getEffectiveSize());
                     if (a.isReversed()) currentComparisonResult*=-1;
                     if (currentComparisonResult == 0) continue;
                     else return currentComparisonResult;
                 case TYPE:
-                    currentComparisonResult = o1.getFileExt().compareTo(o2.getFileExt());
+                    currentComparisonResult = compareExts(o1.getFileExt(),o2.getFileExt());
                     if (a.isReversed()) currentComparisonResult*=-1;
                     if (currentComparisonResult == 0) continue;
                     else return currentComparisonResult;
                 case DIR:
-                    currentComparisonResult = o1.isDirectory.compareTo(o2.isDirectory);
+                    currentComparisonResult = Boolean.compare(o1.isDirectory,o2.isDirectory);
                     if (!a.isReversed()) currentComparisonResult*=-1; // more natural order than considering boolean precedence (reverse means files first, then direectories)
                     if (currentComparisonResult == 0) continue;
                     else return currentComparisonResult;
@@ -16,28 +16,28 @@ public class AdvancedComparatorStrategy implements Comparator<BrowserItem> {
     private static class FilenameComp implements Comparator<BrowserItem> {
         @Override
         public int compare(BrowserItem o1, BrowserItem o2) {
-            return o1.getFilename().compareTo(o2.getFilename());
+            return FilenameComparator.compareFilenames(o1,o2);
         }
     }
 
     private static class DateComp implements Comparator<BrowserItem> {
         @Override
         public int compare(BrowserItem o1, BrowserItem o2) {
-            return o1.date.compareTo(o2.date);
+            return Long.compare(o1.mtime,o2.mtime);
         }
     }
 
     private static class SizeComp implements Comparator<BrowserItem> {
         @Override
         public int compare(BrowserItem o1, BrowserItem o2) {
-            return o1.size.compareTo(o2.size);
+            return Long.compare(o1.getEffectiveSize(),o2.getEffectiveSize());
         }
     }
 
     private static class TypeComp implements Comparator<BrowserItem> {
         @Override
         public int compare(BrowserItem o1, BrowserItem o2) {
-            return o1.getFileExt().compareTo(o2.getFileExt());
+            return AdvancedComparator.compareExts(o1.getFileExt(),o2.getFileExt());
         }
     }
 
@@ -45,7 +45,7 @@ public class AdvancedComparatorStrategy implements Comparator<BrowserItem> {
         // -1 factor: more natural order than considering boolean precedence (reverse means files first, then directories)
         @Override
         public int compare(BrowserItem o1, BrowserItem o2) {
-            return -1*o1.isDirectory.compareTo(o2.isDirectory);
+            return -1*Boolean.compare(o1.isDirectory,o2.isDirectory);
         }
     }
 
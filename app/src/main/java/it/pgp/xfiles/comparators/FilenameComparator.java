@@ -9,11 +9,18 @@ import it.pgp.xfiles.BrowserItem;
  */
 
 public class FilenameComparator implements Comparator<BrowserItem> {
+
+    // natural, locale-aware order by precomputed keys, ties (e.g. names differing only in case) broken by plain order
+    public static int compareFilenames(BrowserItem o1, BrowserItem o2) {
+        int c = FilenameSortKey.compare(o1.getSortKey(),o2.getSortKey());
+        return (c != 0) ? c : o1.getFilename().compareTo(o2.getFilename());
+    }
+
     @Override
     public int compare(BrowserItem o1, BrowserItem o2) {
         // directory priority (directories first, then files)
         if ((o1.isDirectory && o2.isDirectory)||(!o1.isDirectory && !o2.isDirectory))
-            return o1.getFilename().compareTo(o2.getFilename()); // both files or both dirs
+            return compareFilenames(o1,o2); // both files or both dirs
         else if (!o1.isDirectory /* && o2.isDirectory */) return 1;
         else return -1;
     }
@@ -0,0 +1,78 @@
+package it.pgp.xfiles.comparators;
+
+import java.io.ByteArrayOutputStream;
+import java.text.Collator;
+
+/**
+ * Natural-order, locale-aware sort keys for filenames, to be computed once per entry
+ * (see {@link it.pgp.xfiles.BrowserItem#getSortKey()}), so that sorting needs only unsigned byte comparisons.
+ *
+ * A filename is split into runs of ASCII digits and of other characters; each run is encoded as:
+ * - digits: tag 0x01, number of significant digits (leading zeros stripped), significant digits;
+ *   so that numbers compare by value ("file2" before "file10") and before text at the same position
+ * - text: tag 0x02, collation key of the run (current locale, case-insensitive), escaped in order not to contain 0x00,
+ *   then 0x00 as terminator; so that a run sorts before its own extensions ("file" before "files")
+ * Keys of names differing only in case or leading zeros are equal, ties are to be broken by plain comparison.
+ */
+
+public class FilenameSortKey {
+
+    private static final byte NUMBER_TAG = 0x01;
+    private static final byte TEXT_TAG = 0x02;
+
+    // Collator instances are not thread-safe, listings may be built concurrently
+    private static final ThreadLocal<Collator> collators = new ThreadLocal<Collator>() {
+        @Override
+        protected Collator initialValue() {
+            Collator c = Collator.getInstance();
+            c.setStrength(Collator.SECONDARY);
+            return c;
+        }
+    };
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public static byte[] compute(String filename) {
+        ByteArrayOutputStream key = new ByteArrayOutputStream(filename.length()*2+8);
+        Collator collator = collators.get();
+        int len = filename.length();
+        int i = 0;
+        while (i < len) {
+            int start = i;
+            if (isAsciiDigit(filename.charAt(i))) {
+                while (i < len && isAsciiDigit(filename.charAt(i))) i++;
+                int significant = start;
+                while (significant < i-1 && filename.charAt(significant) == '0') significant++;
+                key.write(NUMBER_TAG);
+                key.write(Math.min(i-significant,255));
+                for (int j=significant;j<i;j++) key.write(filename.charAt(j));
+            }
+            else {
+                while (i < len && !isAsciiDigit(filename.charAt(i))) i++;
+                key.write(TEXT_TAG);
+                for (byte b : collator.getCollationKey(filename.substring(start,i)).toByteArray()) {
+                    // order-preserving escape: 0x00 -> 0x01 0x01, 0x01 -> 0x01 0x02
+                    if (b == 0x00 || b == 0x01) {
+                        key.write(0x01);
+                        key.write(b+1);
+                    }
+                    else key.write(b);
+                }
+                key.write(0x00);
+            }
+        }
+        return key.toByteArray();
+    }
+
+    // unsigned lexicographic comparison, a proper prefix sorts first
+    public static int compare(byte[] k1, byte[] k2) {
+        int n = Math.min(k1.length,k2.length);
+        for (int i=0;i<n;i++) {
+            int d = (k1[i] & 0xFF) - (k2[i] & 0xFF);
+            if (d != 0) return d;
+        }
+        return k1.length - k2.length;
+    }
+}
@@ -9,7 +9,6 @@ import android.widget.ListView;
 import java.util.ArrayList;
 import it.pgp.xfiles.adapters.BrowserAdapter;
 import it.pgp.xfiles.R;
-import it.pgp.xfiles.comparators.AdvancedComparator;
 import it.pgp.xfiles.dragdroplist.DragNDropAdapter;
 import it.pgp.xfiles.dragdroplist.DynamicListView;
 import it.pgp.xfiles.enums.ComparatorField;
@@ -24,8 +23,6 @@ public class AdvancedSortingDialog extends BaseDialog {
     private DragNDropAdapter dragNDropAdapter;
     private DynamicListView listView;
 
-    private AdvancedComparator advancedComparator;
-
     public AdvancedSortingDialog(final Context context, final BrowserAdapter browserAdapter) {
         super(context);
         setTitle("Advanced sort");
@@ -59,8 +56,7 @@ public class AdvancedSortingDialog extends BaseDialog {
 
         Button okButton = findViewById(R.id.advancedSortOKButton);
         okButton.setOnClickListener(v -> {
-            advancedComparator = new AdvancedComparator(dragNDropAdapter.getSelectedItems());
-            browserAdapter.sort(advancedComparator);
+            browserAdapter.sortObjects(dragNDropAdapter.getSelectedItems());
             dismiss();
         });
 
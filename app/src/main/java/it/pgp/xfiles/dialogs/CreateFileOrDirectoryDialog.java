@@ -127,7 +127,7 @@ public class CreateFileOrDirectoryDialog extends BaseDialog implements Runnable
         }
         finally {
             mainActivity.runOnUiThread(()->{
-                mainActivity.browserPagerAdapter.showDirContent(mainActivity.getCurrentDirCommander().refresh(),mainActivity.browserPager.getCurrentItem(),
+                mainActivity.browserPagerAdapter.refreshDirContent(mainActivity.browserPager.getCurrentItem(),
                         nameToLocate.isEmpty()?
                                 new String[]{}:new String[]{nameToLocate.get(0)});
                 dismiss();
@@ -6,10 +6,6 @@ import android.widget.EditText;
 import android.widget.RadioButton;
 import android.widget.Toast;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
 import it.pgp.xfiles.MainActivity;
 import it.pgp.xfiles.R;
 import it.pgp.xfiles.enums.FileMode;
@@ -59,33 +55,29 @@ public class CreateLinkDialog extends BaseDialog {
             return;
         }
 
-        // dirty hack to workaround final variable requirements in lambdas and catch-finally data flow dependency
-        // Collection.singletonList or Arrays.asList cannot be used here, in that they create immutables
-        List<String> nameToLocate = new ArrayList<String>(){{add(linkPath.getName());}};
-
-        try {
-            /*if (originPath.providerType == ProviderType.XFILES_REMOTE) {
-                if (!MainActivity.rootHelperRemoteClientManager.createLink(
-                        (XFilesRemotePathContent)originPath,
-                        (XFilesRemotePathContent)linkPath,
-                        isHardLink.isChecked()))
-                    throw new IOException("");
-            }
-            else*/
-            MainActivity.currentHelper.createLink(originPath,linkPath,isHardLink.isChecked());
-            Toast.makeText(mainActivity, "link created", Toast.LENGTH_SHORT).show();
-        }
-        catch (IOException e) {
-            e.printStackTrace();
-            nameToLocate.clear();
-            MainActivity.showToastOnUI("Link creation error");
+        /*if (originPath.providerType == ProviderType.XFILES_REMOTE) {
+            if (!MainActivity.rootHelperRemoteClientManager.createLink(
+                    (XFilesRemotePathContent)originPath,
+                    (XFilesRemotePathContent)linkPath,
+                    isHardLink.isChecked()))
+                throw new IOException("");
         }
-        finally {
-            mainActivity.browserPagerAdapter.showDirContent(mainActivity.getCurrentDirCommander().refresh(),mainActivity.browserPager.getCurrentItem(),
-                    nameToLocate.isEmpty()?
-                            new String[]{}:new String[]{nameToLocate.get(0)});
+        else*/
+        ok.setEnabled(false);
+        MainActivity.currentHelper.createLinkAsync(originPath,linkPath,isHardLink.isChecked()).then((unused_, error) -> {
+            String[] nameToLocate;
+            if (error != null) {
+                error.printStackTrace();
+                nameToLocate = new String[]{};
+                Toast.makeText(mainActivity, "Link creation error", Toast.LENGTH_SHORT).show();
+            }
+            else {
+                nameToLocate = new String[]{linkPath.getName()};
+                Toast.makeText(mainActivity, "link created", Toast.LENGTH_SHORT).show();
+            }
+            mainActivity.browserPagerAdapter.refreshDirContent(mainActivity.browserPager.getCurrentItem(),nameToLocate);
 
             dismiss();
-        }
+        });
     }
 }
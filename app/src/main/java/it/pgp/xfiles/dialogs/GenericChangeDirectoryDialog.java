@@ -167,9 +167,10 @@ public class GenericChangeDirectoryDialog extends Dialog {
                     break;
 
             }
-            FileOpsErrorCodes ret = mainActivity.goDir(path);
-            if (ret == FileOpsErrorCodes.OK ||
-                    ret == FileOpsErrorCodes.NULL_OR_WRONG_PASSWORD) dismiss();
+            mainActivity.goDir(path, ret -> {
+                if (ret == FileOpsErrorCodes.OK ||
+                        ret == FileOpsErrorCodes.NULL_OR_WRONG_PASSWORD) dismiss();
+            });
         }
         else if (idx == 5) {
             // start download service
@@ -13,8 +13,10 @@ import java.util.List;
 import it.pgp.xfiles.MainActivity;
 import it.pgp.xfiles.R;
 import it.pgp.xfiles.enums.FileMode;
+import it.pgp.xfiles.enums.ProviderType;
 import it.pgp.xfiles.items.SingleStatsItem;
 import it.pgp.xfiles.roothelperclient.resps.folderStats_resp;
+import it.pgp.xfiles.utils.FolderSizeEngine;
 import it.pgp.xfiles.utils.pathcontent.BasePathContent;
 
 /**
@@ -86,17 +88,20 @@ public class PropertiesDialog extends Dialog {
                 throw new RuntimeException("Unknown operation mode, only dir and file allowed");
         }
 
-        try {
-            if (pathname_.size() != 1) { // ignore filemode, stats multiple items
-                statsFolderOrMultipleItems = MainActivity.currentHelper.statFiles(pathname_);
-            }
-            else {
-                stats = MainActivity.currentHelper.statFile(pathname_.get(0));
-                if (fileMode == FileMode.DIRECTORY) {
-                    statsFolderOrMultipleItems = MainActivity.currentHelper.statFolder(pathname_.get(0));
+        // stats are retrieved asynchronously, the dialog is filled as soon as they are available
+        if (pathname_.size() != 1) { // ignore filemode, stats multiple items
+            showAggregatesPlaceholder();
+            MainActivity.currentHelper.statFilesAsync(pathname_).then((r,e) -> onAggregates(context,r,e));
+        }
+        else {
+            pathname.setText(pathname_.get(0).toString());
+            MainActivity.currentHelper.statFileAsync(pathname_.get(0)).then((r,e) -> {
+                if (e != null || r == null) {
+                    if (e != null) e.printStackTrace();
+                    Toast.makeText(context, "Generic stats error", Toast.LENGTH_SHORT).show();
+                    return;
                 }
-
-                pathname.setText(pathname_.get(0).toString());
+                stats = r;
                 // TODO type setText MIME type
                 size.setText(""+stats.size);
                 created.setText(""+stats.creationTime);
@@ -105,19 +110,17 @@ public class PropertiesDialog extends Dialog {
                 permissions.setText(stats.permissions);
                 owner.setText(stats.owner);
                 group.setText(stats.group);
+            });
+            if (fileMode == FileMode.DIRECTORY) {
+                showAggregatesPlaceholder();
+                // last computed stats shown instantly, if still valid, then replaced by exact ones
+                BasePathContent dir = pathname_.get(0);
+                if (dir.providerType == ProviderType.LOCAL) {
+                    folderStats_resp cached = FolderSizeEngine.getInstance(context).getCached(dir.dir);
+                    if (cached != null) showAggregates(cached);
+                }
+                MainActivity.currentHelper.statFolderAsync(pathname_.get(0)).then((r,e) -> onAggregates(context,r,e));
             }
-
-            if (pathname_.size() != 1 || fileMode == FileMode.DIRECTORY) {
-                childrenFiles.setText(""+ statsFolderOrMultipleItems.childrenFiles);
-                childrenFolders.setText(""+ statsFolderOrMultipleItems.childrenDirs);
-                totalFiles.setText(""+ statsFolderOrMultipleItems.totalFiles);
-                totalFolders.setText(""+ statsFolderOrMultipleItems.totalDirs);
-                totalSize.setText(""+ statsFolderOrMultipleItems.totalSize);
-            }
-        }
-        catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(context, "Generic stats error", Toast.LENGTH_SHORT).show();
         } // TODO refine error msgs from commented code below
 
         /*// @@@
@@ -156,4 +159,27 @@ public class PropertiesDialog extends Dialog {
             }
         }*/
     }
+
+    private void showAggregatesPlaceholder() {
+        for (TextView t : new TextView[]{childrenFiles,childrenFolders,totalFiles,totalFolders,totalSize})
+            t.setText("...");
+    }
+
+    private void onAggregates(Context context, folderStats_resp r, Exception e) {
+        if (e != null || r == null) {
+            if (e != null) e.printStackTrace();
+            Toast.makeText(context, "Generic stats error", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        showAggregates(r);
+    }
+
+    private void showAggregates(folderStats_resp r) {
+        statsFolderOrMultipleItems = r;
+        childrenFiles.setText(""+ statsFolderOrMultipleItems.childrenFiles);
+        childrenFolders.setText(""+ statsFolderOrMultipleItems.childrenDirs);
+        totalFiles.setText(""+ statsFolderOrMultipleItems.totalFiles);
+        totalFolders.setText(""+ statsFolderOrMultipleItems.totalDirs);
+        totalSize.setText(""+ statsFolderOrMultipleItems.totalSize);
+    }
 }
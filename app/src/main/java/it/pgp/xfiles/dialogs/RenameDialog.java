@@ -4,8 +4,6 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
-import java.io.IOException;
-
 import it.pgp.xfiles.MainActivity;
 import it.pgp.xfiles.R;
 import it.pgp.xfiles.utils.pathcontent.BasePathContent;
@@ -26,21 +24,21 @@ public class RenameDialog extends ImmersiveModeDialog {
         ok.setOnClickListener(v -> {
             String filename_ = filename.getText().toString();
             BasePathContent ff = f.getParent().concat(filename_);
-            try {
-                if (MainActivity.currentHelper.renameFile(f,ff)) {
+            ok.setEnabled(false);
+            MainActivity.currentHelper.renameFileAsync(f,ff).then((renamed, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                    Toast.makeText(mainActivity, "Roothelper communication error", Toast.LENGTH_SHORT).show();
+                }
+                else if (renamed) {
                     Toast.makeText(mainActivity, "Renamed", Toast.LENGTH_SHORT).show();
-                    mainActivity.browserPagerAdapter.showDirContent(mainActivity.getCurrentDirCommander().refresh(),mainActivity.browserPager.getCurrentItem(),filename_);
+                    mainActivity.browserPagerAdapter.refreshDirContent(mainActivity.browserPager.getCurrentItem(),filename_);
                 }
                 else {
                     Toast.makeText(mainActivity, "Error renaming item", Toast.LENGTH_SHORT).show();
                 }
-            }
-            catch (IOException e) {
-                e.printStackTrace();
-                Toast.makeText(mainActivity, "Roothelper communication error", Toast.LENGTH_SHORT).show();
-            }
-
-            dismiss();
+                dismiss();
+            });
         });
     }
 }
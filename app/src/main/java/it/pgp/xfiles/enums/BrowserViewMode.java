@@ -1,10 +1,6 @@
 package it.pgp.xfiles.enums;
 
 import android.widget.AbsListView;
-import android.widget.ArrayAdapter;
-import android.widget.Checkable;
-
-import java.util.List;
 
 import it.pgp.xfiles.R;
 import it.pgp.xfiles.adapters.continuousselection.CSCheckboxes;
@@ -41,10 +37,10 @@ public enum BrowserViewMode {
         return layout;
     }
 
-    public ContSelListener buildCSListener(AbsListView lv, ArrayAdapter adapter, List<? extends Checkable> objects, CSCheckboxes csCheckboxes) {
+    public ContSelListener buildCSListener(AbsListView lv, CSCheckboxes csCheckboxes) {
         switch (this) {
-            case LIST: return new ContSelListenerList(lv,adapter,objects,csCheckboxes);
-            case GRID: return new ContSelListenerGrid(lv,adapter,objects,csCheckboxes);
+            case LIST: return new ContSelListenerList(lv,csCheckboxes);
+            case GRID: return new ContSelListenerGrid(lv,csCheckboxes);
             default: throw new InvalidBrowserViewModeException();
         }
     }
@@ -7,6 +7,7 @@ package it.pgp.xfiles.enums;
 
 public enum ForegroundServiceType {
     FILE_TRANSFER,
+    FILE_DELETE,
     FILE_ARCHIVING,
     XRE_TRANSFER,
     XRE_HASH, // currently without overlay usage, only resource locking for long term tls connection, enable overlay when progress indication will be implemented in rh's hashFile
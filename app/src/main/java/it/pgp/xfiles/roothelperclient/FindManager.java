@@ -4,6 +4,7 @@ import android.net.LocalSocket;
 import android.net.LocalSocketAddress;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -14,7 +15,7 @@ import it.pgp.xfiles.FindActivity;
 import it.pgp.xfiles.MainActivity;
 import it.pgp.xfiles.adapters.FindResultsAdapter;
 import it.pgp.xfiles.roothelperclient.reqs.find_rq;
-import it.pgp.xfiles.roothelperclient.resps.find_resp;
+import it.pgp.xfiles.roothelperclient.resps.RespDecoder;
 import it.pgp.xfiles.service.SocketNames;
 import it.pgp.xfiles.utils.Misc;
 
@@ -43,7 +44,7 @@ public class FindManager implements AutoCloseable {
         Log.e(this.getClass().getName(),"Connected");
 
         o = clientSocket.getOutputStream();
-        i = new DataInputStream(clientSocket.getInputStream());
+        i = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
         Log.e(this.getClass().getName(),"Streams acquired");
     }
 
@@ -106,12 +107,11 @@ public class FindManager implements AutoCloseable {
     ////////////////////////////////////
 
     // callback (stub)
-    private boolean onSearchItemFound(find_resp item) {
+    private boolean onSearchItemFound(BrowserItem item) {
         try {
             // TODO when content search will be available, should replace BrowserItem with a subclass including content results
             FindActivity.instance.runOnUiThread(() ->
-                    FindResultsAdapter.instance.add(
-                            new BrowserItem(item.fileItem)));
+                    FindResultsAdapter.instance.add(item));
             return true;
         }
         catch (Exception e) {
@@ -139,12 +139,14 @@ public class FindManager implements AutoCloseable {
 
                 // create new adapter
                 FindResultsAdapter.createAdapter(rq);
+                RespDecoder decoder = new RespDecoder(i);
 
                 for(;;) { // exits on IOException when the other socket endpoint is closed (search interrupted), or when receives end of list (not strictly needed, roothelper find thread could also close the connection after sending last item found)
 
                     // receive search results
-                    find_resp item = new find_resp(i);
-                    if (item.eol) break;
+                    BrowserItem item = decoder.nextBrowserItem();
+                    if (item == null) break; // end of list
+                    decoder.readFindTail(); // content around match, not used yet
                     if (!onSearchItemFound(item)) break; // exit immediately if adapter has been destroyed (actually, that should not happen)
                 }
                 MainActivity.showToastOnUI("Search completed");
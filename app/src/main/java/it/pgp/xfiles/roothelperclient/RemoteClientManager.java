@@ -111,20 +111,18 @@ public class RemoteClientManager {
         }
     }
 
-    public RemoteManager getClient(String serverHost, boolean isFastClient) {
-        RemoteManager client;
-        if (isFastClient) {
-            if (fastClients.containsKey(serverHost)) return fastClients.get(serverHost);
-            client = createAndConnectClient(serverHost);
-            if (client == null) return null;
-            fastClients.put(serverHost,client);
-        }
-        else {
-            if (longTermClients.containsKey(serverHost)) return longTermClients.get(serverHost);
-            client = createAndConnectClient(serverHost);
-            if (client == null) return null;
-            longTermClients.put(serverHost,client);
+    // synchronized, since sessions may be requested concurrently by several I/O threads;
+    // broken sessions (see RemoteManager#isBroken) are transparently replaced
+    public synchronized RemoteManager getClient(String serverHost, boolean isFastClient) {
+        Map<String,RemoteManager> clients = isFastClient ? fastClients : longTermClients;
+        RemoteManager client = clients.get(serverHost);
+        if (client != null) {
+            if (!client.isBroken()) return client;
+            clients.remove(serverHost);
         }
+        client = createAndConnectClient(serverHost);
+        if (client == null) return null;
+        clients.put(serverHost,client);
         if (XFilesRemoteSessionsManagementActivity.CtoSAdapter != null) {
             XFilesRemoteSessionsManagementActivity.CtoSAdapter.syncFromActivity();
         }
@@ -173,8 +171,7 @@ public class RemoteClientManager {
              * - get file descriptors one by one with content resolver and send them via UDS (LocalSocket)
              * - receive progress for each file
              */
-            byte customizedRq = action.getValue();
-            customizedRq ^= (7 << 5); // flags: 111
+            final byte customizedRq = (byte)(action.getValue() ^ (7 << 5)); // flags: 111
 
             try {
                 FileDescriptor uds = client.ls.getFileDescriptor();
@@ -186,39 +183,42 @@ public class RemoteClientManager {
                 List<String> names = new ArrayList<>();
                 List<Long> sizes = new ArrayList<>();
                 long totalSize = 0;
-                long currentFileSize = 0;
                 for (String uriString : ((CopyListUris)items).contentUris) {
                     Uri uri = Uri.parse(uriString);
                     uris.add(uri);
                     names.add(ContentProviderUtils.getName(contentResolver,uri));
-                    currentFileSize = ContentProviderUtils.getSize(contentResolver,uri);
-                    sizes.add(currentFileSize);
-                    totalSize += currentFileSize;
+                    long size = ContentProviderUtils.getSize(contentResolver,uri);
+                    sizes.add(size);
+                    totalSize += size;
                 }
-
-                client.o.write(customizedRq);
-                client.o.write(Misc.castUnsignedNumberToBytes(totalSize,8));
-                long totalSizeSoFar = 0;
-
-
-                for (int i=0;i<uris.size();i++) {
-                    Log.e("XREProgress","Sending file info and descriptor for "+names.get(i));
-                    Misc.sendStringWithLen(client.o,destDir.dir+"/"+names.get(i));
-                    client.o.write(Misc.castUnsignedNumberToBytes(sizes.get(i),8));
-                    int fdToSend = contentResolver.openFileDescriptor(uris.get(i),"r").detachFd();
-                    Native.sendDetachedFD(nativeUds,fdToSend);
-
-                    // receive progress
-                    long tmp;
-                    do {
-                        tmp = Misc.receiveTotalOrProgress(client.i);
-                        publishReceivedProgress(tmp,totalSizeSoFar,totalSize,currentFileSize);
+                final long totalSize_ = totalSize;
+
+                // file descriptors are sent interleaved with progress, so the session is held exclusively
+                client.exclusive(c -> {
+                    c.o.write(customizedRq);
+                    c.o.write(Misc.castUnsignedNumberToBytes(totalSize_,8));
+                    long totalSizeSoFar = 0;
+
+                    for (int i=0;i<uris.size();i++) {
+                        Log.e("XREProgress","Sending file info and descriptor for "+names.get(i));
+                        long currentFileSize = sizes.get(i);
+                        Misc.sendStringWithLen(c.o,destDir.dir+"/"+names.get(i));
+                        c.o.write(Misc.castUnsignedNumberToBytes(currentFileSize,8));
+                        int fdToSend = contentResolver.openFileDescriptor(uris.get(i),"r").detachFd();
+                        Native.sendDetachedFD(nativeUds,fdToSend);
+
+                        // receive progress
+                        long tmp;
+                        do {
+                            tmp = Misc.receiveTotalOrProgress(c.i);
+                            publishReceivedProgress(tmp,totalSizeSoFar,totalSize_,currentFileSize);
+                        }
+                        while(tmp!=EOF_ind);
+                        totalSizeSoFar += currentFileSize;
                     }
-                    while(tmp!=EOF_ind);
-                    totalSizeSoFar += currentFileSize;
-                }
-                client.o.write(new byte[2]); // EOL
-
+                    c.o.write(new byte[2]); // EOL
+                    return null;
+                });
             }
             catch (Exception e) {
                 e.printStackTrace();
@@ -228,71 +228,68 @@ public class RemoteClientManager {
             return FileOpsErrorCodes.TRANSFER_OK;
         }
         else {
-            ArrayList<String> v_fx = new ArrayList<>();
-            ArrayList<String> v_fy = new ArrayList<>();
-
-            for (BrowserItem fname : items.files) {
-                v_fx.add(items.parentDir.dir+"/"+fname.getFilename());
-                v_fy.add(destDir.dir+"/"+fname.getFilename());
-            }
-
-            ListOfPathPairs_rq r = new ListOfPathPairs_rq(v_fx,v_fy);
+            ListOfPathPairs_rq r = new ListOfPathPairs_rq(
+                    items.getPathsIn(items.parentDir.dir),
+                    items.getPathsIn(destDir.dir));
             r.requestType = action;
 
             try {
-                r.write(client.o);
-
-                // receive total number of files for outer progress
-                final long totalFileCount = Misc.receiveTotalOrProgress(client.i);
-                final long totalSize = Misc.receiveTotalOrProgress(client.i);
-                Log.e("XREProgress","Total size is "+totalSize);
-                long currentFileCount = 0;
-                long totalSizeSoFar = 0; // rounded to last completed file
-//            long currentFileSize = EOF_ind; // legacy, maybe breaks things
-                long currentFileSize = 0; // placeholder, just to avoid uninitialized error
-
-                boolean hasReceivedSizeForCurrentFile = false;
-
-                // receive progress for single files, increment outer progress bar by 1 on EOF_ind progress
-
-                for (;;) {
-                    long tmp = Misc.receiveTotalOrProgress(client.i);
-
-                    if (tmp == EOF_ind) {
-                        Log.e("XREProgress","Received EOF, file count before: "+currentFileCount);
-                        hasReceivedSizeForCurrentFile = false;
-                        currentFileCount++;
-                        totalSizeSoFar += currentFileSize;
-                        this.progressTask.publishProgressWrapper(
-                                (int)Math.round(totalSizeSoFar*100.0/totalSize),
-                                0
-                        );
-                    }
-                    else if (tmp == EOFs_ind) {
-                        Log.e("XREProgress","Received EOFs");
-                        break;
-                    }
-                    else {
-                        Log.e("XREProgress","Received progress or size");
-                        if (hasReceivedSizeForCurrentFile) {
-                            Log.e("XREProgress","It's progress: "+tmp);
-                            publishReceivedProgress(tmp,totalSizeSoFar,totalSize,currentFileSize);
+                // progress is read until the end of the transfer, so the session is held exclusively
+                return client.exclusive(c -> {
+                    r.write(c.o);
+
+                    // receive total number of files for outer progress
+                    final long totalFileCount = Misc.receiveTotalOrProgress(c.i);
+                    final long totalSize = Misc.receiveTotalOrProgress(c.i);
+                    Log.e("XREProgress","Total size is "+totalSize);
+                    long currentFileCount = 0;
+                    long totalSizeSoFar = 0; // rounded to last completed file
+//                long currentFileSize = EOF_ind; // legacy, maybe breaks things
+                    long currentFileSize = 0; // placeholder, just to avoid uninitialized error
+
+                    boolean hasReceivedSizeForCurrentFile = false;
+
+                    // receive progress for single files, increment outer progress bar by 1 on EOF_ind progress
+
+                    for (;;) {
+                        long tmp = Misc.receiveTotalOrProgress(c.i);
+
+                        if (tmp == EOF_ind) {
+                            Log.e("XREProgress","Received EOF, file count before: "+currentFileCount);
+                            hasReceivedSizeForCurrentFile = false;
+                            currentFileCount++;
+                            totalSizeSoFar += currentFileSize;
+                            this.progressTask.publishProgressWrapper(
+                                    (int)Math.round(totalSizeSoFar*100.0/totalSize),
+                                    0
+                            );
+                        }
+                        else if (tmp == EOFs_ind) {
+                            Log.e("XREProgress","Received EOFs");
+                            break;
                         }
                         else {
-                            Log.e("XREProgress","It's size: "+tmp);
-                            // here, tmp is current file's size, before starting copying current file
-                            currentFileSize = tmp;
-                            hasReceivedSizeForCurrentFile = true;
-                            if (this.progressTask != null) {
-                                this.progressTask.publishProgressWrapper(
-                                        (int) Math.round(totalSizeSoFar * 100.0 / totalSize),
-                                        0
-                                );
+                            Log.e("XREProgress","Received progress or size");
+                            if (hasReceivedSizeForCurrentFile) {
+                                Log.e("XREProgress","It's progress: "+tmp);
+                                publishReceivedProgress(tmp,totalSizeSoFar,totalSize,currentFileSize);
+                            }
+                            else {
+                                Log.e("XREProgress","It's size: "+tmp);
+                                // here, tmp is current file's size, before starting copying current file
+                                currentFileSize = tmp;
+                                hasReceivedSizeForCurrentFile = true;
+                                if (this.progressTask != null) {
+                                    this.progressTask.publishProgressWrapper(
+                                            (int) Math.round(totalSizeSoFar * 100.0 / totalSize),
+                                            0
+                                    );
+                                }
                             }
                         }
                     }
-                }
-                return FileOpsErrorCodes.TRANSFER_OK;
+                    return FileOpsErrorCodes.TRANSFER_OK;
+                });
             }
             catch (IOException e) {
                 client.close();
@@ -4,8 +4,11 @@ import android.net.LocalSocket;
 import android.net.LocalSocketAddress;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.ReentrantLock;
 
 import it.pgp.xfiles.service.SocketNames;
 import it.pgp.xfiles.utils.Misc;
@@ -13,6 +16,12 @@ import it.pgp.xfiles.utils.StreamsPair;
 
 /**
  * Created by pgp on 20/09/17
+ *
+ * A connected XRE session is a single persistent stream, shared by all the callers targeting the same remote host.
+ * The RH server serves requests on it strictly in order, so several requests can be in flight at once
+ * (pipelining): each {@link #exchange} takes a ticket while writing its whole request, then waits for its turn
+ * to read the response, which is the ticket-th one on the stream. This hides network round trips of concurrent
+ * requests without needing request identifiers in the protocol.
  */
 
 public class RemoteManager extends StreamsPair {
@@ -23,6 +32,25 @@ public class RemoteManager extends StreamsPair {
 
     public final byte[] tlsSessionHash = new byte[32]; // hex string of SHA256
 
+    public interface RequestWriter {
+        void write(OutputStream o) throws IOException;
+    }
+
+    public interface ResponseReader<T> {
+        T read(DataInputStream i) throws IOException;
+    }
+
+    public interface Interaction<T> {
+        T run(RemoteManager session) throws IOException;
+    }
+
+    // fair, so that tickets are assigned in arrival order
+    private final ReentrantLock sendLock = new ReentrantLock(true);
+    private final Object turnLock = new Object();
+    private long nextTicket = 0; // guarded by sendLock
+    private long currentTurn = 0; // guarded by turnLock
+    private volatile boolean broken = false;
+
     RemoteManager() throws IOException {
         LocalSocket clientSocket = new LocalSocket();
         LocalSocketAddress socketAddress = new LocalSocketAddress(
@@ -34,7 +62,7 @@ public class RemoteManager extends StreamsPair {
         ls = clientSocket;
 
         o = clientSocket.getOutputStream();
-        i = new DataInputStream(clientSocket.getInputStream());
+        i = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
         Log.e(this.getClass().getName(),"Streams acquired");
     }
 
@@ -52,6 +80,105 @@ public class RemoteManager extends StreamsPair {
         Log.e(this.getClass().getName(),"Streams closed");
     }
 
+    /**
+     * Once an exchange fails midway, the position of the following responses on the stream is unknown,
+     * so the session cannot be used anymore and has to be replaced (see {@link RemoteClientManager#getClient})
+     */
+    public boolean isBroken() {
+        return broken;
+    }
+
+    private void fail() {
+        broken = true;
+        synchronized (turnLock) {
+            turnLock.notifyAll();
+        }
+        close();
+    }
+
+    private void awaitTurn(long ticket) throws IOException {
+        synchronized (turnLock) {
+            while (currentTurn != ticket) {
+                if (broken) throw new IOException("XRE session closed while waiting for response");
+                try {
+                    turnLock.wait();
+                }
+                catch (InterruptedException e) {
+                    // response would be left unread on the stream
+                    fail();
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for response");
+                }
+            }
+        }
+    }
+
+    private void endTurn() {
+        synchronized (turnLock) {
+            currentTurn++;
+            turnLock.notifyAll();
+        }
+    }
+
+    /**
+     * Sends a request and reads its response, while other requests on this session may be in flight.
+     * The reader must consume the whole response; on any failure the session is closed.
+     */
+    public <T> T exchange(RequestWriter request, ResponseReader<T> response) throws IOException {
+        long ticket;
+        sendLock.lock();
+        try {
+            if (broken) throw new IOException("XRE session closed");
+            ticket = nextTicket++;
+            try {
+                request.write(o);
+            }
+            catch (IOException|RuntimeException e) {
+                fail();
+                throw e;
+            }
+        }
+        finally {
+            sendLock.unlock();
+        }
+
+        awaitTurn(ticket);
+        try {
+            T result = response.read(i);
+            endTurn();
+            return result;
+        }
+        catch (IOException|RuntimeException e) {
+            fail();
+            throw e;
+        }
+    }
+
+    /**
+     * For interactions where requests and responses alternate (e.g. transfers), the session is held exclusively:
+     * no other request is sent until this one has ended, and it starts after all the in-flight ones have been served
+     */
+    public <T> T exclusive(Interaction<T> interaction) throws IOException {
+        sendLock.lock();
+        try {
+            if (broken) throw new IOException("XRE session closed");
+            long ticket = nextTicket++;
+            awaitTurn(ticket);
+            try {
+                T result = interaction.run(this);
+                endTurn();
+                return result;
+            }
+            catch (IOException|RuntimeException e) {
+                fail();
+                throw e;
+            }
+        }
+        finally {
+            sendLock.unlock();
+        }
+    }
+
     int receiveBaseResponse() throws IOException {
         return Misc.receiveBaseResponse(i);
     }
@@ -2,6 +2,7 @@ package it.pgp.xfiles.roothelperclient;
 
 import android.content.Context;
 import android.os.Binder;
+import android.os.SystemClock;
 import android.util.Log;
 
 import java.io.DataOutputStream;
@@ -38,6 +39,15 @@ public class RootHandler {
 
     public static boolean isRootAvailableAndGranted = false;
 
+    // startup timing metrics of the last successful roothelper start, in milliseconds
+    public static volatile long lastSpawnMs = -1; // su/exec until process created
+    public static volatile long lastReadyMs = -1; // process created until first successful ping
+    public static volatile long lastStartupMs = -1; // whole startAndGetRH, including failed root attempt if any
+    public static volatile int lastReadyProbes = 0;
+
+    private static final long READY_PROBE_MIN_DELAY_MS = 1;
+    private static final long READY_PROBE_MAX_DELAY_MS = 32;
+
     public static boolean isRooted() {
         return findBinary("su");
     }
@@ -116,6 +126,44 @@ public class RootHandler {
         return runRootHelper(MainActivity.mainActivityContext,isRooted(),socketName);
     }
 
+    /**
+     * Pings the just started RH process until its socket accepts connections,
+     * with exponentially increasing probe delays (a refused connection on a local socket fails immediately,
+     * so short initial delays detect readiness almost as soon as it happens, without busy-waiting on slow starts).
+     * @return the pid communicated by RH, or -1 if the process exited before becoming ready
+     */
+    private static long awaitReady(Process p, RootHelperClientUsingPathContent rh, long spawnStart) {
+        long spawned = SystemClock.elapsedRealtime();
+        lastSpawnMs = spawned - spawnStart;
+        long delay = READY_PROBE_MIN_DELAY_MS;
+        int probes = 1;
+        long pid = rh.checkConnection();
+        while (pid < 0) {
+            try {
+                p.exitValue();
+                return -1;
+            }
+            catch (IllegalThreadStateException e) {
+                try {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException ignored) {}
+                delay = Math.min(delay*2, READY_PROBE_MAX_DELAY_MS);
+            }
+            probes++;
+            pid = rh.checkConnection();
+        }
+        lastReadyMs = SystemClock.elapsedRealtime() - spawned;
+        lastReadyProbes = probes;
+        return pid;
+    }
+
+    private static void logStartupMetrics(long startupStart) {
+        lastStartupMs = SystemClock.elapsedRealtime() - startupStart;
+        Log.i(RootHandler.class.getName(),"Roothelper started in "+lastStartupMs+" ms (spawn: "+lastSpawnMs+
+                " ms, ready after: "+lastReadyMs+" ms, probes: "+lastReadyProbes+")");
+    }
+
     /**
      * Tries to start a new RH process on the given socket name,
      * then creates a new RHClient instance connected to that process
@@ -124,32 +172,22 @@ public class RootHandler {
      */
     public static RootHelperClientUsingPathContent startAndGetRH(Context... context) {
         Context c = context.length > 0 ? context[0]:MainActivity.mainActivityContext;
+        long startupStart = SystemClock.elapsedRealtime();
 
         SocketNames socketName = SocketNames.theroothelper;
         Process p;
         RootHelperClientUsingPathContent rh = null;
         long pid; // communicated by RH server itself once successfully started
+        RootHelperConnectionPool pool = RootHelperConnectionPool.get(socketName);
+        pool.invalidate(); // connections to a previous RH instance, if any, are not valid anymore
         try {
+            long spawnStart = SystemClock.elapsedRealtime();
             p = runRootHelper(c,true,socketName);
 
             rh = new RootHelperClientUsingPathContent(socketName);
-            pid = rh.checkConnection();
-            while (pid < 0) {
-                try {
-                    p.exitValue();
-                    // process exited prematurely, failed to start roothelper process in maximum-privilege mode
-                    rh = null;
-                    break;
-                }
-                catch (IllegalThreadStateException e) {
-                    try {
-                        Log.e(RootHandler.class.getName(),"Waiting for roothelper process to start...");
-                        Thread.currentThread().sleep(100);
-                    }
-                    catch (InterruptedException ignored) {}
-                }
-                pid = rh.checkConnection();
-            }
+            // process exited prematurely, failed to start roothelper process in maximum-privilege mode
+            pid = awaitReady(p,rh,spawnStart);
+            if (pid < 0) rh = null;
 
             if (rh != null) {
                 isRootAvailableAndGranted = true;
@@ -157,6 +195,8 @@ public class RootHandler {
                 // here started RH in root mode and connection ok
 
                 if (pid <= 0) Log.e(RootHandler.class.getName(),"Failed to get roothelper pid: "+pid);
+                pool.warmUp();
+                logStartupMetrics(startupStart);
                 return rh;
             }
         }
@@ -166,31 +206,20 @@ public class RootHandler {
         Log.i(RootHandler.class.getName(),"Root privileges not available, starting roothelper in standard mode...");
 
         try {
+            long spawnStart = SystemClock.elapsedRealtime();
             p = runRootHelper(c,false,socketName);
 
             rh = new RootHelperClientUsingPathContent(socketName);
-            pid = rh.checkConnection();
-            while (pid < 0) {
-                try {
-                    p.exitValue();
-                    // process exited prematurely, failed to start roothelper process even in standard mode (should not happen)
-                    rh = null;
-                    break;
-                }
-                catch (IllegalThreadStateException e) {
-                    try {
-                        Log.e(RootHandler.class.getName(),"Waiting for roothelper process to start...");
-                        Thread.currentThread().sleep(100);
-                    }
-                    catch (InterruptedException ignored) {}
-                }
-                pid = rh.checkConnection();
-            }
+            // process exited prematurely, failed to start roothelper process even in standard mode (should not happen)
+            pid = awaitReady(p,rh,spawnStart);
+            if (pid < 0) rh = null;
 
             if (rh != null) {
                 // here started RH in normal mode and connection ok
 
                 if (pid <= 0) Log.e(RootHandler.class.getName(),"Failed to get roothelper pid: "+pid);
+                pool.warmUp();
+                logStartupMetrics(startupStart);
             }
         }
         catch (IOException e) {
@@ -2,10 +2,13 @@ package it.pgp.xfiles.roothelperclient;
 
 import android.net.LocalSocket;
 import android.net.LocalSocketAddress;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
@@ -13,14 +16,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import it.pgp.xfiles.BrowserItem;
 import it.pgp.xfiles.CopyMoveListPathContent;
@@ -54,24 +57,25 @@ import it.pgp.xfiles.roothelperclient.reqs.setPermission_rq;
 import it.pgp.xfiles.roothelperclient.reqs.singleStats_rq;
 import it.pgp.xfiles.roothelperclient.resps.exists_resp;
 import it.pgp.xfiles.roothelperclient.resps.folderStats_resp;
-import it.pgp.xfiles.roothelperclient.resps.ls_resp;
+import it.pgp.xfiles.roothelperclient.resps.RespDecoder;
 import it.pgp.xfiles.roothelperclient.resps.pem_keygen_resp;
 import it.pgp.xfiles.roothelperclient.resps.singleStats_resp;
 import it.pgp.xfiles.roothelperclient.reqs.setOwnership_rq;
 import it.pgp.xfiles.service.BaseBackgroundTask;
 import it.pgp.xfiles.service.SocketNames;
 import it.pgp.xfiles.service.visualization.ProgressIndicator;
-import it.pgp.xfiles.utils.ArchiveVMap;
-import it.pgp.xfiles.utils.FileOperationHelperUsingPathContent;
-import it.pgp.xfiles.utils.GenericMRU;
+import it.pgp.xfiles.utils.ArchiveIndex;
+import it.pgp.xfiles.utils.ArchiveIndexCache;
+import it.pgp.xfiles.utils.AsyncFileOperationHelperUsingPathContent;
 import it.pgp.xfiles.utils.Misc;
 import it.pgp.xfiles.utils.ProgressConflictHandler;
+import it.pgp.xfiles.utils.StampedLruCache;
 import it.pgp.xfiles.utils.StreamsPair;
 import it.pgp.xfiles.utils.dircontent.ArchiveSubDirWithContent;
 import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
 import it.pgp.xfiles.utils.dircontent.LocalDirWithContent;
+import it.pgp.xfiles.utils.dircontent.ProgressiveListing;
 import it.pgp.xfiles.utils.dircontent.XFilesRemoteDirWithContent;
-import it.pgp.xfiles.utils.iterators.VMapSubTreeIterable;
 import it.pgp.xfiles.utils.pathcontent.ArchivePathContent;
 import it.pgp.xfiles.utils.pathcontent.BasePathContent;
 import it.pgp.xfiles.utils.pathcontent.LocalPathContent;
@@ -81,7 +85,7 @@ import it.pgp.xfiles.utils.pathcontent.XFilesRemotePathContent;
  * Created by pgp on 20/01/17
  */
 
-public class RootHelperClientUsingPathContent implements FileOperationHelperUsingPathContent {
+public class RootHelperClientUsingPathContent implements AsyncFileOperationHelperUsingPathContent {
 
     private static final long EOF_ind = ProgressConflictHandler.Status.EOF.getStatus(); // end of file
     private static final long EOFs_ind = ProgressConflictHandler.Status.EOFs.getStatus(); // end of files
@@ -118,24 +122,72 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
         this.address = address;
     }
 
+    /**
+     * Connection borrowed from the {@link RootHelperConnectionPool} of this client's address,
+     * given back on close
+     */
     public class RootHelperStreams extends StreamsPair {
 
-        public final LocalSocket ls;
+        public LocalSocket ls;
+        private final RootHelperConnectionPool pool;
+        private final ReconnectingOutputStream ro = new ReconnectingOutputStream();
+        private boolean closed = false;
 
         public RootHelperStreams() throws IOException {
-            LocalSocket clientSocket = new LocalSocket();
-            LocalSocketAddress socketAddress = new LocalSocketAddress(address.name(), LocalSocketAddress.Namespace.ABSTRACT);
-            clientSocket.connect(socketAddress);
-            Log.e("roothelperclient","Connected");
+            pool = RootHelperConnectionPool.get(address);
+            attach(pool.borrow());
+            o = ro;
+        }
 
+        private void attach(LocalSocket clientSocket) throws IOException {
             ls = clientSocket;
-            o = clientSocket.getOutputStream();
-            i = new DataInputStream(clientSocket.getInputStream());
-            Log.e("roothelperclient","Streams acquired");
+            ro.wrapped = clientSocket.getOutputStream();
+            i = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
+        }
+
+        /**
+         * A pooled connection may have been left dangling by a restarted or killed RH server;
+         * if the very first write of a request fails, nothing has reached the server yet,
+         * so it is safe to switch to a fresh connection and retry the write once
+         */
+        private class ReconnectingOutputStream extends OutputStream {
+            private OutputStream wrapped;
+            private boolean hasWritten = false;
+
+            private OutputStream reconnect(IOException cause) throws IOException {
+                if (hasWritten) throw cause;
+                Log.e("roothelperclient","Stale pooled connection, reconnecting");
+                closeSocket();
+                attach(pool.reconnect());
+                return wrapped;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                try {wrapped.write(b);}
+                catch (IOException e) {reconnect(e).write(b);}
+                hasWritten = true;
+            }
+
+            @Override
+            public void write(@NonNull byte[] b, int off, int len) throws IOException {
+                try {wrapped.write(b,off,len);}
+                catch (IOException e) {reconnect(e).write(b,off,len);}
+                hasWritten = true;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                wrapped.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                wrapped.close();
+            }
         }
 
-        @Override
-        public void close() {
+        private void closeSocket() {
             // Close method on streams won't work, use shutdown methods
             // Web source:
             // https://stackoverflow.com/questions/10984175/android-localsocket-wont-close-when-in-blocked-read
@@ -144,7 +196,17 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
             try {ls.shutdownOutput();} catch (Exception ignored) {}
 
             try {i.close();} catch (Exception ignored) {}
-            try {o.close();} catch (Exception ignored) {}
+            try {ro.wrapped.close();} catch (Exception ignored) {}
+        }
+
+        @Override
+        public void close() {
+            // RH server serves one request per connection, so the socket is discarded and the pool refilled
+            closeSocket();
+            if (!closed) {
+                closed = true;
+                pool.release();
+            }
         }
     }
 
@@ -152,6 +214,12 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
         return new RootHelperStreams();
     }
 
+    private static RemoteManager getRemoteClient(BasePathContent bpc) throws IOException {
+        RemoteManager rm = MainActivity.rootHelperRemoteClientManager.getClient(((XFilesRemotePathContent)bpc).serverHost,true);
+        if (rm == null) throw new IOException("XRE Session not connected");
+        return rm;
+    }
+
     public StreamsPair getStreams(BasePathContent bpc, boolean isFastClient) throws IOException {
         if (bpc instanceof LocalPathContent) {
             return new RootHelperStreams();
@@ -166,7 +234,10 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
     }
 
     // TODO may be useful in all long-term tasks, change following comment if needed
-    public StreamsPair rs; // exposed in order to force closing connection and terminate forked p7zip process on service close
+    // exposed in order to force closing connection and terminate forked p7zip process on service close;
+    // only used by long-term operations (compress, extract, copy/move), run by a dedicated instance of their task
+    // (see RootHelperClientTask); other operations, which may run concurrently on a shared instance, use their own
+    public StreamsPair rs;
 
     // returns pid on successful connection, -1 otherwise
     public long checkConnection() {
@@ -200,7 +271,7 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
             Log.e("roothelperclient","Connected");
 
             o = clientSocket.getOutputStream();
-            i = new DataInputStream(clientSocket.getInputStream());
+            i = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
             Log.e("roothelperclient","Streams acquired");
         }
 
@@ -238,45 +309,60 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
     // only with RESPONSE_OK
     public static List<BrowserItem> assembleContentFromLsResps(DataInputStream clientInStream) throws IOException {
         List<BrowserItem> dirContent = new ArrayList<>();
-        // read len, if 0 stop reading
-        ls_resp resp = new ls_resp(clientInStream);
-        while (resp.filename != null) {
-            // TODO modify BrowserItem to host all permission instead of only isDirectory
-//            BrowserItem b =
-//                    new BrowserItem(new String(resp.filename,"UTF-8"),
-//                            resp.size,
-//                            new Date(resp.date*1000),
-//                            new String(resp.permissions, "UTF-8").charAt(0) == 'd');
-//            dirContent.add(b);
-            dirContent.add(new BrowserItem(resp));
-            resp = new ls_resp(clientInStream);
-        }
+        assembleContentFromLsResps(new RespDecoder(clientInStream),dirContent,Integer.MAX_VALUE);
         return dirContent;
     }
 
-    private ArchiveVMap fillArchiveVMap(DataInputStream clientInStream) throws IOException {
-        ArchiveVMap v = new ArchiveVMap();
+    /**
+     * Reads at most maxItems entries into dirContent
+     * @return true if the end of list has been reached
+     */
+    private static boolean assembleContentFromLsResps(RespDecoder decoder, List<BrowserItem> dirContent, int maxItems) throws IOException {
         // read len, if 0 stop reading
-        ls_resp resp = new ls_resp(clientInStream);
-        int entryCnt = 0; // for extracting selected files, it is necessary to know their position in the archive entries list
-        while (resp.filename != null) {
-            List<String> inArchivePath = new ArrayList<>();
-            inArchivePath.addAll(Arrays.asList((new String(resp.filename,"UTF-8")).split("/")));
-            inArchivePath.add(ArchiveVMap.sentinelKeyForNodeProperties);
+        for (int n=0; n<maxItems; n++) {
+            BrowserItem b = decoder.nextBrowserItem();
+            if (b == null) return true;
+            dirContent.add(b);
+        }
+        return false;
+    }
 
-            HashMap<String,Object> nodeProps = new HashMap<>();
+    /**
+     * Remaining ls responses of a local listing, the pooled connection
+     * is owned by this object until the list is fully read or abandoned
+     */
+    private static class LsRespsListing extends ProgressiveListing {
+        private final StreamsPair rs;
+        private final RespDecoder decoder;
 
-            nodeProps.put("i",entryCnt);
-            nodeProps.put("size",resp.size);
-            nodeProps.put("date",new Date(resp.date*1000L));
-            nodeProps.put("isDir",new String(resp.permissions, "UTF-8").charAt(0) == 'd');
+        LsRespsListing(StreamsPair rs, RespDecoder decoder) {
+            this.rs = rs;
+            this.decoder = decoder;
+        }
 
-            v.set(nodeProps,inArchivePath.toArray()); // put in vMap with properties
+        @Override
+        public List<BrowserItem> nextBatch(int maxItems) throws IOException {
+            List<BrowserItem> batch = new ArrayList<>();
+            if (!complete) complete = assembleContentFromLsResps(decoder,batch,maxItems);
+            if (complete) close();
+            return batch;
+        }
 
-            resp = new ls_resp(clientInStream);
-            entryCnt++;
+        @Override
+        public void close() {
+            rs.close();
         }
-        return v;
+    }
+
+    private ArchiveIndex fillArchiveIndex(DataInputStream clientInStream) throws IOException {
+        ArchiveIndex index = new ArchiveIndex();
+        RespDecoder decoder = new RespDecoder(clientInStream);
+        // read len, if 0 stop reading
+        // for extracting selected files, it is necessary to know their position in the archive entries list (kept by the index)
+        while (decoder.nextLsRecord())
+            index.add(decoder.getNameBuffer(),decoder.nameLen,decoder.size,decoder.date,decoder.permissions[0] == 'd');
+        index.finish();
+        return index;
     }
 
     // ls interaction return list of BrowserItem (which is only a representation class, not a business logic one)
@@ -284,9 +370,22 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
     // an intermediate DirWithContent object
 
     public GenericDirWithContent listDirectory(BasePathContent dirPath) {
+        return listDirectory(dirPath,0);
+    }
+
+    /**
+     * @param firstBatchSize if greater than 0, for local paths only the first firstBatchSize entries are read,
+     *                       the remaining ones are left to the returned {@link GenericDirWithContent#remaining};
+     *                       remote listings are always read entirely, since XRE connections are shared
+     */
+    public GenericDirWithContent listDirectory(BasePathContent dirPath, int firstBatchSize) {
+        if (dirPath instanceof XFilesRemotePathContent)
+            return listRemoteDirectory((XFilesRemotePathContent) dirPath);
+
         StreamsPair rs = null;
+        ProgressiveListing remaining = null;
         try {
-            rs = getStreams(dirPath,true);
+            rs = getStreams();
 
             List<BrowserItem> dirContent;
             SinglePath_rq req = new ls_rq(dirPath.dir);
@@ -305,7 +404,13 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
 
             switch(c) {
                 case RESPONSE_OK:
-                    dirContent = assembleContentFromLsResps(rs.i);
+                    if (firstBatchSize > 0) {
+                        dirContent = new ArrayList<>();
+                        RespDecoder decoder = new RespDecoder(rs.i);
+                        if (!assembleContentFromLsResps(decoder,dirContent,firstBatchSize))
+                            remaining = new LsRespsListing(rs,decoder);
+                    }
+                    else dirContent = assembleContentFromLsResps(rs.i);
                     break;
                 case RESPONSE_ERROR:
                     // propagate errno within DirWithContentUsingBrowserItems object
@@ -319,46 +424,218 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
             }
 
             // successful return, change current helper
-            MainActivity.currentHelper = this;
+            MainActivity.setCurrentHelperOnListing(this);
 
-            if (dirPath instanceof LocalPathContent)
-                return new LocalDirWithContent(dirPath.dir,dirContent);
-            else
-                return new XFilesRemoteDirWithContent(
-                        ((XFilesRemotePathContent)dirPath).serverHost,
-                        dirPath.dir,
-                        dirContent);
+            LocalDirWithContent dwc = new LocalDirWithContent(dirPath.dir,dirContent);
+            dwc.remaining = remaining;
+            return dwc;
         }
         catch (IOException e) {
-            try { rs.close(); } catch (Exception ignored) {}
-            if (dirPath instanceof LocalPathContent)
-                return new LocalDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
-            else {
-                MainActivity.rootHelperRemoteClientManager.fastClients.remove(((XFilesRemotePathContent)dirPath).serverHost);
-                return new XFilesRemoteDirWithContent(
-                        ((XFilesRemotePathContent)dirPath).serverHost,
-                        FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
-            }
+            return new LocalDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
         }
         finally {
-            if (dirPath instanceof LocalPathContent) {
+            if (rs != null && remaining == null) {
                 try { rs.close(); } catch (Exception ignored) {}
             }
         }
     }
 
+    // remote listings are always read entirely, since the XRE session is shared with other in-flight requests
+    private GenericDirWithContent listRemoteDirectory(XFilesRemotePathContent dirPath) {
+        RemoteManager rm = MainActivity.rootHelperRemoteClientManager.getClient(dirPath.serverHost,true);
+        if (rm == null)
+            return new XFilesRemoteDirWithContent(dirPath.serverHost,FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
+        try {
+            List<BrowserItem> dirContent = rm.exchange(new ls_rq(dirPath.dir)::write, i -> {
+                byte responseByte = i.readByte();
+                switch(ControlCodes.getCode(responseByte)) {
+                    case RESPONSE_OK:
+                        return assembleContentFromLsResps(i);
+                    case RESPONSE_ERROR:
+                        byte[] errno_ = new byte[4];
+                        i.readFully(errno_);
+                        Log.e("roothelper","Error returned from roothelper server: "+Misc.castBytesToUnsignedNumber(errno_,4));
+                        return null;
+                    default:
+                        throw new RuntimeException("Unexpected response code from roothelper server: "+(int)responseByte);
+                }
+            });
+            if (dirContent == null)
+                return new XFilesRemoteDirWithContent(dirPath.serverHost,FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
+
+            // successful return, change current helper
+            MainActivity.setCurrentHelperOnListing(this);
+            return new XFilesRemoteDirWithContent(dirPath.serverHost,dirPath.dir,dirContent);
+        }
+        catch (IOException e) {
+            return new XFilesRemoteDirWithContent(dirPath.serverHost,FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
+        }
+    }
+
     // because there are points when a new RootHelper instance is created locally
-    private static final GenericMRU<String,ArchiveVMap> archiveMRU = new GenericMRU<>(10); // up to 10 entries
+    private static final StampedLruCache<String,ArchiveIndex> archiveMRU = new StampedLruCache<>(
+            "archiveIndexes",Runtime.getRuntime().maxMemory()/8,ArchiveIndex::getMemoryWeight);
+
+    // while browsing within an archive, its index may have been evicted meanwhile (e.g. on memory pressure), so it is reloaded;
+    // the reloaded one is used directly, since it may not be retained by the cache
+    private ArchiveIndex getArchiveIndex(ArchivePathContent pathname) {
+        ArchiveIndex v = archiveMRU.get(pathname.archivePath);
+        if (v != null) return v;
+        GenericDirWithContent dwc = listArchive(new ArchivePathContent(pathname.archivePath,"",pathname.password));
+        return dwc instanceof ArchiveSubDirWithContent ? ((ArchiveSubDirWithContent)dwc).index : null;
+    }
+
+    // archives being enumerated by streamed listings, by path and modification time (see pendingKey)
+    private static final ConcurrentHashMap<String,ArchiveStreamListing> pendingStreams = new ConcurrentHashMap<>();
+    private static final long PENDING_STREAM_WAIT_MS = 10000; // then, the archive is enumerated again
+
+    private static String pendingKey(String path, long mtime) {
+        return path+"|"+mtime;
+    }
+
+    /**
+     * Streamed enumeration of an archive, building its index while the entries of its root are displayed
+     * (see {@link #listArchive(BasePathContent, boolean)}); since entries come in archive order, each batch
+     * holds the children of the root discovered meanwhile. If the listing is abandoned before the end
+     * (e.g. navigating into a subdirectory), the rest of the stream is still read in background, so that
+     * the index is completed and cached anyway; meanwhile, other listings of the archive wait for it
+     * instead of enumerating it again.
+     * Batches are bounded also by archive records read and by time, since an archive may hold many entries
+     * before (or without) new children of the root.
+     */
+    private static class ArchiveStreamListing extends ProgressiveListing {
+        private static final int MAX_BATCH_RECORDS = 20000;
+        private static final long MAX_BATCH_TIME_MS = 100;
+        private static final int CLOCK_CHECK_RECORDS = 256;
+
+        private final StreamsPair rs;
+        private final RespDecoder decoder;
+        private final ArchiveIndex index = new ArchiveIndex();
+        private final String path;
+        private final long size, mtime;
+        private final boolean persistable;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private boolean ended, draining;
+        // directories among the returned root entries, and their nodes, for setting their total sizes once the index is complete
+        private final List<BrowserItem> rootDirItems = new ArrayList<>();
+        private final List<Integer> rootDirNodes = new ArrayList<>();
+
+        ArchiveStreamListing(StreamsPair rs, String path, long size, long mtime, boolean persistable) {
+            this.rs = rs;
+            this.decoder = new RespDecoder(rs.i);
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.persistable = persistable;
+        }
+
+        /**
+         * Reads entries until maxItems new children of the root have been found, until the record or time bound
+         * of a batch is reached, or until the end of the stream
+         * @param batch null for reading until the end, without collecting entries
+         */
+        private void read(List<BrowserItem> batch, int maxItems) throws IOException {
+            long deadline = SystemClock.elapsedRealtime() + MAX_BATCH_TIME_MS;
+            try {
+                for (int records=1; batch == null || batch.size() < maxItems; records++) {
+                    if (!decoder.nextLsRecord()) {
+                        commit();
+                        return;
+                    }
+                    int before = index.getNodeCount();
+                    index.add(decoder.getNameBuffer(),decoder.nameLen,decoder.size,decoder.date,decoder.permissions[0] == 'd');
+                    if (batch == null) continue;
+                    for (int n=before;n<index.getNodeCount();n++) {
+                        if (index.getParent(n) != ArchiveIndex.ROOT) continue;
+                        BrowserItem b = new BrowserItem(index.getName(n),index.getSize(n),index.getDate(n),index.isDir(n),false);
+                        batch.add(b);
+                        if (b.isDirectory) {
+                            rootDirItems.add(b);
+                            rootDirNodes.add(n);
+                        }
+                    }
+                    if (records >= MAX_BATCH_RECORDS ||
+                            (records % CLOCK_CHECK_RECORDS == 0 && SystemClock.elapsedRealtime() >= deadline))
+                        return;
+                }
+            }
+            catch (IOException e) {
+                end();
+                throw e;
+            }
+        }
+
+        // the total sizes are set before the listing is reported as complete, so that they are shown with its last batch
+        private void commit() {
+            index.finish();
+            for (int i=0;i<rootDirItems.size();i++)
+                rootDirItems.get(i).setTotalSize(index.getTotalSize(rootDirNodes.get(i)));
+            archiveMRU.put(path,index,mtime);
+            if (persistable)
+                ArchiveIndexCache.getInstance(MainActivity.mainActivityContext).store(path,size,mtime,index);
+            complete = true;
+            end();
+        }
+
+        private void end() {
+            ended = true;
+            rs.close();
+            pendingStreams.remove(pendingKey(path,mtime),this);
+            done.countDown();
+        }
+
+        /**
+         * @return true if the index has been completed (and cached) within the timeout
+         */
+        boolean awaitCompletion(long timeoutMs) {
+            try {
+                return done.await(timeoutMs,TimeUnit.MILLISECONDS) && complete;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public List<BrowserItem> nextBatch(int maxItems) throws IOException {
+            List<BrowserItem> batch = new ArrayList<>();
+            if (!ended) read(batch,maxItems);
+            return batch;
+        }
+
+        @Override
+        public void close() {
+            if (ended || draining) return;
+            draining = true;
+            new Thread(() -> {
+                try {
+                    read(null,0);
+                }
+                catch (IOException e) {
+                    Log.e(getClass().getName(),"Error while completing index of archive "+path,e);
+                }
+            },"ArchiveIndexDrain").start();
+        }
+    }
 
-    // password may be null
     @Override
     public GenericDirWithContent listArchive(BasePathContent archivePath) {
+        return listArchive(archivePath,false);
+    }
+
+    /**
+     * password may be null
+     * @param progressive if true, and the root of an archive not yet indexed is requested, its entries
+     *                    are returned as soon as they are known (see {@link ArchiveStreamListing})
+     */
+    public GenericDirWithContent listArchive(BasePathContent archivePath, boolean progressive) {
         SingleStatsItem statForModifiedDate;
         Date modifiedFileDate;
         String path;
         String subpath;
         String password;
-        ArchiveVMap archiveMap;
+        ArchiveIndex archiveMap;
 
         try {
             // retrieve modification time of the archive file
@@ -385,7 +662,20 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
         }
 
         // check if the base archive exists in MRU and has not been modified, or not exists
-        archiveMap = archiveMRU.getByPath(path,modifiedFileDate);
+        archiveMap = archiveMRU.get(path,modifiedFileDate.getTime());
+        // then in the persistent cache (only for archives opened without password, see ArchiveIndexCache)
+        boolean persistable = (password == null || password.isEmpty()) && MainActivity.mainActivityContext != null;
+        if (archiveMap == null && persistable) {
+            archiveMap = ArchiveIndexCache.getInstance(MainActivity.mainActivityContext).load(
+                    path,statForModifiedDate.size,modifiedFileDate.getTime());
+            if (archiveMap != null) archiveMRU.put(path,archiveMap,modifiedFileDate.getTime());
+        }
+        // or being enumerated by a streamed listing (never waited for on the UI thread)
+        if (archiveMap == null && Looper.myLooper() != Looper.getMainLooper()) {
+            ArchiveStreamListing pending = pendingStreams.get(pendingKey(path,modifiedFileDate.getTime()));
+            if (pending != null && pending.awaitCompletion(PENDING_STREAM_WAIT_MS))
+                archiveMap = pending.index;
+        }
         if (archiveMap == null) { // file not yet in cache or conflicting modified dates
             // send listArchive request to rootHelper
             // zero-length password not allowed, used by roothelper protocol as indication of no password provided
@@ -394,56 +684,62 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
                     password==null?new byte[0]:password.getBytes()
             );
 
-            try (StreamsPair rs = getStreams()) {
+            StreamsPair rs = null;
+            ArchiveStreamListing listing = null; // owns the streams, if created
+            try {
+                rs = getStreams();
                 listArchive_rq.write(rs.o);
 
                 // receive response
                 int errno = receiveBaseResponse(rs.i);
-                if (errno==0) archiveMap = fillArchiveVMap(rs.i);
-                else if (errno == 0x101010) return new GenericDirWithContent(FileOpsErrorCodes.NULL_OR_WRONG_PASSWORD);
-                else return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
+                if (errno == 0x101010) return new GenericDirWithContent(FileOpsErrorCodes.NULL_OR_WRONG_PASSWORD);
+                else if (errno != 0) return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
+
+                if (progressive && (subpath.isEmpty() || subpath.equals("/"))) {
+                    listing = new ArchiveStreamListing(rs,path,statForModifiedDate.size,modifiedFileDate.getTime(),persistable);
+                    pendingStreams.put(pendingKey(path,modifiedFileDate.getTime()),listing);
+                    GenericDirWithContent dwc = new ArchiveSubDirWithContent(path,subpath,listing.nextBatch(ProgressiveListing.FIRST_BATCH_SIZE));
+                    if (!listing.isComplete()) dwc.remaining = listing;
+                    return dwc;
+                }
+                archiveMap = fillArchiveIndex(rs.i);
             }
             catch (IOException e) {
                 return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
             }
+            finally {
+                if (rs != null && listing == null) rs.close();
+            }
 
-            archiveMRU.setLatest(path,archiveMap,modifiedFileDate);
+            archiveMRU.put(path,archiveMap,modifiedFileDate.getTime());
+            if (persistable)
+                ArchiveIndexCache.getInstance(MainActivity.mainActivityContext).store(
+                        path,statForModifiedDate.size,modifiedFileDate.getTime(),archiveMap);
         }
         // at this point, if the file exists, the vmap is non null
         // retrieve subdir-only entries into genericdirwithcontent object
 
-        List<BrowserItem> content = new ArrayList<>();
-        List<String> inArchivePath = Arrays.asList(subpath.split("/"));
-
-        if (inArchivePath.size()>0) { // get subdir children
-            Map<String,Object> map = (Map) archiveMap.get(inArchivePath.toArray());
-            for (Map.Entry entry: map.entrySet()) {
-                if (
-                        entry != null &&
-                                !entry.getKey().equals(ArchiveVMap.sentinelKeyForNodeProperties)) {
-                    content.add(
-                            new BrowserItem(
-                                    (String)(entry.getKey()),
-                                    (Map<String,Object>)((Map<String,Object>)entry.getValue()).get(ArchiveVMap.sentinelKeyForNodeProperties)
-                            )
-                    );
-                }
-            }
-        }
-        else { // get children of root
-            for (Map.Entry entry: archiveMap.h.entrySet()) {
-                if (!entry.getKey().equals(ArchiveVMap.sentinelKeyForNodeProperties)) {
-                    content.add(
-                            new BrowserItem(
-                                    (String)(entry.getKey()),
-                                    (Map<String,Object>)((Map<String,Object>)entry.getValue()).get(ArchiveVMap.sentinelKeyForNodeProperties)
-                            )
-                    );
-                }
-            }
-        }
+        int node = archiveMap.find(subpath);
+        if (node == ArchiveIndex.NOT_FOUND || !archiveMap.isDir(node))
+            return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
 
-        return new ArchiveSubDirWithContent(path,subpath,content);
+        int childCount = archiveMap.getChildCount(node);
+        List<BrowserItem> content = new ArrayList<>(childCount);
+        for (int i=0;i<childCount;i++) {
+            int child = archiveMap.getChild(node,i);
+            BrowserItem b = new BrowserItem(
+                    archiveMap.getName(child),
+                    archiveMap.getSize(child),
+                    archiveMap.getDate(child),
+                    archiveMap.isDir(child),
+                    false); // assume no directory softlink in archive
+            if (b.isDirectory) b.setTotalSize(archiveMap.getTotalSize(child));
+            content.add(b);
+        }
+
+        ArchiveSubDirWithContent dwc = new ArchiveSubDirWithContent(path,subpath,content);
+        dwc.index = archiveMap;
+        return dwc;
     }
 
     @Override
@@ -533,7 +829,7 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
 
         switch (srcArchive.providerType) {
             case LOCAL:
-                // entryIdxs will be ignored, extract all, no need to preload VMap
+                // entryIdxs will be ignored, extract all, no need to preload archive index
                 return extract(srcArchive.dir,destDirectory.dir,password,null); // extract all
             case LOCAL_WITHIN_ARCHIVE:
                 break;
@@ -542,8 +838,8 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
         }
 
         // since this point, we are LOCAL_WITHIN_ARCHIVE
-        ArchiveVMap avm = archiveMRU.getByPath(((ArchivePathContent)srcArchive).archivePath);
-        if (avm == null) throw new RuntimeException("VMap should be non-null once in archive!");
+        ArchiveIndex avm = getArchiveIndex((ArchivePathContent)srcArchive);
+        if (avm == null) throw new RuntimeException("Archive index should be non-null once in archive!");
 
         List<Integer> entries = new ArrayList<>();
 
@@ -612,20 +908,21 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
         }
     }
 
-    private List<Integer> getEntries(ArchiveVMap vMap, String relToArchivePathname) throws IOException {
+    // entry indexes of the node and of its subtree, implicit directories excluded
+    private List<Integer> getEntries(ArchiveIndex index, String relToArchivePathname) throws IOException {
         List<Integer> entries = new ArrayList<>();
 
         if (relToArchivePathname.equals("") || relToArchivePathname.equals("/"))
             throw new RuntimeException("This condition should be managed earlier than here");
 
-        VMapSubTreeIterable it = new VMapSubTreeIterable(vMap,relToArchivePathname.split("/"));
+        int node = index.find(relToArchivePathname);
+        if (node == ArchiveIndex.NOT_FOUND) return entries;
+        if (index.getEntryIndex(node) != ArchiveIndex.NOT_FOUND) entries.add(index.getEntryIndex(node));
 
-        for (Map.Entry me : it) {
-            if (me.getKey().equals(ArchiveVMap.sentinelKeyForNodeProperties)) {
-                Map x = (Map)me.getValue();
-                Integer ii = (Integer) x.get("i");
-                entries.add(ii);
-            }
+        ArchiveIndex.SubtreeIterator it = index.subtree(node);
+        while (it.hasNext()) {
+            int ii = index.getEntryIndex(it.next());
+            if (ii != ArchiveIndex.NOT_FOUND) entries.add(ii);
         }
 
         return entries;
@@ -694,10 +991,14 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
                 new create_rq(path.dir, fileOptions[0]):
                 new create_rq(path.dir, fileOrDirectory);
         int errno;
-        StreamsPair rs = getStreams(path,true);
-        req.write(rs.o);
-        Log.e("roothelperclient","Create request sent");
-        errno = receiveBaseResponse(rs.i);
+        if (path instanceof XFilesRemotePathContent) {
+            errno = getRemoteClient(path).exchange(req::write,this::receiveBaseResponse);
+        }
+        else try (StreamsPair rs = getStreams()) {
+            req.write(rs.o);
+            Log.e("roothelperclient","Create request sent");
+            errno = receiveBaseResponse(rs.i);
+        }
         if (errno != 0) throw new IOException(fileOrDirectory.name().toLowerCase()+" creation error");
     }
 
@@ -710,10 +1011,15 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
                 throw new RuntimeException("Origin and link path must belong to the same remote filesystem");
         }
 
-        StreamsPair rs = getStreams(originPath,true);
         link_rq rq = new link_rq(originPath.dir,linkPath.dir,isHardLink);
-        rq.write(rs.o);
-        int errno = receiveBaseResponse(rs.i);
+        int errno;
+        if (originPath instanceof XFilesRemotePathContent) {
+            errno = getRemoteClient(originPath).exchange(rq::write,this::receiveBaseResponse);
+        }
+        else try (StreamsPair rs = getStreams()) {
+            rq.write(rs.o);
+            errno = receiveBaseResponse(rs.i);
+        }
         if (errno != 0) throw new IOException("link creation error, errno is "+errno);
     }
 
@@ -731,7 +1037,7 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
                 catch (IOException ignored) {}
                 return ret;
             case LOCAL_WITHIN_ARCHIVE:
-                // TODO check existence in VMap
+                // TODO check existence in archive index
                 return ret;
             default:
                 throw new RuntimeException("Unsupported BasePathContent subtype in roothelperclient exists call");
@@ -750,39 +1056,35 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
         return existsIsFileIsDir(filePath,false,false,true).get(2);
     }
 
-    // TODO to be tested
-    // client test case for delete request-response interaction(s)
+    // one request per path, since RH server serves one request per connection;
+    // connections are taken from the pool, so no connect latency is paid per item
     @Override
     public void deleteFilesOrDirectories(List<BasePathContent> filePaths) throws IOException {
-        // TODO make one connection per set of delete requests
         for (BasePathContent filePath : filePaths) {
             SinglePath_rq req = new del_rq(filePath.dir);
-            StreamsPair rs = getStreams();
-
-            // send request
-            req.write(rs.o);
-            Log.e("roothelperclient","Del request sent");
-
-
-            // read responses (one item per file in directory)
-            // read control byte (ok or error)
-
-            byte responseByte = rs.i.readByte();
-            ControlCodes c = ControlCodes.getCode(responseByte);
-
-            switch(c) {
-                case RESPONSE_OK:
-                    Log.e("roothelper","OK returned from roothelper server for delete file: "+filePath.dir);
-                    break;
-                case RESPONSE_ERROR:
-                    byte[] errno_ = new byte[4];
-                    rs.i.readFully(errno_);
-                    int errno = (int) Misc.castBytesToUnsignedNumber(errno_,4);
-                    String msg = "Error returned from roothelper server: "+errno+" for file "+filePath.dir;
-                    Log.e("roothelper",msg);
-                    throw new IOException(msg);
-                default:
-                    throw new RuntimeException("Unexpected response code from roothelper server: "+(int)responseByte);
+            try (StreamsPair rs = getStreams()) {
+                // send request
+                req.write(rs.o);
+                Log.e("roothelperclient","Del request sent");
+
+                // read control byte (ok or error)
+                byte responseByte = rs.i.readByte();
+                ControlCodes c = ControlCodes.getCode(responseByte);
+
+                switch(c) {
+                    case RESPONSE_OK:
+                        Log.e("roothelper","OK returned from roothelper server for delete file: "+filePath.dir);
+                        break;
+                    case RESPONSE_ERROR:
+                        byte[] errno_ = new byte[4];
+                        rs.i.readFully(errno_);
+                        int errno = (int) Misc.castBytesToUnsignedNumber(errno_,4);
+                        String msg = "Error returned from roothelper server: "+errno+" for file "+filePath.dir;
+                        Log.e("roothelper",msg);
+                        throw new IOException(msg);
+                    default:
+                        throw new RuntimeException("Unexpected response code from roothelper server: "+(int)responseByte);
+                }
             }
         }
     }
@@ -823,23 +1125,24 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
                 if (receiveBaseResponse(rs.i) != 0) return null;
 
                 // receive and return response
-                singleStats_resp resp = new singleStats_resp(rs.i);
+                singleStats_resp resp = new RespDecoder(rs.i).readSingleStats();
                 rs.close();
                 return new SingleStatsItem(resp);
 
             case LOCAL_WITHIN_ARCHIVE:
-                ArchiveVMap v = archiveMRU.getByPath(((ArchivePathContent)pathname).archivePath);
+                ArchiveIndex v = getArchiveIndex((ArchivePathContent)pathname);
                 if (v == null)
-                    throw new RuntimeException("ArchiveVMap should already be populated within archive");
-                Map nodeProps = v.getNodeProps(pathname.dir);
+                    throw new RuntimeException("Archive index should already be populated within archive");
+                int node = v.find(pathname.dir);
+                if (node == ArchiveIndex.NOT_FOUND) return null;
                 return new SingleStatsItem(
                         "", // empty group
                         "", // empty owner
                         new Date(0L),
                         new Date(0L),
-                        (Date)nodeProps.get("date"),
-                        (boolean)nodeProps.get("isDir")?"d---------":"----------",
-                        (long)nodeProps.get("size")
+                        new Date(v.getDate(node)),
+                        v.isDir(node)?"d---------":"----------",
+                        v.getSize(node)
                 );
             case XFILES_REMOTE:
                 XFilesRemotePathContent xrpc = (XFilesRemotePathContent) pathname;
@@ -847,13 +1150,11 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
                 if (rm == null) return null;
                 // TODO stats_resp
                 rq = new singleStats_rq(pathname.dir,FileMode.FILE);
-                rq.write(rm.o);
-
-                if (receiveBaseResponse(rm.i) != 0) return null;
-
-                // receive and return response
-                resp = new singleStats_resp(rm.i);
-                return new SingleStatsItem(resp);
+                resp = rm.exchange(rq::write, i -> {
+                    if (receiveBaseResponse(i) != 0) return null;
+                    return new RespDecoder(i).readSingleStats();
+                });
+                return resp == null ? null : new SingleStatsItem(resp);
 
             default:
                 throw new RuntimeException("Roothelper should not be the current helper when exploring SFTP paths");
@@ -877,43 +1178,34 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
 
             // TODO propagate errno along with response
             // receive and return response
-            folderStats_resp response = new folderStats_resp(rs.i);
+            folderStats_resp response = new RespDecoder(rs.i).readFolderStats();
             rs.close();
             return response;
         }
         else if(files.get(0).providerType==ProviderType.LOCAL_WITHIN_ARCHIVE) {
             // stat inner folder of archive (that is, archive is already opened and vmap is in memory)
-            ArchiveVMap v = archiveMRU.getByPath(((ArchivePathContent)files.get(0)).archivePath);
+            ArchiveIndex v = getArchiveIndex((ArchivePathContent)files.get(0));
             if (v == null)
-                throw new RuntimeException("ArchiveVMap should already be populated within archive");
+                throw new RuntimeException("Archive index should already be populated within archive");
 
-            long childrenFiles = 0,childrenDirs = 0, totalFiles = 0, totalDirs = 0, totalSize = 0;
+            // selected items themselves are counted as children
+            folderStats_resp stats = new folderStats_resp(0,0,0,0,0);
             for (BasePathContent pathname : files) {
-                VMapSubTreeIterable it = new VMapSubTreeIterable(v,pathname.dir.split("/"));
-
-                // FIXME currently, also the current folder node is taken into account when iterating (so, totalFolders is shifted up by 1)
-                for (Map.Entry me : it) {
-                    if (me.getKey().equals(ArchiveVMap.sentinelKeyForNodeProperties)) {
-                        Map x = (Map)me.getValue();
-                        // TODO populate children files and dirs as well
-                        boolean isDir = (boolean) x.get("isDir");
-                        if (isDir) {
-                            totalDirs++;
-                        }
-                        else {
-                            totalFiles++;
-                            totalSize += (long)x.get("size");
-                        }
-                    }
+                int node = v.find(pathname.dir);
+                if (node == ArchiveIndex.NOT_FOUND) continue;
+                if (v.isDir(node)) {
+                    stats.childrenDirs++;
+                    stats.totalDirs += 1 + v.getTotalDirs(node);
+                    stats.totalFiles += v.getTotalFiles(node);
+                    stats.totalSize += v.getTotalSize(node);
+                }
+                else {
+                    stats.childrenFiles++;
+                    stats.totalFiles++;
+                    stats.totalSize += v.getSize(node);
                 }
             }
-
-            return new folderStats_resp(
-                    childrenDirs,
-                    childrenFiles,
-                    totalDirs,
-                    totalFiles,
-                    totalSize);
+            return stats;
         }
         else if(files.get(0).providerType==ProviderType.XFILES_REMOTE) {
             XFilesRemotePathContent xrpc = (XFilesRemotePathContent) files.get(0);
@@ -923,21 +1215,23 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
             multiStats_rq rq = new multiStats_rq(new ArrayList<String>(){{
                 for (BasePathContent bpc : files) add(bpc.dir);
             }});
-            rq.write(rm.o);
-
-            int errno = receiveBaseResponse(rm.i);
-            if (errno != 0) {
-                Log.e("roothelperclient","Some files could not be stat, error code: "+errno);
-            }
-
-            // TODO propagate errno along with response
-            // receive and return response
-            return new folderStats_resp(rm.i);
+            return rm.exchange(rq::write,this::receiveFolderStats);
         }
         else
             throw new RuntimeException("Roothelper should not be the current helper when exploring SFTP paths");
     }
 
+    private folderStats_resp receiveFolderStats(DataInputStream i) throws IOException {
+        int errno = receiveBaseResponse(i);
+        if (errno != 0) {
+            Log.e("roothelperclient","Some files could not be stat, error code: "+errno);
+        }
+
+        // TODO propagate errno along with response
+        // receive and return response
+        return new RespDecoder(i).readFolderStats();
+    }
+
     @Override
     public folderStats_resp statFolder(BasePathContent pathname) throws IOException {
         if(pathname.providerType==ProviderType.LOCAL) {
@@ -953,42 +1247,25 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
 
             // TODO propagate errno along with response
             // receive and return response
-            folderStats_resp response = new folderStats_resp(rs.i);
+            folderStats_resp response = new RespDecoder(rs.i).readFolderStats();
             rs.close();
             return response;
         }
         else if(pathname.providerType==ProviderType.LOCAL_WITHIN_ARCHIVE) {
             // stat inner folder of archive (that is, archive is already opened and vmap is in memory)
-            ArchiveVMap v = archiveMRU.getByPath(((ArchivePathContent)pathname).archivePath);
+            ArchiveIndex v = getArchiveIndex((ArchivePathContent)pathname);
             if (v == null)
-                throw new RuntimeException("ArchiveVMap should already be populated within archive");
+                throw new RuntimeException("Archive index should already be populated within archive");
 
-            VMapSubTreeIterable it = new VMapSubTreeIterable(v,pathname.dir.split("/"));
-
-            long childrenFiles = 0,childrenDirs = 0, totalFiles = 0, totalDirs = 0, totalSize = 0;
-
-            // FIXME currently, also the current folder node is taken into account when iterating (so, totalFolders is shifted up by 1)
-            for (Map.Entry me : it) {
-                if (me.getKey().equals(ArchiveVMap.sentinelKeyForNodeProperties)) {
-                    Map x = (Map)me.getValue();
-                    // TODO populate children files and dirs as well
-                    boolean isDir = (boolean) x.get("isDir");
-                    if (isDir) {
-                        totalDirs++;
-                    }
-                    else {
-                        totalFiles++;
-                        totalSize += (long)x.get("size");
-                    }
-                }
-            }
+            int node = v.find(pathname.dir);
+            if (node == ArchiveIndex.NOT_FOUND) return null;
 
             return new folderStats_resp(
-                    childrenDirs,
-                    childrenFiles,
-                    totalDirs,
-                    totalFiles,
-                    totalSize);
+                    v.getChildDirCount(node),
+                    v.getChildFileCount(node),
+                    v.getTotalDirs(node),
+                    v.getTotalFiles(node),
+                    v.getTotalSize(node));
         }
         else if(pathname.providerType==ProviderType.XFILES_REMOTE) {
             XFilesRemotePathContent xrpc = (XFilesRemotePathContent) pathname;
@@ -996,16 +1273,7 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
             if (rm == null) return null;
 
             singleStats_rq rq = new singleStats_rq(pathname.dir,FileMode.DIRECTORY);
-            rq.write(rm.o);
-
-            int errno = receiveBaseResponse(rm.i);
-            if (errno != 0) {
-                Log.e("roothelperclient","Some files could not be stat, error code: "+errno);
-            }
-
-            // TODO propagate errno along with response
-            // receive and return response
-            return new folderStats_resp(rm.i);
+            return rm.exchange(rq::write,this::receiveFolderStats);
         }
         else
             throw new RuntimeException("Roothelper should not be the current helper when exploring SFTP paths");
@@ -1023,16 +1291,11 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
         rs = getStreams();
 
         // new mode: send list of file pairs in one request, then receive progress
-        List<String> srcs = new ArrayList<>();
-        List<String> dests = new ArrayList<>();
-
-        for (String pathname : files) {
-            srcs.add(pathname);
-            dests.add(dstFolder.dir+"/"+(new File(pathname).getName()));
-        }
+        // (pairs are generated while being sent, without building intermediate lists)
+        Iterable<String> dests = files.getPathsIn(dstFolder.dir);
 
         ListOfPathPairs_rq rq = (files.copyOrMove == CopyMoveMode.COPY) ?
-                new copylist_rq(srcs,dests):new movelist_rq(srcs,dests);
+                new copylist_rq(files,dests):new movelist_rq(files,dests);
         rq.write(rs.o);
 
         // for copy, receive total number of files for outer progress
@@ -1102,22 +1365,26 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
         if (pathname instanceof XFilesRemotePathContent)
             if (!ProgressIndicator.acquire(ForegroundServiceType.XRE_HASH)) return null;
 
+        StreamsPair rs = null; // not the instance field, hashes may be computed concurrently (see IOExecutors)
         try {
             rs = getStreams(pathname,false);
             SinglePath_rq rq = new hash_rq(pathname.dir,hashAlgorithm);
-            rq.write(rs.o);
-
-            int resp = receiveBaseResponse(rs.i);
-            if (resp == 0) {
+            RemoteManager.ResponseReader<byte[]> reader = i -> {
+                int resp = receiveBaseResponse(i);
+                if (resp != 0) return null;
                 byte[] digest = new byte[hashAlgorithm.getLength()];
-                rs.i.readFully(digest);
+                i.readFully(digest);
                 return digest;
-            }
-            return null;
+            };
+
+            // XRE sessions are shared with concurrent requests, which must not interleave with this one
+            if (rs instanceof RemoteManager) return ((RemoteManager)rs).exchange(rq::write,reader);
+            rq.write(rs.o);
+            return reader.read(rs.i);
         }
         catch (IOException e) {
             if (pathname instanceof XFilesRemotePathContent) {
-                rs.close();
+                if (rs != null) rs.close();
                 MainActivity.rootHelperRemoteClientManager.longTermClients.remove(((XFilesRemotePathContent)pathname).serverHost);
                 return null;
             }
@@ -1127,7 +1394,7 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
             if (pathname instanceof XFilesRemotePathContent) {
                 ProgressIndicator.release();
             }
-            else rs.close();
+            else if (rs != null) rs.close();
         }
 
     }
@@ -1135,6 +1402,7 @@ public class RootHelperClientUsingPathContent implements FileOperationHelperUsin
     public void killServer() throws IOException {
         Log.e("RHClient","killserver invoked!!!!!!!!!!!!!!!");
         StreamsPair rs = getStreams();
+        RootHelperConnectionPool.get(address).invalidate(); // idle connections would be left dangling
         byte end = ControlCodes.ACTION_EXIT.getValue();
         rs.o.write(end);
         rs.close();
@@ -0,0 +1,255 @@
+package it.pgp.xfiles.roothelperclient;
+
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.pgp.xfiles.service.SocketNames;
+
+/**
+ * Bounded pool of pre-established connections to a RootHelper server instance.
+ *
+ * The local RH server still serves exactly one request per accepted connection
+ * (see TODO in {@link RootHelperClientOnce}), so a connection cannot be re-used after
+ * its request has been served; what is pooled here is the connect/accept handshake:
+ * idle, already connected sockets are kept ready and handed out on {@link #borrow()},
+ * while used ones are discarded on {@link #release()}, which triggers a background refill.
+ *
+ * Health checks on borrow: socket still connected and not shut down, idle age below
+ * {@link #maxIdleAgeMs}, and connection generation equal to the current one
+ * (generation is bumped by {@link #invalidate()} whenever the RH process is (re)started or killed).
+ */
+
+public class RootHelperConnectionPool {
+
+    public static final int DEFAULT_MAX_IDLE = 4;
+    public static final long DEFAULT_MAX_IDLE_AGE_MS = 30000;
+
+    private static final Map<SocketNames,RootHelperConnectionPool> pools = new EnumMap<>(SocketNames.class);
+
+    public static synchronized RootHelperConnectionPool get(SocketNames address) {
+        RootHelperConnectionPool pool = pools.get(address);
+        if (pool == null) {
+            pool = new RootHelperConnectionPool(address, DEFAULT_MAX_IDLE, DEFAULT_MAX_IDLE_AGE_MS);
+            pools.put(address,pool);
+        }
+        return pool;
+    }
+
+    private static class IdleConnection {
+        final LocalSocket ls;
+        final long createdAt;
+        final int generation;
+
+        IdleConnection(LocalSocket ls, int generation) {
+            this.ls = ls;
+            this.createdAt = System.currentTimeMillis();
+            this.generation = generation;
+        }
+    }
+
+    public final SocketNames address;
+    private final int maxIdle;
+    private final long maxIdleAgeMs;
+
+    private final ArrayDeque<IdleConnection> idle = new ArrayDeque<>();
+    private final AtomicInteger generation = new AtomicInteger(0);
+
+    // refill is enabled only after the RH server has been seen alive (first successful connect),
+    // in order to avoid connection attempts in loop while the server is starting or has been killed
+    private final AtomicBoolean refillEnabled = new AtomicBoolean(false);
+    private final AtomicBoolean refillScheduled = new AtomicBoolean(false);
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r,"RHConnectionPoolRefiller");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // statistics
+    public final AtomicLong hits = new AtomicLong(0);
+    public final AtomicLong misses = new AtomicLong(0);
+    public final AtomicLong discarded = new AtomicLong(0);
+    public final AtomicLong reconnects = new AtomicLong(0);
+
+    private RootHelperConnectionPool(SocketNames address, int maxIdle, long maxIdleAgeMs) {
+        this.address = address;
+        this.maxIdle = maxIdle;
+        this.maxIdleAgeMs = maxIdleAgeMs;
+    }
+
+    public LocalSocket connect() throws IOException {
+        LocalSocket clientSocket = new LocalSocket();
+        LocalSocketAddress socketAddress = new LocalSocketAddress(address.name(), LocalSocketAddress.Namespace.ABSTRACT);
+        try {
+            clientSocket.connect(socketAddress);
+        }
+        catch (IOException e) {
+            try {clientSocket.close();} catch (Exception ignored) {}
+            throw e;
+        }
+        return clientSocket;
+    }
+
+    private boolean isHealthy(IdleConnection c) {
+        return c.generation == generation.get() &&
+                System.currentTimeMillis() - c.createdAt < maxIdleAgeMs &&
+                c.ls.isConnected() &&
+                !c.ls.isClosed() &&
+                !c.ls.isInputShutdown() &&
+                !c.ls.isOutputShutdown();
+    }
+
+    private static void closeQuietly(LocalSocket ls) {
+        try {ls.shutdownInput();} catch (Exception ignored) {}
+        try {ls.shutdownOutput();} catch (Exception ignored) {}
+        try {ls.close();} catch (Exception ignored) {}
+    }
+
+    /**
+     * Returns a connected socket, taken from the idle ones if a healthy one is available,
+     * otherwise a freshly connected one
+     */
+    public LocalSocket borrow() throws IOException {
+        for(;;) {
+            IdleConnection c;
+            synchronized (idle) {
+                c = idle.pollFirst();
+            }
+            if (c == null) break;
+            if (isHealthy(c)) {
+                hits.incrementAndGet();
+                scheduleRefill();
+                return c.ls;
+            }
+            discarded.incrementAndGet();
+            closeQuietly(c.ls);
+        }
+
+        misses.incrementAndGet();
+        LocalSocket ls = connect();
+        refillEnabled.set(true);
+        scheduleRefill();
+        return ls;
+    }
+
+    /**
+     * To be invoked when a borrowed connection has been closed after its request has been served
+     */
+    public void release() {
+        scheduleRefill();
+    }
+
+    /**
+     * Called when a borrowed connection turned out to be stale (e.g. RH server restarted):
+     * drops all the idle connections and returns a brand new one
+     */
+    public LocalSocket reconnect() throws IOException {
+        reconnects.incrementAndGet();
+        invalidate();
+        LocalSocket ls = connect();
+        refillEnabled.set(true);
+        return ls;
+    }
+
+    /**
+     * Pre-establishes idle connections, to be called once the RH server is known to be up
+     */
+    public void warmUp() {
+        refillEnabled.set(true);
+        scheduleRefill();
+    }
+
+    /**
+     * Discards all the idle connections, to be called when the RH server process is being restarted or killed
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        refillEnabled.set(false);
+        clearIdle();
+    }
+
+    private void clearIdle() {
+        IdleConnection c;
+        for(;;) {
+            synchronized (idle) {
+                c = idle.pollFirst();
+            }
+            if (c == null) return;
+            discarded.incrementAndGet();
+            closeQuietly(c.ls);
+        }
+    }
+
+    private void scheduleRefill() {
+        if (!refillEnabled.get()) return;
+        if (!refillScheduled.compareAndSet(false,true)) return;
+        refiller.execute(this::refill);
+    }
+
+    private void refill() {
+        try {
+            for(;;) {
+                if (!refillEnabled.get()) return;
+                int gen = generation.get();
+                synchronized (idle) {
+                    // evict stale entries from the head (oldest ones)
+                    while (!idle.isEmpty() && !isHealthy(idle.peekFirst())) {
+                        discarded.incrementAndGet();
+                        closeQuietly(idle.pollFirst().ls);
+                    }
+                    if (idle.size() >= maxIdle) return;
+                }
+                LocalSocket ls;
+                try {
+                    ls = connect();
+                }
+                catch (IOException e) {
+                    // server not reachable, stop refilling until next successful borrow
+                    Log.e(getClass().getName(),"Unable to pre-connect to roothelper server, refill disabled");
+                    refillEnabled.set(false);
+                    return;
+                }
+                boolean added = false;
+                synchronized (idle) {
+                    if (gen == generation.get() && idle.size() < maxIdle) {
+                        idle.addLast(new IdleConnection(ls,gen));
+                        added = true;
+                    }
+                }
+                if (!added) {
+                    closeQuietly(ls);
+                    return;
+                }
+            }
+        }
+        finally {
+            refillScheduled.set(false);
+        }
+    }
+
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RootHelperConnectionPool{"+address.name()+
+                " idle="+getIdleCount()+
+                " hits="+hits.get()+
+                " misses="+misses.get()+
+                " discarded="+discarded.get()+
+                " reconnects="+reconnects.get()+"}";
+    }
+}
@@ -7,7 +7,6 @@ import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 25/01/17
@@ -46,18 +45,15 @@ public abstract class PairOfPaths_rq {
     }
 
     public void write(OutputStream outputStream) throws IOException {
-        byte[] tmpx,tmpy;
-        tmpx = Misc.castUnsignedNumberToBytes(this.lx,2);
-        tmpy = Misc.castUnsignedNumberToBytes(this.ly,2);
-
-
-        // write control byte
-        outputStream.write(requestType.getValue());
-
-        // write lengths and fields
-        outputStream.write(tmpx);
-        outputStream.write(tmpy);
-        outputStream.write(fx);
-        outputStream.write(fy);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            // write control byte
+            f.write(requestType.getValue());
+
+            // write lengths and fields
+            f.writeLE(this.lx,2);
+            f.writeLE(this.ly,2);
+            f.write(fx);
+            f.write(fy);
+        }
     }
 }
@@ -0,0 +1,185 @@
+package it.pgp.xfiles.roothelperclient.reqs;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Write buffer for a whole roothelper request.
+ *
+ * Request fields (opcode, lengths, paths...) are assembled into a pooled buffer
+ * and sent to the socket in large writes instead of one write per field;
+ * the buffer is flushed when full, so arbitrarily long path lists are streamed
+ * using a bounded amount of memory, and on {@link #close()}, that is, at the end of the request.
+ *
+ * {@link #open(OutputStream)} on an already open frame returns the same frame,
+ * so that requests extending other ones can invoke the super write method
+ * without splitting the request in more writes.
+ */
+
+public class RequestFrame extends OutputStream {
+
+    public static final int BUFFER_SIZE = 64*1024;
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final ArrayDeque<byte[]> bufferPool = new ArrayDeque<>();
+
+    private static byte[] acquireBuffer() {
+        synchronized (bufferPool) {
+            byte[] b = bufferPool.pollFirst();
+            if (b != null) return b;
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    private static void releaseBuffer(byte[] b) {
+        synchronized (bufferPool) {
+            if (bufferPool.size() < MAX_POOLED_BUFFERS) bufferPool.addFirst(b);
+        }
+    }
+
+    private final OutputStream dst;
+    private byte[] buf;
+    private int count = 0;
+    private int depth = 1;
+
+    private RequestFrame(OutputStream dst) {
+        this.dst = dst;
+        this.buf = acquireBuffer();
+    }
+
+    public static RequestFrame open(OutputStream dst) {
+        if (dst instanceof RequestFrame) {
+            RequestFrame f = (RequestFrame) dst;
+            f.depth++;
+            return f;
+        }
+        return new RequestFrame(dst);
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            dst.write(buf,0,count);
+            count = 0;
+        }
+    }
+
+    private void ensureAvailable(int n) throws IOException {
+        if (n > buf.length - count) flushBuffer();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) flushBuffer();
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        if (len >= buf.length) { // no point in copying
+            flushBuffer();
+            dst.write(b,off,len);
+            return;
+        }
+        ensureAvailable(len);
+        System.arraycopy(b,off,buf,count,len);
+        count += len;
+    }
+
+    /**
+     * Little-endian unsigned number on len bytes,
+     * same as writing {@link it.pgp.xfiles.utils.Misc#castUnsignedNumberToBytes(long, Integer)}
+     */
+    public void writeLE(long value, int len) throws IOException {
+        ensureAvailable(len);
+        for (int i=0;i<len;i++) {
+            buf[count++] = (byte) value;
+            value >>= 8;
+        }
+    }
+
+    // same length String.getBytes(UTF-8) would produce, unpaired surrogates are replaced with '?'
+    public static int utf8Length(String s) {
+        int n = 0;
+        for (int i=0;i<s.length();i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n++;
+            else if (c < 0x800) n+=2;
+            else if (Character.isHighSurrogate(c) && i+1 < s.length() && Character.isLowSurrogate(s.charAt(i+1))) {
+                n+=4;
+                i++;
+            }
+            else if (Character.isSurrogate(c)) n++;
+            else n+=3;
+        }
+        return n;
+    }
+
+    /**
+     * UTF-8 encodes the string directly into the frame buffer, without intermediate byte arrays
+     */
+    public void writeUtf8(String s) throws IOException {
+        for (int i=0;i<s.length();i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                write(c);
+            }
+            else if (c < 0x800) {
+                ensureAvailable(2);
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i+1 < s.length() && Character.isLowSurrogate(s.charAt(i+1))) {
+                int cp = Character.toCodePoint(c,s.charAt(++i));
+                ensureAvailable(4);
+                buf[count++] = (byte) (0xF0 | (cp >> 18));
+                buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (cp & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                write('?');
+            }
+            else {
+                ensureAvailable(3);
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    // 2-byte length followed by UTF-8 bytes, the most common field in requests
+    public void writeStringWithLen(String s) throws IOException {
+        writeLE(utf8Length(s),2);
+        writeUtf8(s);
+    }
+
+    // 2-byte length followed by bytes
+    public void writeBytesWithLen(byte[] b) throws IOException {
+        writeLE(b.length,2);
+        write(b);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        dst.flush();
+    }
+
+    /**
+     * Sends the remaining part of the frame, the underlying stream is not closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (--depth > 0 || buf == null) return;
+        try {
+            flush();
+        }
+        finally {
+            releaseBuffer(buf);
+            buf = null;
+        }
+    }
+}
@@ -5,7 +5,6 @@ import java.io.OutputStream;
 import java.nio.charset.Charset;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 25/01/17
@@ -42,14 +41,12 @@ public abstract class SinglePath_rq {
     }
 
     public void write(OutputStream outputStream) throws IOException {
-        byte[] tmp;
-        tmp = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            // write request byte
+            f.write(requestType.getValue());
 
-        // write request byte
-        outputStream.write(requestType.getValue());
-
-        // write len and field
-        outputStream.write(tmp);
-        outputStream.write(this.pathname);
+            // write len and field
+            f.writeBytesWithLen(this.pathname);
+        }
     }
 }
@@ -8,7 +8,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 30/05/17
@@ -46,23 +45,23 @@ public class compress_rq extends PairOfPaths_rq {
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        super.write(outputStream);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            super.write(f);
 
-        compress_options.writecompress_rq_options(outputStream);
+            compress_options.writecompress_rq_options(f);
 
-        outputStream.write(password.length); // single byte (8 least significant bits of the 32-bit integer)
-        if (password.length != 0)
-            outputStream.write(password);
+            f.write(password.length); // single byte (8 least significant bits of the 32-bit integer)
+            if (password.length != 0)
+                f.write(password);
 
-        if (filenames == null) { // filenames not initialized, compress entire source directory content
-            outputStream.write(new byte[]{0,0,0,0}); // n. of filenames is 0
-        }
-        else {
-            // send n. of filenames
-            outputStream.write(Misc.castUnsignedNumberToBytes(filenames.size(),4)); // send as 4-byte integer
-            for (byte[] x : filenames) {
-                outputStream.write(Misc.castUnsignedNumberToBytes(x.length,2));
-                outputStream.write(x);
+            if (filenames == null) { // filenames not initialized, compress entire source directory content
+                f.writeLE(0,4); // n. of filenames is 0
+            }
+            else {
+                // send n. of filenames
+                f.writeLE(filenames.size(),4); // send as 4-byte integer
+                for (byte[] x : filenames)
+                    f.writeBytesWithLen(x);
             }
         }
     }
@@ -1,7 +1,5 @@
 package it.pgp.xfiles.roothelperclient.reqs;
 
-import java.util.List;
-
 import it.pgp.xfiles.roothelperclient.ControlCodes;
 
 /**
@@ -9,7 +7,7 @@ import it.pgp.xfiles.roothelperclient.ControlCodes;
  */
 
 public class copylist_rq extends ListOfPathPairs_rq {
-    public copylist_rq(List<String> v_fx, List<String> v_fy) {
+    public copylist_rq(Iterable<String> v_fx, Iterable<String> v_fy) {
         super(v_fx, v_fy);
         requestType = ControlCodes.ACTION_COPY;
     }
@@ -6,7 +6,6 @@ import java.io.OutputStream;
 import it.pgp.xfiles.enums.FileMode;
 import it.pgp.xfiles.items.FileCreationAdvancedOptions;
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 31/01/17
@@ -43,21 +42,18 @@ public class create_rq extends SinglePath_rq {
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        byte[] tmp;
-        tmp = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            // write request byte
+            f.write(getRequestByteWithFlags());
 
-        // write request byte
-        outputStream.write(getRequestByteWithFlags());
+            // write len and field
+            f.writeBytesWithLen(this.pathname);
 
-        // write len and field
-        outputStream.write(tmp);
-        outputStream.write(this.pathname);
+            // write mode
+            f.writeLE(fileMode.getDefaultMask(),4);
 
-        // write mode
-        tmp = Misc.castUnsignedNumberToBytes(fileMode.getDefaultMask(),4);
-        outputStream.write(tmp);
-
-        if(fileOptions != null)
-            outputStream.write(fileOptions.toRootHelperRequestOptions());
+            if(fileOptions != null)
+                f.write(fileOptions.toRootHelperRequestOptions());
+        }
     }
 }
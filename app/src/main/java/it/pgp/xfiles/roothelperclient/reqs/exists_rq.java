@@ -5,7 +5,6 @@ import java.io.OutputStream;
 import java.util.BitSet;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 31/01/17
@@ -36,13 +35,11 @@ public class exists_rq extends SinglePath_rq {
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        byte[] pathname_len_bytes;
-        pathname_len_bytes = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            f.write(getRequestByteWithFlags());
 
-        outputStream.write(getRequestByteWithFlags());
-
-        // write len and field
-        outputStream.write(pathname_len_bytes);
-        outputStream.write(this.pathname);
+            // write len and field
+            f.writeBytesWithLen(this.pathname);
+        }
     }
 }
@@ -8,7 +8,6 @@ import java.util.List;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
 import it.pgp.xfiles.roothelperclient.RelativeExtractEntries;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 01/06/17
@@ -36,28 +35,26 @@ public class extract_rq extends PairOfPaths_rq {
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        super.write(outputStream);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            super.write(f);
 
-        if (password == null) {
-            outputStream.write(new byte[]{0}); // password length 0, 1 byte
-        }
-        else {
-            byte[] password_len_bytes = Misc.castUnsignedNumberToBytes(password.length,1);
-            outputStream.write(password_len_bytes);
-            outputStream.write(password);
-        }
+            if (password == null) {
+                f.write(0); // password length 0, 1 byte
+            }
+            else {
+                f.writeLE(password.length,1);
+                f.write(password);
+            }
 
-        if (entries == null) {
-            outputStream.write(new byte[]{0,0,0,0}); // 0-length as integer, 4 byte
-        }
-        else {
-            byte[] intVal = Misc.castUnsignedNumberToBytes(entries.entries.size(),4);
-            outputStream.write(intVal);
-            for (Integer entry : entries.entries) {
-                intVal = Misc.castUnsignedNumberToBytes(entry,4);
-                outputStream.write(intVal);
+            if (entries == null) {
+                f.writeLE(0,4); // 0-length as integer, 4 byte
+            }
+            else {
+                f.writeLE(entries.entries.size(),4);
+                for (Integer entry : entries.entries)
+                    f.writeLE(entry,4);
+                f.writeLE(entries.stripPathLen,4);
             }
-            outputStream.write(Misc.castUnsignedNumberToBytes(entries.stripPathLen,4));
         }
     }
 }
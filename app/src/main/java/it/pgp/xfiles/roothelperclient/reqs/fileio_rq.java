@@ -5,7 +5,6 @@ import java.io.OutputStream;
 
 import it.pgp.xfiles.enums.FileIOMode;
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 06/11/17
@@ -30,13 +29,11 @@ public class fileio_rq extends SinglePath_rq {
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        byte[] tmp;
-        tmp = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            f.write(getRequestByteWithFlags());
 
-        outputStream.write(getRequestByteWithFlags());
-
-        // write len and field
-        outputStream.write(tmp);
-        outputStream.write(this.pathname);
+            // write len and field
+            f.writeBytesWithLen(this.pathname);
+        }
     }
 }
@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 import static it.pgp.xfiles.roothelperclient.reqs.SinglePath_rq.rq_bit_length;
 
@@ -113,21 +112,16 @@ public class find_rq {
     }
 
     public void writefind_rq(OutputStream outputStream) throws IOException {
-        byte rq = requestType.getValue();
-        rq ^= (flagBits.getFlagBits() << (rq_bit_length));
-        outputStream.write(rq);
-        if (flagBits.cancelCurrentSearch) return;
-        outputStream.write(searchBits.getSearchBits());
-
-        byte[] tmp;
-        tmp = Misc.castUnsignedNumberToBytes(basepath.length,2);
-        outputStream.write(tmp);
-        outputStream.write(basepath);
-        tmp = Misc.castUnsignedNumberToBytes(filenamePattern.length,2);
-        outputStream.write(tmp);
-        if (filenamePattern.length!=0) outputStream.write(filenamePattern);
-        tmp = Misc.castUnsignedNumberToBytes(contentPattern.length,2);
-        outputStream.write(tmp);
-        if (contentPattern.length!=0) outputStream.write(contentPattern);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            byte rq = requestType.getValue();
+            rq ^= (flagBits.getFlagBits() << (rq_bit_length));
+            f.write(rq);
+            if (flagBits.cancelCurrentSearch) return;
+            f.write(searchBits.getSearchBits());
+
+            f.writeBytesWithLen(basepath);
+            f.writeBytesWithLen(filenamePattern);
+            f.writeBytesWithLen(contentPattern);
+        }
     }
 }
\ No newline at end of file
@@ -5,7 +5,6 @@ import java.io.OutputStream;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
 import it.pgp.xfiles.roothelperclient.HashRequestCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 03/02/17
@@ -21,19 +20,15 @@ public class hash_rq extends SinglePath_rq {
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        byte[] tmp;
-        tmp = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
-
-        // write request byte
-        byte b = requestType.getValue();
-        outputStream.write(b);
-        // write algorithm byte
-        b = hashAlgorithm.getValue();
-        outputStream.write(b);
-
-        // write len and field (digest output length is implicit)
-        outputStream.write(tmp);
-        outputStream.write(this.pathname);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            // write request byte
+            f.write(requestType.getValue());
+            // write algorithm byte
+            f.write(hashAlgorithm.getValue());
+
+            // write len and field (digest output length is implicit)
+            f.writeBytesWithLen(this.pathname);
+        }
     }
 
 
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 public class link_rq extends PairOfPaths_rq {
     protected static final int rq_bit_length = 5;
@@ -27,16 +26,14 @@ public class link_rq extends PairOfPaths_rq {
 
     @Override
     public void write(OutputStream outputStream) throws IOException {
-        byte[] tmpx,tmpy;
-        tmpx = Misc.castUnsignedNumberToBytes(this.lx,2);
-        tmpy = Misc.castUnsignedNumberToBytes(this.ly,2);
-
-        outputStream.write(getRequestByteWithFlags());
-
-        // write lengths and fields
-        outputStream.write(tmpx);
-        outputStream.write(tmpy);
-        outputStream.write(fx);
-        outputStream.write(fy);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            f.write(getRequestByteWithFlags());
+
+            // write lengths and fields
+            f.writeLE(this.lx,2);
+            f.writeLE(this.ly,2);
+            f.write(fx);
+            f.write(fy);
+        }
     }
 }
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 22/05/17
@@ -40,16 +39,12 @@ public class ls_archive_rq extends SinglePath_rq {
     }
 
     public void write(OutputStream outputStream) throws IOException {
-        byte[] archivePath_len_bytes;
-        archivePath_len_bytes = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
-        byte[] password_len_bytes;
-        password_len_bytes = Misc.castUnsignedNumberToBytes(this.password_len,1);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            f.write(getRequestByteWithFlags());
 
-        outputStream.write(getRequestByteWithFlags());
-
-        outputStream.write(archivePath_len_bytes);
-        outputStream.write(this.pathname);
-        outputStream.write(password_len_bytes);
-        outputStream.write(this.password);
+            f.writeBytesWithLen(this.pathname);
+            f.writeLE(this.password_len,1);
+            f.write(this.password);
+        }
     }
 }
\ No newline at end of file
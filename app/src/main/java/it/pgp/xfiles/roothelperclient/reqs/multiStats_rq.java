@@ -7,7 +7,6 @@ import java.util.BitSet;
 import java.util.List;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 06/02/17
@@ -29,25 +28,21 @@ public class multiStats_rq {
     }
 
     public void write(OutputStream outputStream) throws IOException {
-        byte[] entry,entryLen;
-        // entry = castUnsignedNumberToBytes(this.pathname_len,2);
-
-        // write request byte (customized with flags)
-        byte rq = requestType.getValue();
-        // customize with flag bits
-        for (int i=0;i<flags_bit_length;i++) {
-            rq ^= ((flags.get(i)?1:0) << (i+rq_bit_length));
-        }
-        outputStream.write(rq);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            // write request byte (customized with flags)
+            byte rq = requestType.getValue();
+            // customize with flag bits
+            for (int i=0;i<flags_bit_length;i++) {
+                rq ^= ((flags.get(i)?1:0) << (i+rq_bit_length));
+            }
+            f.write(rq);
 
-        for (String pathname : pathnames) {
             // write len and field
-            entry = pathname.getBytes(UTF8);
-            entryLen = Misc.castUnsignedNumberToBytes(entry.length,2);
-            outputStream.write(entryLen);
-            outputStream.write(entry);
+            for (String pathname : pathnames)
+                f.writeStringWithLen(pathname);
+
+            // list termination (length 0)
+            f.writeLE(0,2);
         }
-        // list termination (length 0)
-        outputStream.write(new byte[2]);
     }
 }
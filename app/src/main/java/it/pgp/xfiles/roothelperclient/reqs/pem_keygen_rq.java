@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import it.pgp.xfiles.roothelperclient.ControlCodes;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 09/12/17
@@ -21,9 +20,10 @@ public class pem_keygen_rq {
     }
 
     public void write(OutputStream outputStream) throws IOException {
-        byte[] b = Misc.castUnsignedNumberToBytes(keySize,4);
-        outputStream.write(requestType.getValue());
-        outputStream.write(b);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            f.write(requestType.getValue());
+            f.writeLE(keySize,4);
+        }
     }
 }
 
@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Date;
 
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 22/11/17
@@ -31,27 +30,21 @@ public class setDates_rq extends setAttributes_rq {
 
         additionalByte += (SubRequest.SET_DATES.ordinal() << setAttributes_rq.bitOffsetForSubrequest);
 
-        byte[] tmp;
-        tmp = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            // write request byte
+            f.write(requestType.getValue());
 
-        // write request byte
-        outputStream.write(requestType.getValue());
+            // write additional byte
+            f.write(additionalByte); // writes only LSB 8 bits of integer, as expected
 
-        // write additional byte
-        outputStream.write(additionalByte); // writes only LSB 8 bits of integer, as expected
+            // write len and filename
+            f.writeBytesWithLen(this.pathname);
 
-        // write len and filename
-        outputStream.write(tmp);
-        outputStream.write(this.pathname);
-
-        // write timestamps
-        if (accessDateSeconds != null) {
-            tmp = Misc.castUnsignedNumberToBytes(accessDateSeconds,4);
-            outputStream.write(tmp);
-        }
-        if (modificationDateSeconds != null) {
-            tmp = Misc.castUnsignedNumberToBytes(modificationDateSeconds,4);
-            outputStream.write(tmp);
+            // write timestamps
+            if (accessDateSeconds != null)
+                f.writeLE(accessDateSeconds,4);
+            if (modificationDateSeconds != null)
+                f.writeLE(modificationDateSeconds,4);
         }
     }
 }
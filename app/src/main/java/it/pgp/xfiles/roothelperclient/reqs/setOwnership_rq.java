@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import it.pgp.xfiles.roothelperclient.reqs.setAttributes_rq;
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 22/11/17
@@ -28,27 +27,21 @@ public class setOwnership_rq extends setAttributes_rq {
 
         additionalByte += (SubRequest.SET_OWNERSHIP.ordinal() << setAttributes_rq.bitOffsetForSubrequest);
 
-        byte[] tmp;
-        tmp = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            // write request byte
+            f.write(requestType.getValue());
 
-        // write request byte
-        outputStream.write(requestType.getValue());
+            // write additional byte
+            f.write(additionalByte); // writes only LSB 8 bits of integer, as expected
 
-        // write additional byte
-        outputStream.write(additionalByte); // writes only LSB 8 bits of integer, as expected
+            // write len and filename
+            f.writeBytesWithLen(this.pathname);
 
-        // write len and filename
-        outputStream.write(tmp);
-        outputStream.write(this.pathname);
-
-        // write ownerships
-        if (ownerId != null) {
-            tmp = Misc.castUnsignedNumberToBytes(ownerId,4);
-            outputStream.write(tmp);
-        }
-        if (groupId != null) {
-            tmp = Misc.castUnsignedNumberToBytes(groupId,4);
-            outputStream.write(tmp);
+            // write ownerships
+            if (ownerId != null)
+                f.writeLE(ownerId,4);
+            if (groupId != null)
+                f.writeLE(groupId,4);
         }
     }
 }
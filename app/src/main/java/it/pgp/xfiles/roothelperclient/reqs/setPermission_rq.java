@@ -3,7 +3,6 @@ package it.pgp.xfiles.roothelperclient.reqs;
 import java.io.IOException;
 import java.io.OutputStream;
 
-import it.pgp.xfiles.utils.Misc;
 
 /**
  * Created by pgp on 22/11/17
@@ -21,21 +20,18 @@ public class setPermission_rq extends setAttributes_rq {
     public void write(OutputStream outputStream) throws IOException {
         additionalByte = SubRequest.SET_PERMISSIONS.ordinal() << setAttributes_rq.bitOffsetForSubrequest;
 
-        byte[] tmp;
-        tmp = Misc.castUnsignedNumberToBytes(this.pathname_len,2);
+        try (RequestFrame f = RequestFrame.open(outputStream)) {
+            // write request byte
+            f.write(requestType.getValue());
 
-        // write request byte
-        outputStream.write(requestType.getValue());
+            // write additional byte
+            f.write(additionalByte); // writes only LSB 8 bits of integer, as expected
 
-        // write additional byte
-        outputStream.write(additionalByte); // writes only LSB 8 bits of integer, as expected
+            // write len and filename
+            f.writeBytesWithLen(this.pathname);
 
-        // write len and filename
-        outputStream.write(tmp);
-        outputStream.write(this.pathname);
-
-        // write permission
-        tmp = Misc.castUnsignedNumberToBytes(permissions,4);
-        outputStream.write(tmp);
+            // write permission
+            f.writeLE(permissions,4);
+        }
     }
 }
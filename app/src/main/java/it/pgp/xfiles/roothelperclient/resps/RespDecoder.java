@@ -0,0 +1,154 @@
+package it.pgp.xfiles.roothelperclient.resps;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import it.pgp.xfiles.BrowserItem;
+
+/**
+ * Allocation-free decoder for roothelper responses.
+ *
+ * Each record is read with a single readFully into a reusable scratch buffer
+ * (underlying streams are buffered, see {@link it.pgp.xfiles.utils.StreamsPair}),
+ * then decoded field by field from a little-endian {@link ByteBuffer} view, so that
+ * no intermediate byte arrays are created per field and per entry.
+ *
+ * ls record layout (also the first part of a find record):
+ * filename_len (2) | filename (filename_len) | date (4) | permissions (10) | size (8)
+ * A filename_len of 0 terminates the list.
+ *
+ * Not thread-safe, one instance per stream.
+ */
+
+public class RespDecoder {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int LS_TAIL_LEN = 4 + 10 + 8; // date, permissions, size
+
+    private final DataInputStream i;
+    private byte[] scratch;
+    private ByteBuffer bb;
+
+    // current ls record (valid after a successful nextLsRecord)
+    public int nameLen;
+    public long date; // seconds
+    public final byte[] permissions = new byte[10]; // reused
+    public long size;
+
+    public RespDecoder(DataInputStream i) {
+        this.i = i;
+        setScratch(new byte[4096]);
+    }
+
+    private void setScratch(byte[] b) {
+        scratch = b;
+        bb = ByteBuffer.wrap(scratch).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads exactly n bytes into the scratch buffer, growing it if needed
+     * @return the scratch buffer view, positioned at 0 with limit n
+     */
+    private ByteBuffer readRecord(int n) throws IOException {
+        if (n > scratch.length) setScratch(new byte[Math.max(n, scratch.length*2)]);
+        i.readFully(scratch,0,n);
+        bb.clear();
+        bb.limit(n);
+        return bb;
+    }
+
+    private static long u32(ByteBuffer b) {
+        return b.getInt() & 0xFFFFFFFFL;
+    }
+
+    /************************* ls / find records *************************/
+
+    /**
+     * Reads the next ls record
+     * @return false on end of list
+     */
+    public boolean nextLsRecord() throws IOException {
+        nameLen = readRecord(2).getShort() & 0xFFFF;
+        if (nameLen == 0) return false;
+        ByteBuffer b = readRecord(nameLen + LS_TAIL_LEN);
+        b.position(nameLen);
+        date = u32(b);
+        b.get(permissions);
+        size = b.getLong();
+        return true;
+    }
+
+    // name bytes of the current ls record are in the scratch buffer until the next read
+    public String getName() {
+        return new String(scratch,0,nameLen,UTF8);
+    }
+
+    // the returned buffer holds the name at [0,nameLen), it is overwritten by the next read
+    public byte[] getNameBuffer() {
+        return scratch;
+    }
+
+    public byte[] getNameBytes() {
+        byte[] name = new byte[nameLen];
+        System.arraycopy(scratch,0,name,0,nameLen);
+        return name;
+    }
+
+    public boolean isDir() {
+        return permissions[0]=='d' || permissions[0]=='L';
+    }
+
+    public boolean isLink() {
+        return permissions[0]=='l' || permissions[0]=='L';
+    }
+
+    /**
+     * @return the next listing entry, or null on end of list
+     */
+    public BrowserItem nextBrowserItem() throws IOException {
+        if (!nextLsRecord()) return null;
+        return new BrowserItem(getName(), size, date*1000L, isDir(), isLink());
+    }
+
+    /**
+     * Reads the trailing part of a find record, after its ls part
+     * @return content around match (null if empty), offset is stored in {@link #findOffset}
+     */
+    public byte[] readFindTail() throws IOException {
+        int contentAroundLen = readRecord(1).get() & 0xFF;
+        if (contentAroundLen == 0) return null;
+        ByteBuffer b = readRecord(contentAroundLen + 8);
+        byte[] contentAround = new byte[contentAroundLen];
+        b.get(contentAround);
+        findOffset = b.getLong();
+        return contentAround;
+    }
+    public long findOffset;
+
+    /************************* stats records *************************/
+
+    public singleStats_resp readSingleStats() throws IOException {
+        int groupLen = readRecord(1).get() & 0xFF;
+        ByteBuffer b = readRecord(groupLen + 1);
+        byte[] group = new byte[groupLen];
+        b.get(group);
+        int ownerLen = b.get() & 0xFF;
+        b = readRecord(ownerLen + 4 + 4 + 4 + 10 + 8);
+        byte[] owner = new byte[ownerLen];
+        b.get(owner);
+        long creationTime = u32(b);
+        long lastAccessTime = u32(b);
+        long modificationTime = u32(b);
+        byte[] perms = new byte[10];
+        b.get(perms);
+        long size = b.getLong();
+        return new singleStats_resp(group,owner,creationTime,lastAccessTime,modificationTime,perms,size);
+    }
+
+    public folderStats_resp readFolderStats() throws IOException {
+        ByteBuffer b = readRecord(5*8);
+        return new folderStats_resp(b.getLong(),b.getLong(),b.getLong(),b.getLong(),b.getLong());
+    }
+}
@@ -107,7 +107,7 @@ public class CompressTask extends RootHelperClientTask {
                 else {
                     BasePathContent cd = activity.getCurrentDirCommander().getCurrentDirectoryPathname();
                     if (cd.equals(currentDir))
-                        activity.browserPagerAdapter.showDirContent(activity.getCurrentDirCommander().refresh(),activity.browserPager.getCurrentItem(),params.destArchive.dir);
+                        activity.browserPagerAdapter.refreshDirContent(activity.browserPager.getCurrentItem(),params.destArchive.dir);
                 }
             }
             else {
@@ -77,7 +77,7 @@ public class CopyMoveTask extends RootHelperClientTask {
             if (activity == null) return; // activity closed while service active, nothing to refresh
             BasePathContent cd = activity.getCurrentDirCommander().getCurrentDirectoryPathname();
             if (cd.equals(currentDir))
-                activity.browserPagerAdapter.showDirContent(activity.getCurrentDirCommander().refresh(),activity.browserPager.getCurrentItem(),params.list.files.get(0).getFilename());
+                activity.browserPagerAdapter.refreshDirContent(activity.browserPager.getCurrentItem(),params.list.files.get(0).getFilename());
         }
         else {
             String errType = params.list.copyOrMove.name().toLowerCase();
@@ -0,0 +1,98 @@
+package it.pgp.xfiles.service;
+
+import android.util.Log;
+import android.widget.Toast;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+
+import it.pgp.xfiles.MainActivity;
+import it.pgp.xfiles.enums.ServiceStatus;
+import it.pgp.xfiles.service.params.DeleteParams;
+import it.pgp.xfiles.service.visualization.MovingRibbon;
+import it.pgp.xfiles.utils.FileOperationHelperUsingPathContent;
+import it.pgp.xfiles.utils.pathcontent.BasePathContent;
+
+/**
+ * Deletes a selection of files one item at a time, using the file operation helper
+ * that was current when the task was started, publishing the running count of deleted items;
+ * cancellation and pause are checked between items
+ */
+
+public class DeleteTask extends BaseBackgroundTask {
+
+    DeleteParams params;
+    private final FileOperationHelperUsingPathContent helper;
+    private BasePathContent currentDir; // for refreshing dir listview (if not changed meanwhile) on operation end
+
+    private volatile int deleted = 0;
+    private volatile int failed = 0;
+
+    DeleteTask(Serializable params) {
+        super(params);
+        this.params = (DeleteParams) params;
+        helper = MainActivity.currentHelper;
+    }
+
+    @Override
+    public boolean init(BaseBackgroundService service) {
+        if (!super.init(service)) return false;
+        mr = new MovingRibbon(service,windowManager);
+        return true;
+    }
+
+    @Override
+    protected void onPreExecute() {
+        super.onPreExecute();
+        currentDir = MainActivity.mainActivity.getCurrentDirCommander().getCurrentDirectoryPathname();
+    }
+
+    @Override
+    protected Object doInBackground(Object[] unusedParams) {
+        int total = params.list.size();
+        for (BasePathContent path : params.list) {
+            while (status == ServiceStatus.PAUSED) {
+                try {Thread.sleep(250);}
+                catch (InterruptedException ignored) {}
+            }
+            if (status == ServiceStatus.CANCELLED) break;
+
+            try {
+                helper.deleteFilesOrDirectories(Collections.singletonList(path));
+                deleted++;
+            }
+            catch (IOException e) {
+                Log.e(getClass().getName(),"Unable to delete "+path,e);
+                failed++;
+            }
+            publishProgressWrapper((int)Math.round((deleted+failed)*100.0/total));
+        }
+        return null;
+    }
+
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        mBuilder.setContentText("Deleted "+deleted+" of "+params.list.size()+(failed==0?"":(", "+failed+" errors")));
+        super.onProgressUpdate(values);
+    }
+
+    @Override
+    protected void onPostExecute(Object o) {
+        super.onPostExecute(o);
+
+        String msg = deleted+" files deleted";
+        if (status == ServiceStatus.CANCELLED) msg = "Delete cancelled, "+msg;
+        if (failed != 0) msg += ", unable to delete "+failed+" files";
+        Toast.makeText(service,msg,Toast.LENGTH_LONG).show();
+
+        // refresh dir only if it's the same of when the task started
+        MainActivity activity = MainActivity.mainActivity;
+        if (activity == null) return; // activity closed while service active, nothing to refresh
+        BasePathContent cd = activity.getCurrentDirCommander().getCurrentDirectoryPathname();
+        if (cd.equals(currentDir)) {
+            int posToRestore = activity.getCurrentMainBrowserView().getFirstVisiblePosition();
+            activity.browserPagerAdapter.refreshDirContent(activity.browserPager.getCurrentItem(),posToRestore);
+        }
+    }
+}
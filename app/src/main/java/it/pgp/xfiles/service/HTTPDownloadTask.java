@@ -142,7 +142,7 @@ public class HTTPDownloadTask extends RootHelperClientTask {
             if (activity == null) return; // activity closed while service active, nothing to refresh
             BasePathContent cd = activity.getCurrentDirCommander().getCurrentDirectoryPathname();
             if (cd.equals(currentDir))
-                activity.browserPagerAdapter.showDirContent(activity.getCurrentDirCommander().refresh(),activity.browserPager.getCurrentItem(),targetFileNameOnly);
+                activity.browserPagerAdapter.refreshDirContent(activity.browserPager.getCurrentItem(),targetFileNameOnly);
         }
         else {
             Toast.makeText(service, "Download error", Toast.LENGTH_SHORT).show();
@@ -99,7 +99,7 @@ public class NonInteractiveSftpTask extends BaseBackgroundTask {
             if (activity == null) return; // activity closed while service active, nothing to refresh
             BasePathContent cd = activity.getCurrentDirCommander().getCurrentDirectoryPathname();
             if (cd.equals(currentDir))
-                activity.browserPagerAdapter.showDirContent(activity.getCurrentDirCommander().refresh(),activity.browserPager.getCurrentItem(),params.list.files.get(0).getFilename());
+                activity.browserPagerAdapter.refreshDirContent(activity.browserPager.getCurrentItem(),params.list.files.get(0).getFilename());
         }
         else if (result == FileOpsErrorCodes.TRANSFER_CANCELLED) {
             Toast.makeText(service,params.list.copyOrMove.name().toLowerCase()+" cancelled",Toast.LENGTH_LONG).show();
@@ -127,7 +127,7 @@ public class NonInteractiveXFilesRemoteTransferTask extends RootHelperClientTask
             if (activity == null) return; // activity closed while service active, nothing to refresh
             BasePathContent cd = activity.getCurrentDirCommander().getCurrentDirectoryPathname();
             if (cd.equals(currentDir))
-                activity.browserPagerAdapter.showDirContent(activity.getCurrentDirCommander().refresh(),activity.browserPager.getCurrentItem(),params.getFirstFilename(resolver));
+                activity.browserPagerAdapter.refreshDirContent(activity.browserPager.getCurrentItem(),params.getFirstFilename(resolver));
         }
         else {
             Toast.makeText(service,params.list.copyOrMove.name().toLowerCase()+" error: "+result.getValue(),Toast.LENGTH_LONG).show();
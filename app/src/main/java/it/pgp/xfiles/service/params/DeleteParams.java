@@ -0,0 +1,17 @@
+package it.pgp.xfiles.service.params;
+
+import android.support.annotation.NonNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.pgp.xfiles.utils.pathcontent.BasePathContent;
+
+public class DeleteParams implements Serializable {
+    public ArrayList<BasePathContent> list;
+
+    public DeleteParams(@NonNull List<BasePathContent> list) {
+        this.list = new ArrayList<>(list);
+    }
+}
@@ -4,7 +4,6 @@ import android.content.Context;
 import android.os.StrictMode;
 import android.support.annotation.Nullable;
 import android.util.Log;
-import android.widget.Toast;
 
 import net.schmizz.sshj.common.Base64;
 import net.schmizz.sshj.common.Buffer;
@@ -55,7 +54,7 @@ import it.pgp.xfiles.items.SingleStatsItem;
 import it.pgp.xfiles.roothelperclient.HashRequestCodes;
 import it.pgp.xfiles.roothelperclient.resps.folderStats_resp;
 import it.pgp.xfiles.service.BaseBackgroundTask;
-import it.pgp.xfiles.utils.FileOperationHelperUsingPathContent;
+import it.pgp.xfiles.utils.AsyncFileOperationHelperUsingPathContent;
 import it.pgp.xfiles.utils.GenericDBHelper;
 import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
 import it.pgp.xfiles.utils.dircontent.SftpDirWithContent;
@@ -69,7 +68,7 @@ import it.pgp.xfiles.utils.pathcontent.RemotePathContent;
  * Last updated on 03/11/17 (migration to custom XSFTP types for handling transfer progress)
  */
 
-public class SFTPProviderUsingPathContent implements FileOperationHelperUsingPathContent {
+public class SFTPProviderUsingPathContent implements AsyncFileOperationHelperUsingPathContent {
 
     BaseBackgroundTask task;
     @Override
@@ -372,7 +371,7 @@ public class SFTPProviderUsingPathContent implements FileOperationHelperUsingPat
 
             // No valid auth found
             if (!c.isAuthenticated()) {
-                Toast.makeText(mainActivity, "Exhausted auth methods", Toast.LENGTH_SHORT).show();
+                MainActivity.showToastOnUIWithHandler("Exhausted auth methods");
                 return null;
             }
             cSFTP = c.newXSFTPClient();
@@ -384,29 +383,35 @@ public class SFTPProviderUsingPathContent implements FileOperationHelperUsingPat
         catch(TransportException e) {
             if (e.getDisconnectReason() == DisconnectReason.HOST_KEY_NOT_VERIFIABLE) {
                 if (InteractiveHostKeyVerifier.lastHostKeyHasChanged != null && pendingLsPath != null){
-                    if (InteractiveHostKeyVerifier.lastHostKeyHasChanged) {
-                        // show "last host key changed" dialog, containing current getChannel input parameter
-                        SSHAlreadyInKnownHostsDialog ad =
-                                new SSHAlreadyInKnownHostsDialog(
-                                        mainActivity,
-                                        authData,
-                                        null, // FIXME need to have old host key here
-                                        InteractiveHostKeyVerifier.currentHostKey,
-                                        this,
-                                        pendingLsPath
-                                );
-                        ad.show();
-                    } else {
-                        // show "add host key" dialog, containing current getChannel input parameter
-                        SSHNotInKnownHostsDialog nd =
-                                new SSHNotInKnownHostsDialog(
-                                        mainActivity,
-                                        authData,
-                                        InteractiveHostKeyVerifier.currentHostKey,
-                                        this,
-                                        pendingLsPath);
-                        nd.show();
-                    }
+                    // listing may run off the UI thread (see DirCommanderCUsingBrowserItemsAndPathContent#navigate)
+                    final AuthData authData_ = authData;
+                    final boolean lastHostKeyHasChanged = InteractiveHostKeyVerifier.lastHostKeyHasChanged;
+                    final PublicKey currentHostKey = InteractiveHostKeyVerifier.currentHostKey;
+                    mainActivity.runOnUiThread(() -> {
+                        if (lastHostKeyHasChanged) {
+                            // show "last host key changed" dialog, containing current getChannel input parameter
+                            SSHAlreadyInKnownHostsDialog ad =
+                                    new SSHAlreadyInKnownHostsDialog(
+                                            mainActivity,
+                                            authData_,
+                                            null, // FIXME need to have old host key here
+                                            currentHostKey,
+                                            this,
+                                            pendingLsPath
+                                    );
+                            ad.show();
+                        } else {
+                            // show "add host key" dialog, containing current getChannel input parameter
+                            SSHNotInKnownHostsDialog nd =
+                                    new SSHNotInKnownHostsDialog(
+                                            mainActivity,
+                                            authData_,
+                                            currentHostKey,
+                                            this,
+                                            pendingLsPath);
+                            nd.show();
+                        }
+                    });
                 }
                  // any way, won't get a list dir response at this request, dismiss listeners in dialogs will do the job by calling main activity methods
             }
@@ -806,13 +811,13 @@ public class SFTPProviderUsingPathContent implements FileOperationHelperUsingPat
 
                 l.add(new BrowserItem(entry.getName(),
                         fa.getSize(),
-                        new Date(fa.getMtime()*1000L),
+                        fa.getMtime()*1000L,
                         fa.getType() == net.schmizz.sshj.sftp.FileMode.Type.DIRECTORY,
                         isLink));
             }
 
             // successful return, change current helper
-            MainActivity.currentHelper = MainActivity.sftpProvider; // or = this
+            MainActivity.setCurrentHelperOnListing(MainActivity.sftpProvider); // or = this
             return new SftpDirWithContent(g.authData,directory.dir,l);
         }
         catch (IOException e) {
@@ -31,6 +31,7 @@ import it.pgp.xfiles.BrowserItem;
 import it.pgp.xfiles.enums.FileMode;
 import it.pgp.xfiles.io.RobustLocalFileInputStream;
 import it.pgp.xfiles.io.RobustLocalFileOutputStream;
+import it.pgp.xfiles.items.SingleStatsItem;
 import it.pgp.xfiles.roothelperclient.RootHelperClientUsingPathContent;
 import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
 import it.pgp.xfiles.utils.pathcontent.LocalPathContent;
@@ -45,10 +46,30 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
 
     private String file;
 
+    /*
+     * Metadata snapshot: SSHJ queries type, length, mtime and permissions of each transferred file separately,
+     * so they are taken once, either from the parent directory listing (see getChildren) or lazily
+     * (one exists request for the type, one stat request for length and mtime), and dropped on local changes
+     */
+    private BitSet typeSnapshot; // exists, isFile, isDir
+    private boolean hasStatsSnapshot = false;
+    private long sizeSnapshot;
+    private long mtimeSnapshot; // seconds
+
     public XFileSystemFile(String path) {
         this.file = path;
     }
 
+    private XFileSystemFile(String path, BrowserItem listedItem) {
+        this.file = path;
+        typeSnapshot = new BitSet(3);
+        typeSnapshot.set(0);
+        typeSnapshot.set(listedItem.isDirectory?2:1);
+        sizeSnapshot = listedItem.size;
+        mtimeSnapshot = listedItem.mtime / 1000;
+        hasStatsSnapshot = true;
+    }
+
     public XFileSystemFile(File file) {
         this.file = file.getAbsolutePath();
     }
@@ -59,26 +80,41 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
         return file_[file_.length-1];
     }
 
+    private BitSet getTypeSnapshot() {
+        if (typeSnapshot == null)
+            typeSnapshot = rhc.existsIsFileIsDir(new LocalPathContent(file),true,true,true);
+        return typeSnapshot;
+    }
+
+    private void takeStatsSnapshot() throws IOException {
+        if (hasStatsSnapshot) return;
+        SingleStatsItem stats = rhc.statFile(new LocalPathContent(file));
+        if (stats == null) throw new IOException("Unable to stat file: " + this);
+        sizeSnapshot = stats.size;
+        mtimeSnapshot = stats.modificationTime.getTime() / 1000;
+        hasStatsSnapshot = true;
+    }
+
+    private void invalidateSnapshot() {
+        typeSnapshot = null;
+        hasStatsSnapshot = false;
+    }
+
     @Override
     public boolean isFile() {
-        Log.e(this.getClass().getName(),"isFile");
-        BitSet x = rhc.existsIsFileIsDir(new LocalPathContent(file),true,true,true);
-        Log.e(this.getClass().getName(),"isFile completed");
-        return x.get(1);
+        return getTypeSnapshot().get(1);
     }
 
     @Override
     public boolean isDirectory() {
-        Log.e(this.getClass().getName(),"isDirectory");
-        BitSet x = rhc.existsIsFileIsDir(new LocalPathContent(file),true,true,true);
-        Log.e(this.getClass().getName(),"isDirectory completed");
-        return x.get(2);
+        return getTypeSnapshot().get(2);
     }
 
     @Override
     public long getLength() {
         try {
-            return rhc.statFile(new LocalPathContent(file)).size;
+            takeStatsSnapshot();
+            return sizeSnapshot;
         } catch (IOException e) {
             return -1;
         }
@@ -93,6 +129,7 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
     @Override
     public OutputStream getOutputStream() throws IOException {
         if (fos==null) fos = new RobustLocalFileOutputStream(file);
+        invalidateSnapshot();
         return fos;
     }
 
@@ -103,9 +140,10 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
         if (gdwc.errorCode != null)
             throw new IOException("Error listing files in directory: " + this);
 
+        // listing entries already carry type, size and date, no further request is needed per child
         List<XFileSystemFile> children = new ArrayList<>();
         for (BrowserItem b : gdwc.content)
-            children.add(new XFileSystemFile(gdwc.dir+"/"+b.getFilename()));
+            children.add(new XFileSystemFile(gdwc.dir+"/"+b.getFilename(),b));
         return children;
     }
 
@@ -121,12 +159,13 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
 
     @Override
     public long getLastModifiedTime() throws IOException {
-        return rhc.statFile(new LocalPathContent(file)).modificationTime.getTime() / 1000;
+        takeStatsSnapshot();
+        return mtimeSnapshot;
     }
 
     @Override
     public int getPermissions() throws IOException {
-        BitSet x = rhc.existsIsFileIsDir(new LocalPathContent(file),true,true,true);
+        BitSet x = getTypeSnapshot();
         if (x.get(2)) return 0755;
         else if (x.get(1)) return 0644;
         else throw new IOException("Unsupported file type or non-existing file");
@@ -134,6 +173,7 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
 
     @Override
     public void setLastAccessedTime(long t) throws IOException {
+        invalidateSnapshot();
         if (rhc.setDates(new LocalPathContent(file),new Date(t),null) != 0) {
 //            throw new IOException("Unable to set last access time");
             Log.e(getClass().getName(),"Unable to set last access time");
@@ -142,6 +182,7 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
 
     @Override
     public void setLastModifiedTime(long t) throws IOException {
+        invalidateSnapshot();
         if (rhc.setDates(new LocalPathContent(file),null,new Date(t)) != 0) {
 //            throw new IOException("Unable to set last modified time");
             Log.e(getClass().getName(),"Unable to set last modified time");
@@ -187,9 +228,10 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
         }
 
         LocalPathContent ffile = new LocalPathContent(f.file);
-        BitSet x = rhc.existsIsFileIsDir(ffile,true,true,true);
+        BitSet x = f.getTypeSnapshot();
         if (!x.get(0)) { // not exists
             rhc.createFileOrDirectory(ffile, FileMode.FILE);
+            f.invalidateSnapshot();
         }
         else if (x.get(2))
             throw new IOException("A directory by the same name already exists: " + f);
@@ -200,7 +242,7 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
     public XFileSystemFile getTargetDirectory(String dirname) throws IOException {
         XFileSystemFile f = this;
         LocalPathContent fdir = new LocalPathContent(f.file);
-        BitSet x = rhc.existsIsFileIsDir(fdir,true,true,true);
+        BitSet x = f.getTypeSnapshot();
         if (x.get(0)) { // exists
             if (x.get(2)) // is directory
                 if (!f.getName().equals(dirname)) {
@@ -209,9 +251,11 @@ public class XFileSystemFile implements LocalSourceFile, LocalDestFile {
                 }
             else throw new IOException(f + " - already exists as a file; directory required");
         }
-        x = rhc.existsIsFileIsDir(fdir,true,true,true);
-        if (!x.get(0))
+        x = f.getTypeSnapshot();
+        if (!x.get(0)) {
             rhc.createFileOrDirectory(fdir,FileMode.DIRECTORY);
+            f.invalidateSnapshot();
+        }
         return f;
     }
 
@@ -29,7 +29,7 @@ import it.pgp.xfiles.roothelperclient.HashRequestCodes;
 import it.pgp.xfiles.roothelperclient.resps.folderStats_resp;
 import it.pgp.xfiles.service.BaseBackgroundTask;
 import it.pgp.xfiles.sftpclient.XProgress;
-import it.pgp.xfiles.utils.FileOperationHelperUsingPathContent;
+import it.pgp.xfiles.utils.AsyncFileOperationHelperUsingPathContent;
 import it.pgp.xfiles.utils.GenericDBHelper;
 import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
 import it.pgp.xfiles.utils.dircontent.SmbDirWithContent;
@@ -47,7 +47,7 @@ import jcifs.smb.SmbFile;
 import jcifs.smb.SmbFileInputStream;
 import jcifs.smb.SmbFileOutputStream;
 
-public class SmbProviderUsingPathContent implements FileOperationHelperUsingPathContent {
+public class SmbProviderUsingPathContent implements AsyncFileOperationHelperUsingPathContent {
 
     BaseBackgroundTask task;
     @Override
@@ -326,14 +326,14 @@ public class SmbProviderUsingPathContent implements FileOperationHelperUsingPath
                 l.add(new BrowserItem(
                         f.getName(),
                         f.getContentLengthLong(),
-                        new Date(f.getLastModified()),
+                        f.getLastModified(),
                         f.isDirectory(),
                         false) // TODO get link info
                 );
             }
 
             // successful return, change current helper
-            MainActivity.currentHelper = MainActivity.smbProvider; // or = this
+            MainActivity.setCurrentHelperOnListing(MainActivity.smbProvider); // or = this
             return new SmbDirWithContent(g.smbAuthData,directory.dir,l);
         }
         catch (Exception e) {
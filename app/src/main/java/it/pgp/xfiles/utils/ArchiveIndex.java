@@ -0,0 +1,459 @@
+package it.pgp.xfiles.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Compact tree representation of an archive's entries, replacing the nested maps of {@link ArchiveVMap}.
+ *
+ * Nodes are integers (0 is the archive root), with primitive columns for parent, name (offset and length
+ * in a shared UTF-8 byte pool), entry index in the archive, size, date and directory flag; children of each node
+ * are contiguous in a single array, sorted by name bytes, so that path lookups are binary searches.
+ * Directories not stored explicitly in the archive are created implicitly, with entry index -1
+ * and default attributes (no size, no date).
+ * Recursive aggregates (size, file and directory counts) of every directory are computed once, when the index
+ * is finished or read, so that folder stats are constant-time lookups.
+ *
+ * Built by {@link #add} for each archive entry, in entry order, then {@link #finish};
+ * immutable (and so safely shared between threads) afterwards.
+ * Finished indexes can be written to and read from files (see {@link #writeTo}, {@link #readFrom}),
+ * as a fixed header followed by the columns, so that reading is a memory mapping and a bulk copy per column.
+ */
+
+public class ArchiveIndex {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public static final int ROOT = 0;
+    public static final int NOT_FOUND = -1;
+
+    private int nodeCount = 1; // root
+    private int entryCount;
+
+    // node columns
+    private int[] parent = new int[1024];
+    private int[] nameOff = new int[1024];
+    private char[] nameLen = new char[1024]; // unsigned 16 bit, as path lengths in the roothelper protocol
+    private int[] entryIdx = new int[1024];
+    private long[] size = new long[1024];
+    private int[] date = new int[1024]; // seconds, unsigned
+    private boolean[] isDir = new boolean[1024];
+
+    private byte[] namePool = new byte[16384];
+    private int poolSize;
+
+    // children of node n are children[childStart[n]..childStart[n+1]), set by finish
+    private int[] childStart;
+    private int[] children;
+
+    // aggregates over the subtree of each node, the node itself excluded, see computeAggregates
+    private long[] totalSize;
+    private int[] totalFiles, totalDirs, childDirs;
+
+    // (parent,name) -> node+1, open addressing, build time only
+    private int[] table = new int[2048];
+
+    public ArchiveIndex() {
+        parent[ROOT] = NOT_FOUND;
+        entryIdx[ROOT] = NOT_FOUND;
+        isDir[ROOT] = true;
+    }
+
+    /************************* build *************************/
+
+    private void ensureNodeCapacity() {
+        if (nodeCount < parent.length) return;
+        int n = parent.length*2;
+        parent = Arrays.copyOf(parent,n);
+        nameOff = Arrays.copyOf(nameOff,n);
+        nameLen = Arrays.copyOf(nameLen,n);
+        entryIdx = Arrays.copyOf(entryIdx,n);
+        size = Arrays.copyOf(size,n);
+        date = Arrays.copyOf(date,n);
+        isDir = Arrays.copyOf(isDir,n);
+    }
+
+    private static int hash(int parent, byte[] b, int off, int len) {
+        int h = parent * 0x9E3779B1;
+        for (int i=off;i<off+len;i++) h = 31*h + b[i];
+        return h ^ (h >>> 16);
+    }
+
+    private boolean nameEquals(int node, byte[] b, int off, int len) {
+        if (nameLen[node] != len) return false;
+        int o = nameOff[node];
+        for (int i=0;i<len;i++)
+            if (namePool[o+i] != b[off+i]) return false;
+        return true;
+    }
+
+    private void rehash() {
+        int[] t = new int[table.length*2];
+        int mask = t.length-1;
+        for (int n=1;n<nodeCount;n++) {
+            int i = hash(parent[n],namePool,nameOff[n],nameLen[n]) & mask;
+            while (t[i] != 0) i = (i+1) & mask;
+            t[i] = n+1;
+        }
+        table = t;
+    }
+
+    private int getOrAddChild(int p, byte[] b, int off, int len) {
+        int mask = table.length-1;
+        int i = hash(p,b,off,len) & mask;
+        for (;;) {
+            int n = table[i]-1;
+            if (n < 0) break;
+            if (parent[n] == p && nameEquals(n,b,off,len)) return n;
+            i = (i+1) & mask;
+        }
+
+        ensureNodeCapacity();
+        if (poolSize + len > namePool.length)
+            namePool = Arrays.copyOf(namePool,Math.max(namePool.length*2,poolSize+len));
+        System.arraycopy(b,off,namePool,poolSize,len);
+        int n = nodeCount++;
+        parent[n] = p;
+        nameOff[n] = poolSize;
+        nameLen[n] = (char) len;
+        entryIdx[n] = NOT_FOUND; // implicit directory, until its own entry is added
+        isDir[n] = true;
+        poolSize += len;
+
+        table[i] = n+1;
+        if (nodeCount*2 > table.length) rehash();
+        return n;
+    }
+
+    /**
+     * Adds the next archive entry
+     * @param path UTF-8 bytes of the in-archive path in path[0..len), '/'-separated, empty components are ignored
+     * @param date seconds since epoch
+     */
+    public void add(byte[] path, int len, long size, long date, boolean isDir) {
+        int cur = ROOT;
+        int start = 0;
+        for (int i=0;i<=len;i++) {
+            if (i == len || path[i] == '/') {
+                if (i > start) cur = getOrAddChild(cur,path,start,i-start);
+                start = i+1;
+            }
+        }
+        if (cur != ROOT) {
+            entryIdx[cur] = entryCount;
+            this.size[cur] = size;
+            this.date[cur] = (int) date;
+            this.isDir[cur] = isDir;
+        }
+        entryCount++;
+    }
+
+    public void finish() {
+        table = null;
+        parent = Arrays.copyOf(parent,nodeCount);
+        nameOff = Arrays.copyOf(nameOff,nodeCount);
+        nameLen = Arrays.copyOf(nameLen,nodeCount);
+        entryIdx = Arrays.copyOf(entryIdx,nodeCount);
+        size = Arrays.copyOf(size,nodeCount);
+        date = Arrays.copyOf(date,nodeCount);
+        isDir = Arrays.copyOf(isDir,nodeCount);
+        namePool = Arrays.copyOf(namePool,poolSize);
+
+        // group nodes by parent (counting sort), then sort each group by name
+        childStart = new int[nodeCount+1];
+        for (int n=1;n<nodeCount;n++) childStart[parent[n]+1]++;
+        for (int n=0;n<nodeCount;n++) childStart[n+1] += childStart[n];
+        children = new int[nodeCount-1];
+        int[] fill = Arrays.copyOf(childStart,nodeCount);
+        for (int n=1;n<nodeCount;n++) children[fill[parent[n]]++] = n;
+
+        int[] tmp = new int[children.length];
+        for (int n=0;n<nodeCount;n++)
+            if (childStart[n+1] - childStart[n] > 1) sortByName(childStart[n],childStart[n+1],tmp);
+
+        computeAggregates();
+    }
+
+    // nodes are created after their parents, so a reverse scan visits every node after all of its descendants
+    private void computeAggregates() {
+        totalSize = new long[nodeCount];
+        totalFiles = new int[nodeCount];
+        totalDirs = new int[nodeCount];
+        childDirs = new int[nodeCount];
+        for (int n=nodeCount-1;n>0;n--) {
+            int p = parent[n];
+            if (isDir[n]) {
+                childDirs[p]++;
+                totalDirs[p] += 1 + totalDirs[n];
+                totalFiles[p] += totalFiles[n];
+                totalSize[p] += totalSize[n];
+            }
+            else {
+                totalFiles[p]++;
+                totalSize[p] += size[n];
+            }
+        }
+    }
+
+    // unsigned lexicographic order of UTF-8 bytes, that is, code point order
+    private int compareNames(int n1, int n2) {
+        return compareName(n1,namePool,nameOff[n2],nameLen[n2]);
+    }
+
+    private int compareName(int n, byte[] b, int off, int len) {
+        int o = nameOff[n], l = nameLen[n];
+        int m = Math.min(l,len);
+        for (int i=0;i<m;i++) {
+            int c = (namePool[o+i] & 0xFF) - (b[off+i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return l - len;
+    }
+
+    // merge sort of children[from..to)
+    private void sortByName(int from, int to, int[] tmp) {
+        if (to - from < 2) return;
+        int mid = (from+to) >>> 1;
+        sortByName(from,mid,tmp);
+        sortByName(mid,to,tmp);
+        if (compareNames(children[mid-1],children[mid]) <= 0) return;
+        System.arraycopy(children,from,tmp,from,to-from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to)
+            children[k++] = compareNames(tmp[i],tmp[j]) <= 0 ? tmp[i++] : tmp[j++];
+        while (i < mid) children[k++] = tmp[i++];
+        while (j < to) children[k++] = tmp[j++];
+    }
+
+    /************************* persistence *************************/
+
+    private static final int MAGIC = 0x58414958; // "XAIX"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LEN = 6*4; // multiple of 8, columns are written by decreasing element size, so they stay aligned
+
+    private ArchiveIndex(int nodeCount, int entryCount, int poolSize) {
+        this.nodeCount = nodeCount;
+        this.entryCount = entryCount;
+        this.poolSize = poolSize;
+        table = null;
+        parent = new int[nodeCount];
+        nameOff = new int[nodeCount];
+        nameLen = new char[nodeCount];
+        entryIdx = new int[nodeCount];
+        size = new long[nodeCount];
+        date = new int[nodeCount];
+        isDir = new boolean[nodeCount];
+        namePool = new byte[poolSize];
+        childStart = new int[nodeCount+1];
+        children = new int[nodeCount-1];
+    }
+
+    private static long getFileLength(int nodeCount, int poolSize) {
+        return HEADER_LEN +
+                8L*nodeCount + // size
+                4L*(6*nodeCount) + // parent, nameOff, entryIdx, date, childStart (nodeCount+1) and children (nodeCount-1)
+                2L*nodeCount + // nameLen
+                nodeCount + // isDir
+                poolSize;
+    }
+
+    /**
+     * Writes a finished index, in native byte order (cache files are not meant to be moved between devices)
+     */
+    public void writeTo(File f) throws IOException {
+        long len = getFileLength(nodeCount,poolSize);
+        try (RandomAccessFile raf = new RandomAccessFile(f,"rw");
+             FileChannel ch = raf.getChannel()) {
+            raf.setLength(len);
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE,0,len);
+            b.order(ByteOrder.nativeOrder());
+            b.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(nodeCount).putInt(entryCount).putInt(poolSize).putInt(0);
+            b.asLongBuffer().put(size);
+            b.position(b.position()+8*nodeCount);
+            for (int[] column : new int[][]{parent,nameOff,entryIdx,date,childStart,children}) {
+                b.asIntBuffer().put(column);
+                b.position(b.position()+4*column.length);
+            }
+            b.asCharBuffer().put(nameLen);
+            b.position(b.position()+2*nodeCount);
+            for (boolean d : isDir) b.put((byte)(d?1:0));
+            b.put(namePool);
+            b.force();
+        }
+    }
+
+    /**
+     * @return the index, or null if the file is not a valid index file (e.g. written by a different format version)
+     */
+    public static ArchiveIndex readFrom(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f,"r");
+             FileChannel ch = raf.getChannel()) {
+            long len = ch.size();
+            if (len < HEADER_LEN) return null;
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY,0,len);
+            b.order(ByteOrder.nativeOrder());
+            if (b.getInt() != MAGIC || b.getInt() != FORMAT_VERSION) return null;
+            int nodeCount = b.getInt(), entryCount = b.getInt(), poolSize = b.getInt();
+            b.getInt();
+            if (nodeCount < 1 || poolSize < 0 || len != getFileLength(nodeCount,poolSize)) return null;
+
+            ArchiveIndex index = new ArchiveIndex(nodeCount,entryCount,poolSize);
+            b.asLongBuffer().get(index.size);
+            b.position(b.position()+8*nodeCount);
+            for (int[] column : new int[][]{index.parent,index.nameOff,index.entryIdx,index.date,index.childStart,index.children}) {
+                b.asIntBuffer().get(column);
+                b.position(b.position()+4*column.length);
+            }
+            b.asCharBuffer().get(index.nameLen);
+            b.position(b.position()+2*nodeCount);
+            for (int i=0;i<nodeCount;i++) index.isDir[i] = b.get() != 0;
+            b.get(index.namePool);
+            index.computeAggregates(); // not persisted, computing them costs less than reading them
+            return index;
+        }
+    }
+
+    /************************* queries *************************/
+
+    private int findChild(int p, byte[] b, int off, int len) {
+        int lo = childStart[p], hi = childStart[p+1]-1;
+        while (lo <= hi) {
+            int mid = (lo+hi) >>> 1;
+            int c = compareName(children[mid],b,off,len);
+            if (c < 0) lo = mid+1;
+            else if (c > 0) hi = mid-1;
+            else return children[mid];
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * @param inArchivePath '/'-separated, "" or "/" for the archive root
+     * @return the node, or {@link #NOT_FOUND}
+     */
+    public int find(String inArchivePath) {
+        byte[] b = inArchivePath.getBytes(UTF8);
+        int cur = ROOT;
+        int start = 0;
+        for (int i=0;i<=b.length && cur != NOT_FOUND;i++) {
+            if (i == b.length || b[i] == '/') {
+                if (i > start) cur = findChild(cur,b,start,i-start);
+                start = i+1;
+            }
+        }
+        return cur;
+    }
+
+    // estimated heap bytes of a finished index, for memory-weighted caches
+    public long getMemoryWeight() {
+        return 64 + (8L+4*6+2+1 + 8+4*3)*nodeCount + namePool.length;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public int getChildCount(int node) {
+        return childStart[node+1] - childStart[node];
+    }
+
+    // i-th child in name order
+    public int getChild(int node, int i) {
+        return children[childStart[node]+i];
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    public String getName(int node) {
+        return new String(namePool,nameOff[node],nameLen[node],UTF8);
+    }
+
+    /**
+     * @return the index of the node in the archive entry list, or {@link #NOT_FOUND} if not stored explicitly
+     */
+    public int getEntryIndex(int node) {
+        return entryIdx[node];
+    }
+
+    public long getSize(int node) {
+        return size[node];
+    }
+
+    // epoch millis
+    public long getDate(int node) {
+        return (date[node] & 0xFFFFFFFFL)*1000L;
+    }
+
+    public boolean isDir(int node) {
+        return isDir[node];
+    }
+
+    /************************* aggregates, on finished indexes *************************/
+
+    // recursive size of the files under node
+    public long getTotalSize(int node) {
+        return totalSize[node];
+    }
+
+    public int getTotalFiles(int node) {
+        return totalFiles[node];
+    }
+
+    public int getTotalDirs(int node) {
+        return totalDirs[node];
+    }
+
+    public int getChildDirCount(int node) {
+        return childDirs[node];
+    }
+
+    public int getChildFileCount(int node) {
+        return getChildCount(node) - childDirs[node];
+    }
+
+    /**
+     * Depth-first iteration over the nodes of a subtree, the subtree root excluded,
+     * without per-node allocations (in the style of {@link it.pgp.xfiles.utils.iterators.VMapSubTreeIterable})
+     */
+    public class SubtreeIterator {
+        private int[] stack = new int[64];
+        private int sp;
+
+        SubtreeIterator(int node) {
+            pushChildren(node);
+        }
+
+        private void pushChildren(int node) {
+            int from = childStart[node], to = childStart[node+1];
+            if (sp + to - from > stack.length)
+                stack = Arrays.copyOf(stack,Math.max(stack.length*2,sp+to-from));
+            for (int i=to-1;i>=from;i--) stack[sp++] = children[i];
+        }
+
+        public boolean hasNext() {
+            return sp > 0;
+        }
+
+        public int next() {
+            int n = stack[--sp];
+            pushChildren(n);
+            return n;
+        }
+    }
+
+    public SubtreeIterator subtree(int node) {
+        return new SubtreeIterator(node);
+    }
+}
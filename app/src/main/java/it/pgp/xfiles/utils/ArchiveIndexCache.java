@@ -0,0 +1,92 @@
+package it.pgp.xfiles.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Archive indexes persisted under the app cache directory, so that re-opening an unchanged archive
+ * does not require roothelper to enumerate its entries again, even across restarts.
+ *
+ * Files are keyed by archive path, size and mtime (so modified archives get new index files),
+ * and bounded by {@link #DISK_BUDGET_BYTES}, least recently used ones are evicted first.
+ * Indexes of archives opened with a password are not persisted, since they may contain encrypted filenames.
+ */
+
+public class ArchiveIndexCache {
+
+    private static final String DISK_CACHE_DIR = "archiveIndexes";
+    public static final long DISK_BUDGET_BYTES = 128L*1024*1024;
+
+    private static ArchiveIndexCache instance;
+
+    public static synchronized ArchiveIndexCache getInstance(Context context) {
+        if (instance == null) instance = new ArchiveIndexCache(context.getApplicationContext());
+        return instance;
+    }
+
+    private final File dir;
+
+    private ArchiveIndexCache(Context context) {
+        dir = new File(context.getCacheDir(),DISK_CACHE_DIR);
+        dir.mkdirs();
+    }
+
+    private File getFile(String archivePath, long size, long mtime) {
+        return new File(dir,Checksums.sha1Hex(archivePath+"|"+size+"|"+mtime));
+    }
+
+    /**
+     * @return the persisted index of the archive, or null if not present or invalid
+     */
+    public ArchiveIndex load(String archivePath, long size, long mtime) {
+        File f = getFile(archivePath,size,mtime);
+        if (!f.exists()) return null;
+        try {
+            ArchiveIndex index = ArchiveIndex.readFrom(f);
+            if (index == null) f.delete();
+            else f.setLastModified(System.currentTimeMillis()); // for LRU eviction
+            return index;
+        }
+        catch (IOException e) {
+            Log.e(getClass().getName(),"Unable to read archive index of "+archivePath,e);
+            f.delete();
+            return null;
+        }
+    }
+
+    public synchronized void store(String archivePath, long size, long mtime, ArchiveIndex index) {
+        File f = getFile(archivePath,size,mtime);
+        File tmp = new File(f.getAbsolutePath()+".tmp");
+        try {
+            index.writeTo(tmp);
+        }
+        catch (IOException e) {
+            Log.e(getClass().getName(),"Unable to store archive index of "+archivePath,e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(f)) {
+            tmp.delete();
+            return;
+        }
+        trim();
+    }
+
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= DISK_BUDGET_BYTES) return;
+        Arrays.sort(files,(f1,f2) -> Long.compare(f1.lastModified(),f2.lastModified()));
+        for (File f : files) {
+            if (total <= DISK_BUDGET_BYTES) break;
+            total -= f.length();
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package it.pgp.xfiles.utils;
+
+import android.support.annotation.Nullable;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import it.pgp.xfiles.enums.FileMode;
+import it.pgp.xfiles.enums.ProviderType;
+import it.pgp.xfiles.items.FileCreationAdvancedOptions;
+import it.pgp.xfiles.items.SingleStatsItem;
+import it.pgp.xfiles.roothelperclient.HashRequestCodes;
+import it.pgp.xfiles.roothelperclient.resps.folderStats_resp;
+import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
+import it.pgp.xfiles.utils.pathcontent.BasePathContent;
+
+/**
+ * Asynchronous counterpart of {@link FileOperationHelperUsingPathContent}, to be used from the UI thread:
+ * each operation is submitted to the I/O executor of the provider type of its target path
+ * (see {@link IOExecutors}) and a {@link FileOpFuture} is returned immediately
+ */
+
+public interface AsyncFileOperationHelperUsingPathContent extends FileOperationHelperUsingPathContent {
+
+    default ExecutorService getIOExecutor(@Nullable BasePathContent path) {
+        return IOExecutors.get(path == null ? ProviderType.LOCAL : path.providerType);
+    }
+
+    default <T> FileOpFuture<T> submit(@Nullable BasePathContent path, Callable<T> operation) {
+        FileOpFuture<T> f = new FileOpFuture<>(operation);
+        getIOExecutor(path).execute(f);
+        return f;
+    }
+
+    default FileOpFuture<Void> createFileOrDirectoryAsync(BasePathContent filePath, FileMode fileOrDirectory, FileCreationAdvancedOptions... fileOptions) {
+        return submit(filePath, () -> {
+            createFileOrDirectory(filePath,fileOrDirectory,fileOptions);
+            return null;
+        });
+    }
+
+    default FileOpFuture<Void> createLinkAsync(BasePathContent originPath, BasePathContent linkPath, boolean isHardLink) {
+        return submit(linkPath, () -> {
+            createLink(originPath,linkPath,isHardLink);
+            return null;
+        });
+    }
+
+    default FileOpFuture<Void> deleteFilesOrDirectoriesAsync(List<BasePathContent> files) {
+        return submit(files.isEmpty()?null:files.get(0), () -> {
+            deleteFilesOrDirectories(files);
+            return null;
+        });
+    }
+
+    default FileOpFuture<Boolean> renameFileAsync(BasePathContent oldPathname, BasePathContent newPathname) {
+        return submit(oldPathname, () -> renameFile(oldPathname,newPathname));
+    }
+
+    default FileOpFuture<SingleStatsItem> statFileAsync(BasePathContent pathname) {
+        return submit(pathname, () -> statFile(pathname));
+    }
+
+    default FileOpFuture<folderStats_resp> statFilesAsync(List<BasePathContent> files) {
+        return submit(files.isEmpty()?null:files.get(0), () -> statFiles(files));
+    }
+
+    default FileOpFuture<folderStats_resp> statFolderAsync(BasePathContent pathname) {
+        return submit(pathname, () -> statFolder(pathname));
+    }
+
+    default FileOpFuture<Boolean> existsAsync(BasePathContent pathname) {
+        return submit(pathname, () -> exists(pathname));
+    }
+
+    default FileOpFuture<Boolean> isDirAsync(BasePathContent pathname) {
+        return submit(pathname, () -> isDir(pathname));
+    }
+
+    default FileOpFuture<byte[]> hashFileAsync(BasePathContent pathname, HashRequestCodes hashAlgorithm) {
+        return submit(pathname, () -> hashFile(pathname,hashAlgorithm));
+    }
+
+    default FileOpFuture<GenericDirWithContent> listDirectoryAsync(BasePathContent directory) {
+        return submit(directory, () -> listDirectory(directory));
+    }
+
+    default FileOpFuture<GenericDirWithContent> listArchiveAsync(BasePathContent archivePath) {
+        return submit(archivePath, () -> listArchive(archivePath));
+    }
+
+    default FileOpFuture<Integer> setDatesAsync(BasePathContent file, @Nullable Date accessDate, @Nullable Date modificationDate) {
+        return submit(file, () -> setDates(file,accessDate,modificationDate));
+    }
+
+    default FileOpFuture<Integer> setPermissionsAsync(BasePathContent file, int permMask) {
+        return submit(file, () -> setPermissions(file,permMask));
+    }
+
+    default FileOpFuture<Integer> setOwnershipAsync(BasePathContent file, @Nullable Integer ownerId, @Nullable Integer groupId) {
+        return submit(file, () -> setOwnership(file,ownerId,groupId));
+    }
+}
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
@@ -46,6 +47,16 @@ public class Checksums {
         return crc.getValue();
     }
 
+    // hex SHA-1 of a string, e.g. for cache filenames derived from arbitrary keys
+    public static String sha1Hex(String s) {
+        try {
+            return Misc.toHexString(MessageDigest.getInstance("SHA-1").digest(s.getBytes("UTF-8")));
+        }
+        catch (NoSuchAlgorithmException|UnsupportedEncodingException e) {
+            throw new RuntimeException(e); // SHA-1 and UTF-8 are always available
+        }
+    }
+
     public static byte[] sha1(String filepath) throws NoSuchAlgorithmException,IOException {
         return sha1(new File(filepath));
     }
@@ -1,17 +1,31 @@
 package it.pgp.xfiles.utils;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import it.pgp.xfiles.BrowserItem;
 import it.pgp.xfiles.MainActivity;
 import it.pgp.xfiles.enums.FileOpsErrorCodes;
 import it.pgp.xfiles.enums.ProviderType;
 import it.pgp.xfiles.exceptions.DirCommanderException;
+import it.pgp.xfiles.roothelperclient.RootHelperClientUsingPathContent;
 import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
+import it.pgp.xfiles.utils.dircontent.ListingCache;
+import it.pgp.xfiles.utils.dircontent.ListingPrefetcher;
 import it.pgp.xfiles.utils.dircontent.LocalDirWithContent;
+import it.pgp.xfiles.utils.dircontent.ProgressiveListing;
 import it.pgp.xfiles.utils.pathcontent.BasePathContent;
 import it.pgp.xfiles.utils.pathcontent.LocalPathContent;
 import it.pgp.xfiles.utils.pathcontent.XFilesRemotePathContent;
@@ -24,6 +38,88 @@ public class DirCommanderCUsingBrowserItemsAndPathContent {
     private HashMap<Integer,Integer> previousListViewPositions; // position of list view when previous directory was listed
     private int currentIndex;
 
+    /*
+     * Last listing of the current directory, kept for re-sorting it in memory (see getSortableListing).
+     * A progressive listing is usable only once complete, that is, when all of its remaining entries
+     * have been merged into the displayed content (see onListingComplete)
+     */
+    private GenericDirWithContent lastListing;
+    private boolean lastListingComplete;
+    private long lastListingMtime; // local directories only, for detecting changes
+
+    private BasePathContent lastListingDir;
+
+    // shared by the commanders of all the browser pages
+    private static final ListingCache listingCache = new ListingCache(ListingCache.DEFAULT_MAX_ENTRIES);
+    private static final ListingPrefetcher prefetcher = new ListingPrefetcher(listingCache);
+
+    public static void clearListingCache() {
+        prefetcher.cancel();
+        listingCache.clear();
+    }
+
+    private GenericDirWithContent remember(GenericDirWithContent cwd, BasePathContent dir) {
+        if (cwd == null || cwd.errorCode != null) return cwd;
+        lastListing = cwd;
+        lastListingDir = dir;
+        lastListingComplete = cwd.remaining == null;
+        lastListingMtime = dir.providerType == ProviderType.LOCAL ? new File(dir.dir).lastModified() : 0;
+        // cache hits are not to be put again in cache, that would renew their TTL
+        if (lastListingComplete && !cwd.cached) listingCache.put(dir,cwd.content);
+        prefetcher.onVisit(dir);
+        return cwd;
+    }
+
+    public void onListingComplete(List<BrowserItem> content) {
+        if (lastListing != null && lastListing.content == content) {
+            lastListingComplete = true;
+            listingCache.put(lastListingDir,content);
+        }
+    }
+
+    /**
+     * For back and forward navigation: returns the cached listing of dir, if any and still valid
+     * (setting the current helper, as a successful listing does), lists dir otherwise
+     */
+    private GenericDirWithContent cachedDirAccess(BasePathContent dir) {
+        List<BrowserItem> cached = listingCache.get(dir);
+        if (cached == null) return validateDirAccess(dir);
+
+        switch (dir.providerType) {
+            case LOCAL:
+                MainActivity.setCurrentHelperOnListing(MainActivity.usingRootHelperForLocal ?
+                        MainActivity.getRootHelperClient() : MainActivity.xFilesUtils);
+                break;
+            case XFILES_REMOTE:
+                MainActivity.setCurrentHelperOnListing(MainActivity.usingRootHelperForLocal ?
+                        MainActivity.getRootHelperClient() : new RootHelperClientUsingPathContent());
+                break;
+            case SFTP:
+                MainActivity.setCurrentHelperOnListing(MainActivity.sftpProvider);
+                break;
+            case SMB:
+                MainActivity.setCurrentHelperOnListing(MainActivity.smbProvider);
+                break;
+        }
+        GenericDirWithContent cwd = new GenericDirWithContent(dir.dir,cached);
+        cwd.providerType = dir.providerType;
+        cwd.cached = true;
+        return cwd;
+    }
+
+    /**
+     * Returns the content of the current directory for re-sorting it: the last listing if complete
+     * and, for local directories, if the directory has not been modified meanwhile; null otherwise
+     * (to be listed again, see {@link #prepareRefresh})
+     */
+    public GenericDirWithContent getSortableListing() {
+        BasePathContent dir = recentDirs.get(currentIndex);
+        if (lastListing != null && lastListingComplete &&
+                (dir.providerType != ProviderType.LOCAL || new File(dir.dir).lastModified() == lastListingMtime))
+            return new GenericDirWithContent(lastListing.dir,lastListing.content);
+        return null;
+    }
+
     // for cleanup of old commander entries when a series of goBack commands is followed by a goDir
     private void truncateListMaps(int maxIndex) {
         HashMap<Integer,BasePathContent> tmp1 = new HashMap<>();
@@ -38,6 +134,11 @@ public class DirCommanderCUsingBrowserItemsAndPathContent {
         previousListViewPositions = tmp2;
     }
 
+    /**
+     * Local listings are progressive: only the first entries are returned,
+     * for displaying them as soon as possible, the remaining ones are
+     * in {@link GenericDirWithContent#remaining}, to be consumed by the caller
+     */
     private GenericDirWithContent validateDirAccess(BasePathContent dir) {
         switch (dir.providerType) {
             case LOCAL:
@@ -45,11 +146,11 @@ public class DirCommanderCUsingBrowserItemsAndPathContent {
                 // ensure to use the correct helper (local, standard or root)
                 // current helper setting is done on successful list return from each helper
                 return MainActivity.usingRootHelperForLocal?
-                        MainActivity.getRootHelperClient().listDirectory(dir):
-                        MainActivity.xFilesUtils.listDirectory(dir);
+                        MainActivity.getRootHelperClient().listDirectory(dir,ProgressiveListing.FIRST_BATCH_SIZE):
+                        MainActivity.xFilesUtils.listDirectory(dir,ProgressiveListing.FIRST_BATCH_SIZE);
             case LOCAL_WITHIN_ARCHIVE:
 //                return MainActivity.currentHelper.listArchive(dir);
-                return MainActivity.getRootHelperClient().listArchive(dir);
+                return MainActivity.getRootHelperClient().listArchive(dir,true);
             case SFTP:
                 return MainActivity.sftpProvider.listDirectory(dir);
             case SMB:
@@ -105,95 +206,246 @@ public class DirCommanderCUsingBrowserItemsAndPathContent {
     }
 
 
-    public GenericDirWithContent goBack(int previousPosition) {
-        GenericDirWithContent cwd;
+    /**
+     * A navigation, split in a listing part, which can be run off the UI thread, and in a commit part,
+     * updating the commander state (see {@link #navigate(Navigation, int, OnNavigated)})
+     */
+    public static class Navigation {
+        enum Kind {
+            BACK,
+            AHEAD,
+            SET_DIR,
+            RELIST, // back from the first dir, or ahead from the last one
+            REFRESH
+        }
+
+        final Kind kind;
+        public final BasePathContent target;
+        final boolean useCache;
+        final BasePathContent base; // current dir on creation, the navigation is stale if changed meanwhile
+        GenericDirWithContent listing;
+
+        // refresh only: previous dirs, to go back to the nearest accessible one if the current one is no longer accessible
+        BasePathContent[] fallbacks;
+        int fallbackIndex = -1; // index of the listed fallback, if any
+
+        Navigation(Kind kind, BasePathContent target, boolean useCache, BasePathContent base) {
+            this.kind = kind;
+            this.target = target;
+            this.useCache = useCache;
+            this.base = base;
+        }
+    }
+
+    public interface OnNavigated {
+        void onNavigated(GenericDirWithContent cwd);
+    }
+
+    public Navigation prepareGoBack() {
         // asks for previous dir in command; commander object updates its state and returns previous dir
         if (recentDirs == null || recentDirs.size()==0) // guard block
             throw new RuntimeException("Commander not initialized correctly");
 
         if (currentIndex==0) // no previous dir (assume you cannot delete the folder you're in), also do not set previous positions
-           return validateDirAccess(recentDirs.get(0));
-
-        cwd = validateDirAccess(recentDirs.get(currentIndex-1));
-        if (cwd == null || cwd.errorCode != null)
-            return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_GO_BACK);
-        cwd.listViewPosition = previousListViewPositions.get(currentIndex-1);
+            return new Navigation(Navigation.Kind.RELIST,recentDirs.get(0),false,recentDirs.get(0));
+        return new Navigation(Navigation.Kind.BACK,recentDirs.get(currentIndex-1),true,recentDirs.get(currentIndex));
+    }
 
-        // set current position
-        previousListViewPositions.put(currentIndex,previousPosition);
+    public Navigation prepareGoAhead() {
+        if (recentDirs.size()==currentIndex+1) // cannot go ahead, already last item of commander
+            return new Navigation(Navigation.Kind.RELIST,recentDirs.get(currentIndex),false,recentDirs.get(currentIndex));
+        return new Navigation(Navigation.Kind.AHEAD,recentDirs.get(currentIndex+1),true,recentDirs.get(currentIndex));
+    }
 
-        currentIndex--;
-        return cwd;
+    public Navigation prepareSetDir(BasePathContent dir) {
+        if (recentDirs.size()<currentIndex+1) // guard block
+            throw new RuntimeException("Commander error");
+        return new Navigation(Navigation.Kind.SET_DIR,dir,true,recentDirs.get(currentIndex));
     }
 
-    public GenericDirWithContent refreshFailFast() {
-        // refresh can only be done at the beginning of the list view (scroll down gesture)
-        GenericDirWithContent cwd = validateDirAccess(recentDirs.get(currentIndex));
-        if (cwd == null || cwd.errorCode != null)
-            return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_REFRESH);
-        return cwd;
+    public Navigation prepareRefresh() {
+        Navigation n = new Navigation(Navigation.Kind.REFRESH,recentDirs.get(currentIndex),false,recentDirs.get(currentIndex));
+        n.fallbacks = new BasePathContent[currentIndex];
+        for (int i=0;i<currentIndex;i++) n.fallbacks[i] = recentDirs.get(i);
+        return n;
     }
 
-    public GenericDirWithContent refresh() {
-        GenericDirWithContent cwd;
-        int startIndex = currentIndex;
+    private static boolean isAccessible(GenericDirWithContent cwd) {
+        return cwd != null && cwd.errorCode == null;
+    }
 
-        do {
-            cwd = validateDirAccess(recentDirs.get(currentIndex));
-            if (cwd != null && cwd.errorCode == null) break;
-            currentIndex--;
-        } while (currentIndex >= 0);
+    private void list(Navigation n) {
+        n.listing = n.useCache ? cachedDirAccess(n.target) : validateDirAccess(n.target);
+        if (n.kind != Navigation.Kind.REFRESH) return;
+        for (int i=n.fallbacks.length-1; i>=0 && !isAccessible(n.listing); i--) {
+            if (n.listing != null && n.listing.remaining != null) n.listing.remaining.close();
+            n.listing = validateDirAccess(n.fallbacks[i]);
+            n.fallbackIndex = i;
+        }
+    }
 
-        if (currentIndex < 0) {
-            Toast.makeText(MainActivity.mainActivity, "Current dir was no longer available, unable to go back even to start folder, exiting...", Toast.LENGTH_SHORT).show();
+    private boolean isStale(Navigation n) {
+        return recentDirs.get(currentIndex) != n.base;
+    }
 
-            currentIndex = 0;
-            recentDirs.put(currentIndex,new LocalPathContent("/"));
-            MainActivity.mainActivity.finishAffinity();
-            return new LocalDirWithContent("/",new ArrayList<>()); // dummy return object, just to avoid NPE in Collections.sort before finishAffinity is actually called
+    private GenericDirWithContent commit(Navigation n, int previousPosition) {
+        GenericDirWithContent cwd;
+        switch (n.kind) {
+            case RELIST:
+                return remember(n.listing,n.target);
+            case REFRESH:
+                if (!isAccessible(n.listing)) {
+                    Toast.makeText(MainActivity.mainActivity, "Current dir was no longer available, unable to go back even to start folder, exiting...", Toast.LENGTH_SHORT).show();
+
+                    currentIndex = 0;
+                    recentDirs.put(currentIndex,new LocalPathContent("/"));
+                    MainActivity.mainActivity.finishAffinity();
+                    return new LocalDirWithContent("/",new ArrayList<>()); // dummy return object, just to avoid NPE in Collections.sort before finishAffinity is actually called
+                }
+                if (n.fallbackIndex >= 0) { // went back to the nearest accessible dir
+                    Toast.makeText(MainActivity.mainActivity, "Current dir is no longer available, went back of "+(currentIndex-n.fallbackIndex)+" positions", Toast.LENGTH_SHORT).show();
+                    currentIndex = n.fallbackIndex;
+                    truncateListMaps(currentIndex);
+                }
+                return remember(n.listing,recentDirs.get(currentIndex));
+            case BACK:
+                cwd = remember(n.listing,n.target);
+                if (cwd == null || cwd.errorCode != null)
+                    return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_GO_BACK);
+                cwd.listViewPosition = previousListViewPositions.get(currentIndex-1);
+
+                // set current position
+                previousListViewPositions.put(currentIndex,previousPosition);
+
+                currentIndex--;
+                return cwd;
+            case AHEAD:
+                cwd = remember(n.listing,n.target);
+                if (cwd == null || cwd.errorCode != null) // cannot go ahead (dir not found, IO error)
+                    return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_GO_AHEAD);
+                cwd.listViewPosition = previousListViewPositions.get(currentIndex+1); // may be null
+
+                // set current positions
+                previousListViewPositions.put(currentIndex,previousPosition);
+
+                currentIndex++;
+                return cwd;
+            case SET_DIR:
+                cwd = remember(n.listing,n.target);
+                if (cwd.errorCode != null)
+                    return cwd;
+
+                if (recentDirs.size()>currentIndex+1) {
+                    // resize array list, set new element (currentIndex remains unchanged)
+                    truncateListMaps(currentIndex);
+                }
+                previousListViewPositions.put(currentIndex,previousPosition);
+                currentIndex++;
+                recentDirs.put(currentIndex,n.target);
+                return cwd;
+            default:
+                throw new RuntimeException("Invalid navigation kind");
         }
+    }
 
-        if (currentIndex != startIndex) {
-            truncateListMaps(currentIndex);
-            Toast.makeText(MainActivity.mainActivity, "Current dir is no longer available, went back of "+(startIndex-currentIndex)+" positions", Toast.LENGTH_SHORT).show();
+    /*
+     * Asynchronous navigation: listings run on a pool, so that a newer navigation needs not to wait for
+     * an older one still listing (e.g. a slow remote directory); results of navigations superseded
+     * by newer ones, or made stale by a change of the current dir meanwhile, are discarded.
+     * Listings are not interrupted, since they may be using sessions shared with other operations.
+     */
+    private static final ExecutorService navigationExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r,"Navigation-"+threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
         }
-        return cwd;
+    });
+    private static final Handler uiHandler = new Handler(Looper.getMainLooper());
+
+    // helper set by listings run by the navigation pool, to be applied only once their navigation is committed
+    private static final ThreadLocal<AsyncFileOperationHelperUsingPathContent[]> listingHelper = new ThreadLocal<>();
+
+    /**
+     * @return true if called from a navigation listing, in that case the helper is set on navigation commit
+     */
+    public static boolean captureListingHelper(AsyncFileOperationHelperUsingPathContent helper) {
+        AsyncFileOperationHelperUsingPathContent[] h = listingHelper.get();
+        if (h == null) return false;
+        h[0] = helper;
+        return true;
     }
 
-    public GenericDirWithContent goAhead(int previousPosition) {
-        if (recentDirs.size()==currentIndex+1) // cannot go ahead, already last item of commander
-            return validateDirAccess(recentDirs.get(currentIndex));
-
-        GenericDirWithContent cwd = validateDirAccess(recentDirs.get(currentIndex+1));
-
-        if (cwd == null || cwd.errorCode != null) // cannot go ahead (dir not found, IO error)
-            return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_GO_AHEAD);
-        cwd.listViewPosition = previousListViewPositions.get(currentIndex+1); // may be null
+    // navigation latency metrics, for diagnostics
+    public static volatile long lastNavigationListingMs, lastNavigationTotalMs;
+    public static volatile int completedNavigations, discardedNavigations;
 
-        // set current positions
-        previousListViewPositions.put(currentIndex,previousPosition);
-
-        currentIndex++;
-        return cwd;
+    private static void logNavigationMetrics(Navigation n, long listingMs, long totalMs, boolean discarded) {
+        if (discarded) discardedNavigations++;
+        else {
+            completedNavigations++;
+            lastNavigationListingMs = listingMs;
+            lastNavigationTotalMs = totalMs;
+        }
+        Log.d(DirCommanderCUsingBrowserItemsAndPathContent.class.getName(),
+                "Navigation "+n.kind+" to "+n.target+(discarded?" discarded":"")+
+                        ": listing "+listingMs+" ms"+(n.listing != null && n.listing.cached ? " (cached)" : "")+
+                        ", total "+totalMs+" ms; completed: "+completedNavigations+", discarded: "+discardedNavigations);
     }
 
-    public GenericDirWithContent setDir(BasePathContent dir, int previousPosition) {
-        GenericDirWithContent cwd;
-        if (recentDirs.size()<currentIndex+1) // guard block
-            throw new RuntimeException("Commander error");
-
-        cwd = validateDirAccess(dir);
-        if (cwd.errorCode != null)
-            return cwd;
+    private int navigationGeneration; // UI thread only
+
+    /**
+     * Lists the target of the navigation off the UI thread, then commits the navigation and delivers
+     * its outcome on the UI thread, unless superseded meanwhile by a newer navigation of this commander
+     * (whose outcome is delivered instead); if discarded since stale, null is delivered.
+     * To be called from the UI thread.
+     */
+    public void navigate(Navigation n, int previousPosition, OnNavigated onNavigated) {
+        final int g = ++navigationGeneration;
+        final long start = SystemClock.elapsedRealtime();
+        navigationExecutor.execute(() -> {
+            AsyncFileOperationHelperUsingPathContent[] helper = new AsyncFileOperationHelperUsingPathContent[1];
+            listingHelper.set(helper);
+            try {
+                list(n);
+            }
+            catch (Exception e) {
+                Log.e(getClass().getName(),"Error during navigation listing",e);
+                n.listing = new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS);
+            }
+            finally {
+                listingHelper.remove();
+            }
+            final long listingMs = SystemClock.elapsedRealtime() - start;
+            uiHandler.post(() -> {
+                boolean superseded = g != navigationGeneration;
+                if (superseded || isStale(n)) {
+                    if (n.listing != null && n.listing.remaining != null) n.listing.remaining.close();
+                    logNavigationMetrics(n,listingMs,SystemClock.elapsedRealtime()-start,true);
+                    if (!superseded) onNavigated.onNavigated(null);
+                    return;
+                }
+                if (helper[0] != null) MainActivity.currentHelper = helper[0];
+                GenericDirWithContent cwd = commit(n,previousPosition);
+                onNavigated.onNavigated(cwd);
+                logNavigationMetrics(n,listingMs,SystemClock.elapsedRealtime()-start,false);
+            });
+        });
+    }
 
-        if (recentDirs.size()>currentIndex+1) {
-            // resize array list, set new element (currentIndex remains unchanged)
-            truncateListMaps(currentIndex);
+    public GenericDirWithContent refreshFailFast() {
+        // refresh can only be done at the beginning of the list view (scroll down gesture)
+        GenericDirWithContent cwd = validateDirAccess(recentDirs.get(currentIndex));
+        if (cwd == null || cwd.errorCode != null)
+            return new GenericDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_REFRESH);
+        // only used for checking dir access, no need to receive the whole listing
+        if (cwd.remaining != null) {
+            cwd.remaining.close();
+            cwd.remaining = null;
         }
-        previousListViewPositions.put(currentIndex,previousPosition);
-        currentIndex++;
-        recentDirs.put(currentIndex,dir);
-
         return cwd;
     }
 
@@ -0,0 +1,75 @@
+package it.pgp.xfiles.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Future of an asynchronous file operation, see {@link AsyncFileOperationHelperUsingPathContent};
+ * a completion callback can be attached with {@link #then(Callback)}, it is always run on the UI thread
+ */
+
+public class FileOpFuture<T> extends FutureTask<T> {
+
+    public interface Callback<T> {
+        /**
+         * @param result operation result, meaningful only if error is null
+         * @param error exception thrown by the operation (unwrapped from {@link ExecutionException}), or null on success
+         */
+        void onComplete(T result, Exception error);
+    }
+
+    private static final Handler uiHandler = new Handler(Looper.getMainLooper());
+
+    private Callback<T> callback;
+    private boolean completed = false;
+
+    public FileOpFuture(Callable<T> callable) {
+        super(callable);
+    }
+
+    /**
+     * Sets the completion callback, if the operation has already completed the callback is posted immediately
+     */
+    public FileOpFuture<T> then(Callback<T> callback) {
+        boolean post;
+        synchronized (this) {
+            this.callback = callback;
+            post = completed;
+        }
+        if (post) postCallback(callback);
+        return this;
+    }
+
+    @Override
+    protected void done() {
+        Callback<T> c;
+        synchronized (this) {
+            completed = true;
+            c = callback;
+        }
+        if (c != null) postCallback(c);
+    }
+
+    private void postCallback(Callback<T> c) {
+        uiHandler.post(() -> {
+            T result = null;
+            Exception error = null;
+            try {
+                result = get();
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                error = (cause instanceof Exception) ? (Exception) cause : e;
+            }
+            catch (CancellationException | InterruptedException e) {
+                error = e;
+            }
+            c.onComplete(result,error);
+        });
+    }
+}
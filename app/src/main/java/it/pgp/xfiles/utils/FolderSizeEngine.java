@@ -0,0 +1,463 @@
+package it.pgp.xfiles.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import it.pgp.xfiles.BrowserItem;
+import it.pgp.xfiles.MainActivity;
+import it.pgp.xfiles.roothelperclient.resps.folderStats_resp;
+import it.pgp.xfiles.utils.pathcontent.LocalPathContent;
+
+/**
+ * Recursive sizes and counts of local directories, computed on a low-priority background thread
+ * and persisted in SQLite, so that they survive restarts.
+ *
+ * For each directory, keyed by path, are stored its mtime, its direct stats (children counts,
+ * size of the files directly in it, names of its subdirectories) and its aggregates (the fields of
+ * {@link folderStats_resp}), shown immediately while the directory mtime is unchanged (see {@link #getCached}).
+ * A directory whose mtime has not changed is not listed again: its direct stats are reused, and only its
+ * subdirectories are visited, so that walking an unchanged tree costs one stat per directory; aggregates are
+ * summed again, and rows are rewritten only if changed, in one transaction per walk. Rows of directories no
+ * longer existing are deleted. Pseudo filesystems (e.g. /proc, /sys) are skipped.
+ * Files modified in place do not change the mtime of their directory, so after each computation the files of
+ * a few directories not listed for {@link #REVALIDATE_INTERVAL_MS} are stat'ed again (see {@link #revalidate}).
+ * Directories not readable by the app are stat'ed via roothelper, if active, as a whole.
+ */
+
+public class FolderSizeEngine {
+
+    private static final int UI_UPDATE_INTERVAL_MS = 250;
+    private static final long REVALIDATE_INTERVAL_MS = 60*60*1000L;
+    private static final int REVALIDATE_BATCH = 100; // directories per computation
+
+    private static FolderSizeEngine instance;
+
+    public static FolderSizeEngine getInstance(Context context) {
+        if (instance == null) instance = new FolderSizeEngine(context.getApplicationContext());
+        return instance;
+    }
+
+    private final DBHelper dbHelper;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r,"FolderSizeEngine");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private volatile int generation; // computations for previous listings are abandoned
+
+    private FolderSizeEngine(Context context) {
+        dbHelper = new DBHelper(context);
+    }
+
+    private static class Row {
+        long mtime;
+        long checked; // when the directory has been listed last time
+        long childrenDirs, childrenFiles, filesSize;
+        String[] subdirs; // null if stat'ed as a whole, see statUnreadable
+        folderStats_resp stats;
+    }
+
+    // stats of a subtree, incomplete if some directory in it could not be read
+    private static class Walk {
+        final int generation;
+        boolean incomplete;
+        Walk(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    private static class DBHelper extends SQLiteOpenHelper {
+        private static final String DbName = "FolderSizes";
+        private static final int DbVersion = 2;
+        private static final String tableName = "folderSizes";
+
+        private static final String path_field = "path";
+        private static final String mtime_field = "mtime";
+        private static final String checked_field = "checked";
+        private static final String childrenDirs_field = "childrenDirs";
+        private static final String childrenFiles_field = "childrenFiles";
+        private static final String filesSize_field = "filesSize";
+        private static final String subdirs_field = "subdirs"; // names separated by '/', which cannot appear in filenames
+        private static final String totalDirs_field = "totalDirs";
+        private static final String totalFiles_field = "totalFiles";
+        private static final String totalSize_field = "totalSize";
+
+        private static final String[] cols = {mtime_field,childrenDirs_field,childrenFiles_field,filesSize_field,
+                subdirs_field,totalDirs_field,totalFiles_field,totalSize_field,checked_field};
+
+        DBHelper(Context context) {
+            super(context,DbName,null,DbVersion);
+            setWriteAheadLoggingEnabled(true); // cached stats are read from the UI thread while a walk transaction is open
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS "+tableName+"(" +
+                    path_field+" TEXT PRIMARY KEY," +
+                    mtime_field+" INTEGER," +
+                    childrenDirs_field+" INTEGER," +
+                    childrenFiles_field+" INTEGER," +
+                    filesSize_field+" INTEGER," +
+                    subdirs_field+" TEXT," +
+                    totalDirs_field+" INTEGER," +
+                    totalFiles_field+" INTEGER," +
+                    totalSize_field+" INTEGER," +
+                    checked_field+" INTEGER);");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            db.execSQL("DROP TABLE IF EXISTS "+tableName);
+            onCreate(db);
+        }
+
+        Row load(String path) {
+            try (Cursor c = getReadableDatabase().query(tableName,cols,path_field+"=?",new String[]{path},null,null,null)) {
+                if (!c.moveToFirst()) return null;
+                Row r = new Row();
+                r.mtime = c.getLong(0);
+                r.childrenDirs = c.getLong(1);
+                r.childrenFiles = c.getLong(2);
+                r.filesSize = c.getLong(3);
+                if (!c.isNull(4)) {
+                    String s = c.getString(4);
+                    r.subdirs = s.isEmpty() ? new String[0] : s.split("/");
+                }
+                r.stats = new folderStats_resp(r.childrenDirs,r.childrenFiles,c.getLong(5),c.getLong(6),c.getLong(7));
+                r.checked = c.getLong(8);
+                return r;
+            }
+        }
+
+        void store(String path, Row r) {
+            ContentValues v = new ContentValues();
+            v.put(path_field,path);
+            v.put(mtime_field,r.mtime);
+            v.put(childrenDirs_field,r.childrenDirs);
+            v.put(childrenFiles_field,r.childrenFiles);
+            v.put(filesSize_field,r.filesSize);
+            if (r.subdirs == null) v.putNull(subdirs_field);
+            else v.put(subdirs_field,TextUtils.join("/",r.subdirs));
+            v.put(totalDirs_field,r.stats.totalDirs);
+            v.put(totalFiles_field,r.stats.totalFiles);
+            v.put(totalSize_field,r.stats.totalSize);
+            v.put(checked_field,r.checked);
+            getWritableDatabase().insertWithOnConflict(tableName,null,v,SQLiteDatabase.CONFLICT_REPLACE);
+        }
+
+        // the directory and all the ones below it ('0' follows '/')
+        private static final String treeSelection = "("+path_field+"=? OR ("+path_field+">=? AND "+path_field+"<?))";
+
+        private static String[] treeArgs(String path) {
+            String base = path.endsWith("/") ? path.substring(0,path.length()-1) : path;
+            return new String[]{path,base+"/",base+"0"};
+        }
+
+        void deleteTree(String path) {
+            getWritableDatabase().delete(tableName,treeSelection,treeArgs(path));
+        }
+
+        void delete(String path) {
+            getWritableDatabase().delete(tableName,path_field+"=?",new String[]{path});
+        }
+
+        // directories in the tree not listed since the given time, least recently listed first
+        List<String> listedBefore(String path, long time, int limit) {
+            String[] tree = treeArgs(path);
+            List<String> paths = new ArrayList<>();
+            try (Cursor c = getReadableDatabase().query(tableName,new String[]{path_field},
+                    treeSelection+" AND "+checked_field+"<?",new String[]{tree[0],tree[1],tree[2],String.valueOf(time)},
+                    null,null,checked_field,String.valueOf(limit))) {
+                while (c.moveToNext()) paths.add(c.getString(0));
+            }
+            return paths;
+        }
+    }
+
+    /**
+     * @return the last computed stats of the directory, if it has not changed since then (its own mtime only), else null
+     */
+    public folderStats_resp getCached(String path) {
+        try {
+            Row r = dbHelper.load(path);
+            return (r != null && r.mtime == new File(path).lastModified()) ? r.stats : null;
+        }
+        catch (Exception e) {
+            Log.e(getClass().getName(),"Unable to read folder sizes cache",e);
+            return null;
+        }
+    }
+
+    public void cancel() {
+        generation++;
+    }
+
+    /**
+     * Computes the recursive sizes of the directories among the items of a local listing, one at a time,
+     * setting them on the items (see {@link BrowserItem#setTotalSize}) on the UI thread, after the cached
+     * ones, if still valid; a new request cancels the pending one.
+     * @param onUpdate run on the UI thread, at most every {@link #UI_UPDATE_INTERVAL_MS}, after sizes have been set
+     */
+    public void computeSizes(String dirPath, List<BrowserItem> items, Runnable onUpdate) {
+        final List<BrowserItem> dirs = new ArrayList<>();
+        for (BrowserItem b : items)
+            if (b.isDirectory && !b.isLink) dirs.add(b);
+        final int g = ++generation;
+        if (dirs.isEmpty()) return;
+
+        executor.execute(() -> {
+            List<BrowserItem> cachedDirs = new ArrayList<>();
+            List<Long> cachedSizes = new ArrayList<>();
+            for (BrowserItem b : dirs) {
+                folderStats_resp s = getCached(new File(dirPath,b.getFilename()).getAbsolutePath());
+                if (s == null) continue;
+                cachedDirs.add(b);
+                cachedSizes.add(s.totalSize);
+            }
+            if (!cachedDirs.isEmpty()) post(cachedDirs,cachedSizes,g,onUpdate);
+
+            if (computeSizes(dirPath,dirs,g,onUpdate) && revalidate(dirPath,g))
+                computeSizes(dirPath,dirs,g,onUpdate); // with the sizes of the files modified in place
+        });
+    }
+
+    private void post(List<BrowserItem> dirs, List<Long> sizes, int g, Runnable onUpdate) {
+        uiHandler.post(() -> {
+            for (int i=0;i<dirs.size();i++) dirs.get(i).setTotalSize(sizes.get(i));
+            if (g == generation) onUpdate.run();
+        });
+    }
+
+    /**
+     * @return false if cancelled
+     */
+    private boolean computeSizes(String dirPath, List<BrowserItem> dirs, int g, Runnable onUpdate) {
+        long lastUpdate = 0;
+        List<BrowserItem> done = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        for (BrowserItem b : dirs) {
+            if (g != generation) return false;
+            File dir = new File(dirPath,b.getFilename());
+            if (isPseudoFs(dir.getAbsolutePath())) continue;
+            folderStats_resp s;
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                s = walk(dir,new Walk(g));
+                db.setTransactionSuccessful(); // also if cancelled, stored rows are complete
+            }
+            catch (Exception e) {
+                Log.e(getClass().getName(),"Error computing folder size",e);
+                continue;
+            }
+            finally {
+                db.endTransaction();
+            }
+            if (s == null) return false; // cancelled
+            done.add(b);
+            sizes.add(s.totalSize);
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastUpdate >= UI_UPDATE_INTERVAL_MS) {
+                lastUpdate = now;
+                post(new ArrayList<>(done),new ArrayList<>(sizes),g,onUpdate);
+                done.clear();
+                sizes.clear();
+            }
+        }
+        if (!done.isEmpty()) post(done,sizes,g,onUpdate);
+        return true;
+    }
+
+    /**
+     * Lists again, within the tree of the listed directory, up to {@link #REVALIDATE_BATCH} directories
+     * not listed for {@link #REVALIDATE_INTERVAL_MS}, updating the size of their files, whose changes
+     * do not update the mtime of the directory; aggregates are then updated by a new walk
+     * @return true if some direct stats have changed
+     */
+    private boolean revalidate(String dirPath, int g) {
+        boolean changed = false;
+        long now = System.currentTimeMillis();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String path : dbHelper.listedBefore(dirPath,now-REVALIDATE_INTERVAL_MS,REVALIDATE_BATCH)) {
+                if (g != generation) break;
+                Row r = dbHelper.load(path);
+                File dir = new File(path);
+                if (r == null || r.mtime != dir.lastModified()) continue; // listed again by the next walk anyway
+                File[] children = r.subdirs == null ? null : dir.listFiles();
+                if (children == null) { // stat'ed again as a whole by the next walk
+                    dbHelper.delete(path);
+                    changed = true;
+                    continue;
+                }
+                long childrenFiles = 0, filesSize = 0;
+                for (File c : children) {
+                    if (c.isDirectory()) continue;
+                    childrenFiles++;
+                    filesSize += c.length();
+                }
+                if (childrenFiles != r.childrenFiles || filesSize != r.filesSize) {
+                    r.childrenFiles = childrenFiles;
+                    r.filesSize = filesSize;
+                    changed = true;
+                }
+                r.checked = now;
+                dbHelper.store(path,r);
+            }
+            db.setTransactionSuccessful();
+        }
+        catch (Exception e) {
+            Log.e(getClass().getName(),"Error revalidating folder sizes",e);
+        }
+        finally {
+            db.endTransaction();
+        }
+        return changed && g == generation;
+    }
+
+    private static boolean isSymlink(File canonicalParent, String name) throws IOException {
+        File f = new File(canonicalParent,name);
+        return !f.getCanonicalPath().equals(f.getPath());
+    }
+
+    private static final Set<String> PSEUDO_FS_TYPES = new HashSet<>(Arrays.asList(
+            "proc","sysfs","devtmpfs","devpts","debugfs","tracefs","securityfs","selinuxfs","configfs",
+            "cgroup","cgroup2","pstore","bpf","functionfs","binfmt_misc","fusectl"));
+
+    private Set<String> pseudoFsMountPoints; // walk thread only
+
+    // mount points of pseudo filesystems, from /proc/mounts
+    private boolean isPseudoFs(String path) {
+        if (pseudoFsMountPoints == null) {
+            pseudoFsMountPoints = new HashSet<>(Arrays.asList("/proc","/sys","/dev")); // if mounts cannot be read
+            try (BufferedReader r = new BufferedReader(new FileReader("/proc/mounts"))) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    String[] fields = line.split(" ");
+                    if (fields.length > 2 && PSEUDO_FS_TYPES.contains(fields[2]))
+                        pseudoFsMountPoints.add(fields[1].replace("\\040"," "));
+                }
+            }
+            catch (IOException e) {
+                Log.e(getClass().getName(),"Unable to read mount points",e);
+            }
+        }
+        return pseudoFsMountPoints.contains(path);
+    }
+
+    /**
+     * @return the stats of the subtree, or null if the computation has been cancelled
+     */
+    private folderStats_resp walk(File dir, Walk w) throws IOException {
+        if (w.generation != generation) return null;
+        String path = dir.getAbsolutePath();
+        if (isPseudoFs(path)) return new folderStats_resp(0,0,0,0,0);
+        Row cached = dbHelper.load(path);
+        long mtime = dir.lastModified();
+        boolean unchanged = cached != null && mtime != 0 && cached.mtime == mtime;
+        if (unchanged && cached.subdirs == null) return cached.stats; // stat'ed as a whole, see statUnreadable
+
+        Row r;
+        if (unchanged) r = cached;
+        else {
+            File[] children = dir.listFiles();
+            if (children == null) return statUnreadable(dir,mtime,w);
+
+            r = new Row();
+            r.mtime = mtime;
+            r.checked = System.currentTimeMillis();
+            File canonicalDir = dir.getCanonicalFile();
+            List<String> subdirs = new ArrayList<>();
+            for (File c : children) {
+                if (c.isDirectory()) {
+                    r.childrenDirs++;
+                    if (!isSymlink(canonicalDir,c.getName())) subdirs.add(c.getName());
+                }
+                else {
+                    r.childrenFiles++;
+                    r.filesSize += c.length();
+                }
+            }
+            r.subdirs = subdirs.toArray(new String[0]);
+
+            // subtrees of deleted subdirectories
+            if (cached != null && cached.subdirs != null) {
+                Set<String> current = new HashSet<>(subdirs);
+                for (String name : cached.subdirs)
+                    if (!current.contains(name)) dbHelper.deleteTree(new File(dir,name).getAbsolutePath());
+            }
+        }
+
+        folderStats_resp s = new folderStats_resp(r.childrenDirs,r.childrenFiles,r.childrenDirs,r.childrenFiles,r.filesSize);
+        boolean incomplete = w.incomplete;
+        w.incomplete = false;
+        for (String name : r.subdirs) {
+            folderStats_resp cs = walk(new File(dir,name),w);
+            if (cs == null) return null;
+            s.totalDirs += cs.totalDirs;
+            s.totalFiles += cs.totalFiles;
+            s.totalSize += cs.totalSize;
+        }
+
+        // partial aggregates are not stored, and are recomputed next time
+        if (!w.incomplete && (r != cached || !sameTotals(s,cached.stats))) {
+            r.stats = s;
+            dbHelper.store(path,r);
+        }
+        w.incomplete |= incomplete;
+        return s;
+    }
+
+    private static boolean sameTotals(folderStats_resp s1, folderStats_resp s2) {
+        return s1.totalDirs == s2.totalDirs && s1.totalFiles == s2.totalFiles && s1.totalSize == s2.totalSize;
+    }
+
+    private folderStats_resp statUnreadable(File dir, long mtime, Walk w) {
+        if (!dir.exists()) { // deleted meanwhile
+            dbHelper.deleteTree(dir.getAbsolutePath());
+            return new folderStats_resp(0,0,0,0,0);
+        }
+        if (MainActivity.usingRootHelperForLocal) {
+            try {
+                folderStats_resp s = MainActivity.getRootHelperClient().statFolder(new LocalPathContent(dir.getAbsolutePath()));
+                Row r = new Row();
+                r.mtime = mtime;
+                r.checked = System.currentTimeMillis();
+                r.childrenDirs = s.childrenDirs;
+                r.childrenFiles = s.childrenFiles;
+                r.stats = s;
+                dbHelper.store(dir.getAbsolutePath(),r);
+                return s;
+            }
+            catch (IOException e) {
+                Log.e(getClass().getName(),"Unable to stat folder via roothelper: "+dir,e);
+            }
+        }
+        w.incomplete = true;
+        return new folderStats_resp(0,0,0,0,0);
+    }
+}
@@ -8,6 +8,7 @@ import java.util.List;
  * Created by pgp on 17/05/17
  *
  * MRU cache for archives' VMap representations - generic version
+ * (synchronized, archives can be listed concurrently by navigations)
  */
 
 public class GenericMRU<T,U> {
@@ -19,11 +20,11 @@ public class GenericMRU<T,U> {
     Integer currentIndex;
     public final Integer maxIndex;
 
-    public void decrementIndex() {
+    public synchronized void decrementIndex() {
         currentIndex = (currentIndex + maxIndex -1) % maxIndex;
     }
 
-    public void incrementIndex() {
+    public synchronized void incrementIndex() {
         currentIndex = (currentIndex +1) % maxIndex;
     }
 
@@ -32,7 +33,7 @@ public class GenericMRU<T,U> {
         clear();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         vMaps = new ArrayList<>();
         modified = new ArrayList<>();
         archivePaths = new ArrayList<>();
@@ -80,14 +81,14 @@ public class GenericMRU<T,U> {
         - true/false if file has/has not been modified since last entries reading
         - null if not present in MRU cache
      */
-    public Boolean hasBeenModified(T archivePath, Date modifiedDate) {
+    public synchronized Boolean hasBeenModified(T archivePath, Date modifiedDate) {
         int foundIdx = findIndex(archivePath);
         if (foundIdx < 0) return null;
         return !(modified.get(foundIdx).equals(modifiedDate));
     }
 
     // tuple {archive, vmap, date}
-    public Object[] getLatest() {
+    public synchronized Object[] getLatest() {
         return new Object[]{
                 archivePaths.get(currentIndex),
                 vMaps.get(currentIndex),
@@ -102,7 +103,7 @@ public class GenericMRU<T,U> {
     else returns null and invalidates that entry
     To be used by client in conjunction with setLatest
      */
-    public U getByPath(T archivePath, Date modifiedDate) {
+    public synchronized U getByPath(T archivePath, Date modifiedDate) {
         int foundIdx = findIndex(archivePath);
 
         if (foundIdx >= 0) { // some entry exists
@@ -126,7 +127,7 @@ public class GenericMRU<T,U> {
     }
 
     // unconditionally get by path (for extraction from within archive)
-    public U getByPath(T archivePath) {
+    public synchronized U getByPath(T archivePath) {
         int foundIdx = findIndex(archivePath);
         if (foundIdx >= 0) { // some entry exists
             // OK, no file modification, bring on top and return the vMap
@@ -142,7 +143,7 @@ public class GenericMRU<T,U> {
 
     // unconditionally set latest
     // assumed to be called after a full archive entries retrieval
-    public void setLatest(T archivePath, U vMap, Date modifiedDate) {
+    public synchronized void setLatest(T archivePath, U vMap, Date modifiedDate) {
         // find current
         int foundIdx = findIndex(archivePath);
         if (foundIdx >= 0) {
@@ -0,0 +1,66 @@
+package it.pgp.xfiles.utils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.pgp.xfiles.enums.ProviderType;
+
+/**
+ * Dedicated I/O executors for file operations, one per provider type, so that slow
+ * network providers never hold up local operations (and vice versa).
+ *
+ * Local operations can run in parallel, since every roothelper request uses its own connection;
+ * XRE operations as well, since requests are pipelined over the shared session (see RemoteManager#exchange);
+ * the other providers are served by a single thread, in order to preserve operation order
+ * over shared sessions (SFTP and SMB clients) and the archive MRU cache.
+ * Idle threads are released after {@link #KEEP_ALIVE_SECONDS}.
+ */
+
+public class IOExecutors {
+
+    private static final int LOCAL_THREADS = 4;
+    private static final int XFILES_REMOTE_THREADS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final Map<ProviderType,ExecutorService> executors = new EnumMap<>(ProviderType.class);
+
+    public static synchronized ExecutorService get(ProviderType providerType) {
+        ExecutorService e = executors.get(providerType);
+        if (e == null) {
+            e = create(providerType, getThreadCount(providerType));
+            executors.put(providerType,e);
+        }
+        return e;
+    }
+
+    private static int getThreadCount(ProviderType providerType) {
+        switch (providerType) {
+            case LOCAL:
+                return LOCAL_THREADS;
+            case XFILES_REMOTE:
+                return XFILES_REMOTE_THREADS;
+            default:
+                return 1;
+        }
+    }
+
+    private static ExecutorService create(ProviderType providerType, int nThreads) {
+        AtomicInteger threadCount = new AtomicInteger(0);
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(
+                nThreads, nThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r,"IO-"+providerType.name()+"-"+threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        tpe.allowCoreThreadTimeOut(true);
+        return tpe;
+    }
+}
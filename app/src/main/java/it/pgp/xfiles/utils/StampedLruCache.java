@@ -0,0 +1,151 @@
+package it.pgp.xfiles.utils;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-safe LRU cache for data derived from files (e.g. archive indexes), replacing {@link GenericMRU}.
+ *
+ * Bounded by the estimated memory weight of its values rather than by entry count (see {@link Weigher}),
+ * entries are validated against a modification stamp of their source (e.g. the archive mtime) on lookup,
+ * and stale ones are dropped. Hit, miss and eviction counters are those of the underlying {@link LruCache}.
+ * A value heavier than the whole cache is not put in it (it would evict all the other entries, then itself),
+ * but the last one is retained apart, so that the data in use (e.g. the index of the archive being browsed) stays available.
+ * All instances shrink on memory pressure signals (see {@link #onTrimMemory}).
+ */
+
+public class StampedLruCache<K,V> {
+
+    public interface Weigher<V> {
+        // in bytes, estimated
+        long getWeight(V value);
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long stamp;
+        final int weightKb;
+
+        Entry(V value, long stamp, int weightKb) {
+            this.value = value;
+            this.stamp = stamp;
+            this.weightKb = weightKb;
+        }
+    }
+
+    private static final List<StampedLruCache<?,?>> instances = new ArrayList<>();
+
+    private final String name;
+    private final LruCache<K,Entry<V>> cache;
+    private final Weigher<V> weigher;
+
+    // the last value heavier than the whole cache, guarded by this
+    private K oversizedKey;
+    private Entry<V> oversized;
+
+    /**
+     * @param maxWeightBytes the total estimated weight of the entries
+     */
+    public StampedLruCache(String name, long maxWeightBytes, Weigher<V> weigher) {
+        this.name = name;
+        this.weigher = weigher;
+        cache = new LruCache<K,Entry<V>>((int)Math.max(1,maxWeightBytes/1024)) {
+            @Override
+            protected int sizeOf(K key, Entry<V> value) {
+                return value.weightKb;
+            }
+        };
+        synchronized (instances) {
+            instances.add(this);
+        }
+    }
+
+    /**
+     * @return the value, if present and with the same stamp, else null
+     */
+    public V get(K key, long stamp) {
+        Entry<V> e = lookup(key);
+        if (e == null) return null;
+        if (e.stamp != stamp) {
+            remove(key);
+            return null;
+        }
+        return e.value;
+    }
+
+    /**
+     * @return the value regardless of its stamp, for callers that already validated it (e.g. browsing within an archive)
+     */
+    public V get(K key) {
+        Entry<V> e = lookup(key);
+        return e == null ? null : e.value;
+    }
+
+    private Entry<V> lookup(K key) {
+        synchronized (this) {
+            if (oversized != null && oversizedKey.equals(key)) return oversized;
+        }
+        return cache.get(key);
+    }
+
+    public void put(K key, V value, long stamp) {
+        long weightKb = Math.max(1,weigher.getWeight(value)/1024);
+        Entry<V> e = new Entry<>(value,stamp,(int)Math.min(weightKb,Integer.MAX_VALUE));
+        if (weightKb > cache.maxSize()) {
+            cache.remove(key); // previous value, if any
+            synchronized (this) {
+                oversizedKey = key;
+                oversized = e;
+            }
+            Log.d(getClass().getName(),name+": retaining apart value of "+weightKb+" KB, heavier than the cache");
+            return;
+        }
+        removeOversized(key);
+        cache.put(key,e);
+    }
+
+    private synchronized void removeOversized(K key) {
+        if (oversized != null && (key == null || oversizedKey.equals(key))) {
+            oversizedKey = null;
+            oversized = null;
+        }
+    }
+
+    public void remove(K key) {
+        removeOversized(key);
+        cache.remove(key);
+    }
+
+    public void clear() {
+        removeOversized(null);
+        cache.evictAll();
+    }
+
+    public String getStats() {
+        return name+": "+cache.size()+"/"+cache.maxSize()+" KB, hits: "+cache.hitCount()+
+                ", misses: "+cache.missCount()+", evictions: "+cache.evictionCount();
+    }
+
+    private void trim(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+            clear();
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+            cache.trimToSize(cache.maxSize()/2);
+        Log.d(getClass().getName(),"onTrimMemory("+level+") "+getStats());
+    }
+
+    /**
+     * To be called from {@link ComponentCallbacks2#onTrimMemory}, shrinks all the caches
+     */
+    public static void onTrimMemory(int level) {
+        synchronized (instances) {
+            for (StampedLruCache<?,?> c : instances) c.trim(level);
+        }
+    }
+}
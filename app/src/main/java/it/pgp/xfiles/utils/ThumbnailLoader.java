@@ -0,0 +1,224 @@
+package it.pgp.xfiles.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ThumbnailUtils;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.util.LruCache;
+import android.webkit.MimeTypeMap;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.pgp.xfiles.io.RobustLocalFileInputStream;
+
+/**
+ * Asynchronous thumbnails of local images and videos, for the grid browser view.
+ *
+ * Thumbnails are decoded by a bounded pool, downsampled at decode time (see {@link BitmapFactory.Options#inSampleSize}),
+ * and cached both in memory (LRU bounded by bitmap bytes) and on disk, under the app cache directory,
+ * keyed by path, size and mtime, so that modified files get new thumbnails (at most {@link #DISK_CACHE_MAX_FILES}, trimmed at startup).
+ * Images not readable by the app are read via roothelper (see {@link RobustLocalFileInputStream}).
+ *
+ * Requests are bound to image views: a new request for a recycled view (i.e. scrolled off-screen) cancels
+ * the previous one, and results are delivered only if the view is still waiting for them.
+ * To be called from the UI thread only.
+ */
+
+public class ThumbnailLoader {
+
+    public static final int THUMBNAIL_SIZE_PX = 192;
+    private static final int DECODE_THREADS = 2;
+    private static final int JPEG_QUALITY = 85;
+    private static final String DISK_CACHE_DIR = "thumbnails";
+    private static final int DISK_CACHE_MAX_FILES = 4096;
+
+    private static final int NONE = 0, IMAGE = 1, VIDEO = 2;
+
+    private static ThumbnailLoader instance;
+
+    public static ThumbnailLoader getInstance(Context context) {
+        if (instance == null) instance = new ThumbnailLoader(context.getApplicationContext());
+        return instance;
+    }
+
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final File diskCacheDir;
+    private final LruCache<String,Bitmap> memoryCache;
+    private final ThreadPoolExecutor decodePool;
+    private final Map<ImageView,Future<?>> pending = new WeakHashMap<>();
+    private final Map<String,Integer> kindsByExt = new HashMap<>(); // by interned extension, see BrowserItem#getFileExt
+
+    private ThumbnailLoader(Context context) {
+        diskCacheDir = new File(context.getCacheDir(),DISK_CACHE_DIR);
+        diskCacheDir.mkdirs();
+
+        int maxKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+        memoryCache = new LruCache<String,Bitmap>(maxKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount() / 1024;
+            }
+        };
+
+        AtomicInteger threadCount = new AtomicInteger(0);
+        decodePool = new ThreadPoolExecutor(
+                DECODE_THREADS, DECODE_THREADS,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r,"Thumbnail-"+threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        decodePool.allowCoreThreadTimeOut(true);
+        decodePool.execute(this::trimDiskCache);
+    }
+
+    // least recently written thumbnails are evicted first
+    private void trimDiskCache() {
+        File[] files = diskCacheDir.listFiles();
+        if (files == null || files.length <= DISK_CACHE_MAX_FILES) return;
+        Arrays.sort(files,(f1,f2) -> Long.compare(f1.lastModified(),f2.lastModified()));
+        for (int i=0;i<files.length-DISK_CACHE_MAX_FILES;i++) files[i].delete();
+    }
+
+    private int getKind(String ext) {
+        Integer kind = kindsByExt.get(ext);
+        if (kind == null) {
+            String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext.toLowerCase());
+            if (mimeType == null) kind = NONE;
+            else if (mimeType.startsWith("image/")) kind = IMAGE;
+            else if (mimeType.startsWith("video/")) kind = VIDEO;
+            else kind = NONE;
+            kindsByExt.put(ext,kind);
+        }
+        return kind;
+    }
+
+    public boolean hasThumbnail(String ext) {
+        return getKind(ext) != NONE;
+    }
+
+    /**
+     * Cancels the pending request of the view, if any; to be called when the view is bound to an item without thumbnail
+     */
+    public void cancel(ImageView imageView) {
+        Future<?> f = pending.remove(imageView);
+        if (f != null) f.cancel(true);
+    }
+
+    /**
+     * Shows the thumbnail of a local file in the view, once available; the view should already show a placeholder icon
+     */
+    public void load(ImageView imageView, String path, String ext, long size, long mtime) {
+        cancel(imageView);
+        final String key = path+"|"+size+"|"+mtime;
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            imageView.setImageBitmap(cached);
+            return;
+        }
+        final int kind = getKind(ext);
+        if (kind == NONE) return;
+
+        final Future<?>[] self = new Future<?>[1];
+        self[0] = decodePool.submit(() -> {
+            Bitmap b = loadFromDisk(key);
+            if (b == null) {
+                b = (kind == IMAGE) ? decodeImage(path) : decodeVideo(path);
+                if (b == null) return;
+                storeToDisk(key,b);
+            }
+            if (Thread.currentThread().isInterrupted()) return;
+            final Bitmap thumbnail = b;
+            uiHandler.post(() -> {
+                memoryCache.put(key,thumbnail);
+                if (pending.get(imageView) != self[0]) return; // view recycled meanwhile
+                pending.remove(imageView);
+                imageView.setImageBitmap(thumbnail);
+            });
+        });
+        pending.put(imageView,self[0]);
+    }
+
+    private static int getSampleSize(int width, int height) {
+        int sampleSize = 1;
+        while (width/(sampleSize*2) >= THUMBNAIL_SIZE_PX && height/(sampleSize*2) >= THUMBNAIL_SIZE_PX)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    private static Bitmap decodeImage(String path) {
+        try {
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inJustDecodeBounds = true;
+            try (InputStream i = new RobustLocalFileInputStream(path)) {
+                BitmapFactory.decodeStream(i,null,opts);
+            }
+            if (opts.outWidth <= 0 || opts.outHeight <= 0) return null;
+
+            opts.inJustDecodeBounds = false;
+            opts.inSampleSize = getSampleSize(opts.outWidth,opts.outHeight);
+            Bitmap b;
+            try (InputStream i = new RobustLocalFileInputStream(path)) {
+                b = BitmapFactory.decodeStream(i,null,opts);
+            }
+            if (b == null) return null;
+            return ThumbnailUtils.extractThumbnail(b,THUMBNAIL_SIZE_PX,THUMBNAIL_SIZE_PX,ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
+        }
+        catch (IOException e) {
+            Log.e(ThumbnailLoader.class.getName(),"Unable to decode thumbnail of "+path,e);
+            return null;
+        }
+    }
+
+    // the media retriever needs direct access to the file, videos readable only via roothelper have no thumbnail
+    private static Bitmap decodeVideo(String path) {
+        if (!new File(path).canRead()) return null;
+        Bitmap b = ThumbnailUtils.createVideoThumbnail(path,MediaStore.Images.Thumbnails.MINI_KIND);
+        if (b == null) return null;
+        return ThumbnailUtils.extractThumbnail(b,THUMBNAIL_SIZE_PX,THUMBNAIL_SIZE_PX,ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
+    }
+
+    private File getDiskCacheFile(String key) {
+        return new File(diskCacheDir,Checksums.sha1Hex(key));
+    }
+
+    private Bitmap loadFromDisk(String key) {
+        File f = getDiskCacheFile(key);
+        return f.exists() ? BitmapFactory.decodeFile(f.getAbsolutePath()) : null;
+    }
+
+    private void storeToDisk(String key, Bitmap b) {
+        File f = getDiskCacheFile(key);
+        File tmp = new File(f.getAbsolutePath()+".tmp");
+        try (OutputStream o = new FileOutputStream(tmp)) {
+            b.compress(Bitmap.CompressFormat.JPEG,JPEG_QUALITY,o);
+        }
+        catch (IOException e) {
+            Log.e(getClass().getName(),"Unable to store thumbnail in disk cache",e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(f)) tmp.delete();
+    }
+}
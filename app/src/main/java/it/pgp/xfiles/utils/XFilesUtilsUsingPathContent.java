@@ -32,6 +32,7 @@ import it.pgp.xfiles.service.CompressTask;
 import it.pgp.xfiles.service.ExtractTask;
 import it.pgp.xfiles.utils.dircontent.GenericDirWithContent;
 import it.pgp.xfiles.utils.dircontent.LocalDirWithContent;
+import it.pgp.xfiles.utils.dircontent.ProgressiveListing;
 import it.pgp.xfiles.utils.pathcontent.BasePathContent;
 import it.pgp.xfiles.utils.pathcontent.LocalPathContent;
 import it.pgp.xfiles.utils.pathcontent.XFilesRemotePathContent;
@@ -41,7 +42,7 @@ import it.pgp.xfiles.utils.pathcontent.XFilesRemotePathContent;
  */
 
 // Java-only equivalent to RootHelperClient (in final implementation, these classes should implement the common interface FileOperationHelper)
-public class XFilesUtilsUsingPathContent implements FileOperationHelperUsingPathContent {
+public class XFilesUtilsUsingPathContent implements AsyncFileOperationHelperUsingPathContent {
 
     // for publishing progress from within a long term task (copy/move/compress/extract/upload/download)
     BaseBackgroundTask task;
@@ -295,18 +296,59 @@ public class XFilesUtilsUsingPathContent implements FileOperationHelperUsingPath
 
     @Override
     public GenericDirWithContent listDirectory(BasePathContent directory) {
+        return listDirectory(directory,0);
+    }
+
+    private static BrowserItem statForListing(File f) {
+        return new BrowserItem(f.getName(),f.length(),f.lastModified(),f.isDirectory(), Native.isSymLink(f.getAbsolutePath())>0); // getCanonicalPath not enough to fully determine symlink attribute (files in symlinked folders), and Files.isSymbolicLink is available only with minAPI >= 26
+    }
+
+    /**
+     * Names are read at once, the expensive part is stat-ing every entry,
+     * so entries after the first batch are stat-ed while being consumed
+     */
+    private static class FileListing extends ProgressiveListing {
+        private final File[] content;
+        private int next;
+
+        FileListing(File[] content, int next) {
+            this.content = content;
+            this.next = next;
+        }
+
+        @Override
+        public List<BrowserItem> nextBatch(int maxItems) {
+            List<BrowserItem> batch = new ArrayList<>();
+            for (; next < content.length && batch.size() < maxItems; next++)
+                batch.add(statForListing(content[next]));
+            complete = next == content.length;
+            return batch;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * @param firstBatchSize if greater than 0, only the first firstBatchSize entries are stat-ed,
+     *                       the remaining ones are left to the returned {@link GenericDirWithContent#remaining}
+     */
+    public GenericDirWithContent listDirectory(BasePathContent directory, int firstBatchSize) {
         if (directory instanceof XFilesRemotePathContent)
             return new RootHelperClientUsingPathContent().listDirectory(directory);
         File[] content = new File(directory.dir).listFiles();
         if (content == null) return new LocalDirWithContent(FileOpsErrorCodes.COMMANDER_CANNOT_ACCESS); // TODO specialize error code (enum to be created) in callers from dir commander
+        int n = (firstBatchSize > 0) ? Math.min(firstBatchSize,content.length) : content.length;
         ArrayList<BrowserItem> l = new ArrayList<>();
-        for (File f : content) {
-            l.add(new BrowserItem(f.getName(),f.length(),new Date(f.lastModified()),f.isDirectory(), Native.isSymLink(f.getAbsolutePath())>0)); // getCanonicalPath not enough to fully determine symlink attribute (files in symlinked folders), and Files.isSymbolicLink is available only with minAPI >= 26
+        for (int i=0;i<n;i++) {
+            l.add(statForListing(content[i]));
         }
 
         // successful return, change current helper
-        MainActivity.currentHelper = MainActivity.xFilesUtils; // or = this
-        return new LocalDirWithContent(directory.dir, l);
+        MainActivity.setCurrentHelperOnListing(MainActivity.xFilesUtils); // or = this
+        LocalDirWithContent dwc = new LocalDirWithContent(directory.dir, l);
+        if (n < content.length) dwc.remaining = new FileListing(content,n);
+        return dwc;
     }
 
     @Override
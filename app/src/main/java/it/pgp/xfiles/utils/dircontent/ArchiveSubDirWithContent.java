@@ -6,6 +6,7 @@ import it.pgp.xfiles.BrowserItem;
 import it.pgp.xfiles.enums.FileOpsErrorCodes;
 import it.pgp.xfiles.enums.ProviderType;
 import it.pgp.xfiles.sftpclient.AuthData;
+import it.pgp.xfiles.utils.ArchiveIndex;
 
 /**
  * Created by pgp on 13/05/17
@@ -14,6 +15,7 @@ import it.pgp.xfiles.sftpclient.AuthData;
 public class ArchiveSubDirWithContent extends GenericDirWithContent {
 
     public String archivePath; // archive absolute pathname in the local filesystem
+    public ArchiveIndex index; // the one the content has been listed from, null for streamed listings
 
     public ArchiveSubDirWithContent(String archivePath, String dir, List<BrowserItem> content) {
         super(dir, content);
@@ -28,6 +28,11 @@ public class GenericDirWithContent {
     public FileOpsErrorCodes errorCode; // null on success, errno-equivalent or descriptive commander error otherwise
     public Integer listViewPosition;
 
+    // not null when content holds only the first entries of a listing still being received
+    public ProgressiveListing remaining;
+
+    public boolean cached; // served from ListingCache
+
     public GenericDirWithContent(String dir, List<BrowserItem> content) {
         this.dir = dir;
         this.content = content;
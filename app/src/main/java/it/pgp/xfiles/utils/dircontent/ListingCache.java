@@ -0,0 +1,159 @@
+package it.pgp.xfiles.utils.dircontent;
+
+import android.os.FileObserver;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.pgp.xfiles.BrowserItem;
+import it.pgp.xfiles.MainActivity;
+import it.pgp.xfiles.enums.ProviderType;
+import it.pgp.xfiles.utils.pathcontent.BasePathContent;
+
+/**
+ * Bounded LRU cache of complete directory listings, keyed by path, for instantaneous back and forward navigation.
+ *
+ * Entries of local directories readable by the app are valid until a change is observed, either by an
+ * inotify watch ({@link FileObserver}) or by a directory mtime different from the one at listing time;
+ * entries of remote directories, and of local ones that cannot be watched (e.g. listed via roothelper),
+ * expire after a TTL, configurable via the {@link #TTL_PREF_KEY} shared preference (seconds).
+ * Archive listings are not cached, since they are already served from the in-memory archive index.
+ *
+ * Items are copied both on put and on get, since displayed items are sorted in place.
+ */
+
+public class ListingCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 16;
+    public static final String TTL_PREF_KEY = "LISTING_CACHE_TTL";
+    public static final long DEFAULT_TTL_S = 30;
+
+    private static final int WATCHED_EVENTS =
+            FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM | FileObserver.MOVED_TO |
+            FileObserver.MODIFY | FileObserver.ATTRIB | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    private class Entry {
+        final List<BrowserItem> content;
+        final long createdAt = SystemClock.elapsedRealtime();
+        final long mtime; // local only
+        final FileObserver observer; // null if not watched
+
+        Entry(BasePathContent dir, List<BrowserItem> content) {
+            this.content = content;
+            File f = new File(dir.dir);
+            if (dir.providerType == ProviderType.LOCAL && f.canRead()) {
+                mtime = f.lastModified();
+                observer = new FileObserver(dir.dir, WATCHED_EVENTS) {
+                    @Override
+                    public void onEvent(int event, @Nullable String path) {
+                        invalidate(dir,this);
+                    }
+                };
+                observer.startWatching();
+            }
+            else {
+                mtime = 0;
+                observer = null;
+            }
+        }
+
+        boolean isValid(BasePathContent dir) {
+            if (observer != null)
+                return new File(dir.dir).lastModified() == mtime;
+            return SystemClock.elapsedRealtime() - createdAt < getTtlMs();
+        }
+
+        void release() {
+            if (observer != null) observer.stopWatching();
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<BasePathContent,Entry> entries;
+
+    public ListingCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        entries = new LinkedHashMap<BasePathContent,Entry>(maxEntries,0.75f,true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BasePathContent,Entry> eldest) {
+                if (size() <= ListingCache.this.maxEntries) return false;
+                eldest.getValue().release();
+                return true;
+            }
+        };
+    }
+
+    private static long getTtlMs() {
+        MainActivity a = MainActivity.mainActivity;
+        long ttl = (a == null || a.sharedPrefs == null) ? DEFAULT_TTL_S : a.sharedPrefs.getLong(TTL_PREF_KEY,DEFAULT_TTL_S);
+        return ttl * 1000;
+    }
+
+    public static boolean isCacheable(BasePathContent dir) {
+        return dir.providerType != null && dir.providerType != ProviderType.LOCAL_WITHIN_ARCHIVE;
+    }
+
+    private static List<BrowserItem> copy(List<BrowserItem> content) {
+        List<BrowserItem> l = new ArrayList<>(content.size());
+        for (BrowserItem b : content) l.add(new BrowserItem(b));
+        return l;
+    }
+
+    public void put(BasePathContent dir, List<BrowserItem> content) {
+        if (!isCacheable(dir)) return;
+        List<BrowserItem> c = copy(content);
+        synchronized (this) {
+            Entry old = entries.put(dir,new Entry(dir,c));
+            if (old != null) old.release();
+        }
+    }
+
+    /**
+     * @return a copy of the cached listing, or null if not cached or no longer valid
+     */
+    public List<BrowserItem> get(BasePathContent dir) {
+        Entry e;
+        synchronized (this) {
+            e = entries.get(dir);
+            if (e == null) return null;
+            if (!e.isValid(dir)) {
+                entries.remove(dir);
+                e.release();
+                return null;
+            }
+        }
+        return copy(e.content);
+    }
+
+    /**
+     * @return true if a valid listing of dir is cached
+     */
+    public synchronized boolean contains(BasePathContent dir) {
+        Entry e = entries.get(dir);
+        return e != null && e.isValid(dir);
+    }
+
+    public synchronized void invalidate(BasePathContent dir) {
+        Entry e = entries.remove(dir);
+        if (e != null) e.release();
+    }
+
+    // called from the FileObserver thread, the entry may have been replaced meanwhile
+    private synchronized void invalidate(BasePathContent dir, FileObserver observer) {
+        Entry e = entries.get(dir);
+        if (e != null && e.observer == observer) {
+            entries.remove(dir);
+            e.release();
+        }
+    }
+
+    public synchronized void clear() {
+        for (Entry e : entries.values()) e.release();
+        entries.clear();
+    }
+}
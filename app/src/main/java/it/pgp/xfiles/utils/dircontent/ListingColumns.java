@@ -0,0 +1,170 @@
+package it.pgp.xfiles.utils.dircontent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.pgp.xfiles.BrowserItem;
+import it.pgp.xfiles.SortingItem;
+import it.pgp.xfiles.comparators.AdvancedComparator;
+import it.pgp.xfiles.comparators.FilenameSortKey;
+import it.pgp.xfiles.enums.ComparatorField;
+import it.pgp.xfiles.exceptions.InvalidComparatorFieldException;
+
+/**
+ * Columnar view of a listing, for sorting: effective size and mtime in primitive arrays, directory and link
+ * flags in a byte array, extensions as ids ranked by extension order, and the precomputed filename sort keys;
+ * listings are sorted by permuting row indexes with a stable merge sort over these columns, then reordered
+ * once, instead of comparing {@link BrowserItem} objects field by field.
+ * The order is the same as the one of {@link AdvancedComparator} with the same attributes, so that it can be
+ * used for merging further entries (see progressive listings).
+ *
+ * Scope: rows are still {@link BrowserItem} objects, since adapters, selection, caches and file operations
+ * all work on lists of them; columns are built per sort and not retained.
+ */
+
+public class ListingColumns {
+
+    private static final byte FLAG_DIR = 1;
+    private static final byte FLAG_LINK = 2;
+
+    // same order as FilenameComparator: directories first, then by filename
+    public static final SortingItem[] DIRS_FIRST_BY_NAME = {
+            new SortingItem(ComparatorField.DIR,true,false),
+            new SortingItem(ComparatorField.FILENAME,true,false)
+    };
+
+    private final int count;
+    private final long[] size; // effective size, see BrowserItem#getEffectiveSize
+    private final long[] mtime;
+    private final byte[] flags;
+    private final int[] extId; // rank of the extension among the distinct ones of the listing
+    private final byte[][] sortKeys;
+    private final String[] names;
+
+    // per sort
+    private ComparatorField[] fields;
+    private boolean[] reversed;
+
+    public ListingColumns(List<BrowserItem> items) {
+        count = items.size();
+        size = new long[count];
+        mtime = new long[count];
+        flags = new byte[count];
+        extId = new int[count];
+        sortKeys = new byte[count][];
+        names = new String[count];
+
+        Map<String,Integer> exts = new HashMap<>();
+        for (int i=0;i<count;i++) {
+            BrowserItem b = items.get(i);
+            size[i] = b.getEffectiveSize();
+            mtime[i] = b.mtime;
+            flags[i] = (byte)((b.isDirectory ? FLAG_DIR : 0) | (b.isLink ? FLAG_LINK : 0));
+            sortKeys[i] = b.getSortKey();
+            names[i] = b.getFilename();
+            Integer id = exts.get(b.getFileExt());
+            if (id == null) {
+                id = exts.size();
+                exts.put(b.getFileExt(),id);
+            }
+            extId[i] = id;
+        }
+
+        // from order of first appearance to order of extension
+        String[] distinct = exts.keySet().toArray(new String[0]);
+        Arrays.sort(distinct);
+        int[] rank = new int[distinct.length];
+        for (int r=0;r<distinct.length;r++) rank[exts.get(distinct[r])] = r;
+        for (int i=0;i<count;i++) extId[i] = rank[extId[i]];
+    }
+
+    private int compare(int a, int b) {
+        int c = 0;
+        for (int k=0;k<fields.length;k++) {
+            switch (fields[k]) {
+                case FILENAME:
+                    c = FilenameSortKey.compare(sortKeys[a],sortKeys[b]);
+                    if (c == 0) c = names[a].compareTo(names[b]);
+                    break;
+                case DATE:
+                    c = Long.compare(mtime[a],mtime[b]);
+                    break;
+                case SIZE:
+                    c = Long.compare(size[a],size[b]);
+                    break;
+                case TYPE:
+                    c = Integer.compare(extId[a],extId[b]);
+                    break;
+                case DIR: // directories first, unless reversed
+                    c = Integer.compare(flags[b] & FLAG_DIR,flags[a] & FLAG_DIR);
+                    break;
+                default:
+                    throw new InvalidComparatorFieldException();
+            }
+            if (reversed[k]) c = -c;
+            if (c != 0) return c;
+        }
+        return c;
+    }
+
+    /**
+     * @return the row indexes in sorted order, ties keep their original order
+     */
+    public int[] sortedPermutation(SortingItem... attributes) {
+        fields = new ComparatorField[attributes.length];
+        reversed = new boolean[attributes.length];
+        for (int k=0;k<attributes.length;k++) {
+            fields[k] = attributes[k].comparatorField;
+            reversed[k] = attributes[k].isReversed();
+        }
+        int[] perm = new int[count];
+        for (int i=0;i<count;i++) perm[i] = i;
+        mergeSort(perm,perm.clone(),0,count);
+        return perm;
+    }
+
+    // sorts src[from,to) into dst[from,to), src and dst initially equal in that range
+    private void mergeSort(int[] dst, int[] src, int from, int to) {
+        if (to - from < 16) { // insertion sort
+            for (int i=from+1;i<to;i++) {
+                int x = dst[i];
+                int j = i-1;
+                while (j >= from && compare(dst[j],x) > 0) {
+                    dst[j+1] = dst[j];
+                    j--;
+                }
+                dst[j+1] = x;
+            }
+            return;
+        }
+        int mid = (from+to) >>> 1;
+        mergeSort(src,dst,from,mid);
+        mergeSort(src,dst,mid,to);
+        if (compare(src[mid-1],src[mid]) <= 0) { // already in order
+            System.arraycopy(src,from,dst,from,to-from);
+            return;
+        }
+        for (int i=from,p=from,q=mid;i<to;i++) {
+            if (q >= to || (p < mid && compare(src[p],src[q]) <= 0)) dst[i] = src[p++];
+            else dst[i] = src[q++];
+        }
+    }
+
+    /**
+     * Sorts the listing in place, in the order of {@link AdvancedComparator} with the same attributes
+     * @return the new positions of the entries, by old position
+     */
+    public static int[] sort(List<BrowserItem> items, SortingItem... attributes) {
+        int[] perm = new ListingColumns(items).sortedPermutation(attributes);
+        List<BrowserItem> unsorted = new ArrayList<>(items);
+        int[] newPositions = new int[perm.length];
+        for (int i=0;i<perm.length;i++) {
+            items.set(i,unsorted.get(perm[i]));
+            newPositions[perm[i]] = i;
+        }
+        return newPositions;
+    }
+}
@@ -0,0 +1,190 @@
+package it.pgp.xfiles.utils.dircontent;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import it.pgp.xfiles.MainActivity;
+import it.pgp.xfiles.roothelperclient.RootHelperClientUsingPathContent;
+import it.pgp.xfiles.utils.pathcontent.BasePathContent;
+
+/**
+ * Speculative listing of the directories most likely to be visited next, fed into the {@link ListingCache}.
+ *
+ * Visited directories are recorded with visit count and last visit time; once the user has stayed
+ * in a directory for {@link #IDLE_DELAY_MS}, its parent and its most visited (recently, see {@link #score})
+ * subdirectories are listed, at most {@link #MAX_CANDIDATES} of them, one at a time, on a low-priority thread.
+ * Only remote directories are prefetched (local listings are fast anyway); prefetches are limited
+ * to {@link #MAX_PREFETCHES_PER_MINUTE}, and listings with more than {@link #MAX_PREFETCH_ENTRIES} are not cached.
+ * Pending prefetches are discarded on navigation.
+ */
+
+public class ListingPrefetcher {
+
+    public static final long IDLE_DELAY_MS = 1000;
+    public static final int MAX_CANDIDATES = 3;
+    public static final int MAX_PREFETCHES_PER_MINUTE = 10;
+    public static final int MAX_PREFETCH_ENTRIES = 5000;
+    private static final int MAX_HISTORY_ENTRIES = 256;
+
+    private static class Visit {
+        int count;
+        long last; // elapsed realtime
+    }
+
+    private static final ThreadLocal<Boolean> prefetching = new ThreadLocal<>();
+
+    /**
+     * @return true if called from a prefetch listing, that must not change the current helper of the displayed directory
+     */
+    public static boolean isPrefetching() {
+        return prefetching.get() != null;
+    }
+
+    private final ListingCache cache;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r,"ListingPrefetcher");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // accessed from the UI thread only
+    private final LinkedHashMap<BasePathContent,Visit> visits = new LinkedHashMap<BasePathContent,Visit>(16,0.75f,true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BasePathContent,Visit> eldest) {
+            return size() > MAX_HISTORY_ENTRIES;
+        }
+    };
+    private Runnable pending;
+
+    private volatile int generation; // prefetches of previous directories are discarded
+    private final ArrayDeque<Long> recentPrefetches = new ArrayDeque<>(); // prefetcher thread only
+
+    public ListingPrefetcher(ListingCache cache) {
+        this.cache = cache;
+    }
+
+    public static boolean isPrefetchable(BasePathContent dir) {
+        if (dir.providerType == null) return false;
+        switch (dir.providerType) {
+            case XFILES_REMOTE:
+            case SFTP:
+            case SMB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // visit frequency, decaying with the time since the last visit
+    private static double score(Visit v, long now) {
+        double ageMinutes = (now - v.last) / 60000.0;
+        return v.count / (1.0 + ageMinutes);
+    }
+
+    /**
+     * To be called on the UI thread on each successful navigation
+     */
+    public void onVisit(BasePathContent dir) {
+        Visit v = visits.get(dir);
+        if (v == null) {
+            v = new Visit();
+            visits.put(dir,v);
+        }
+        v.count++;
+        v.last = SystemClock.elapsedRealtime();
+
+        cancel();
+        if (!isPrefetchable(dir)) return;
+        final int g = generation;
+        pending = () -> {
+            pending = null;
+            List<BasePathContent> candidates = getCandidates(dir);
+            if (!candidates.isEmpty()) executor.execute(() -> prefetch(candidates,g));
+        };
+        uiHandler.postDelayed(pending,IDLE_DELAY_MS);
+    }
+
+    public void cancel() {
+        generation++;
+        if (pending != null) {
+            uiHandler.removeCallbacks(pending);
+            pending = null;
+        }
+    }
+
+    private List<BasePathContent> getCandidates(BasePathContent dir) {
+        long now = SystemClock.elapsedRealtime();
+        List<BasePathContent> subdirs = new ArrayList<>();
+        for (BasePathContent p : visits.keySet()) {
+            BasePathContent parent = p.getParent();
+            if (parent != null && parent.equals(dir)) subdirs.add(p);
+        }
+        Collections.sort(subdirs,(d1,d2) -> Double.compare(score(visits.get(d2),now),score(visits.get(d1),now)));
+
+        List<BasePathContent> candidates = new ArrayList<>();
+        BasePathContent parent = dir.getParent();
+        if (parent != null && !parent.equals(dir)) candidates.add(parent);
+        for (BasePathContent d : subdirs) {
+            if (candidates.size() >= MAX_CANDIDATES) break;
+            candidates.add(d);
+        }
+        return candidates;
+    }
+
+    // sliding window of one minute
+    private boolean acquirePrefetchSlot() {
+        long now = SystemClock.elapsedRealtime();
+        while (!recentPrefetches.isEmpty() && now - recentPrefetches.peekFirst() > 60000)
+            recentPrefetches.pollFirst();
+        if (recentPrefetches.size() >= MAX_PREFETCHES_PER_MINUTE) return false;
+        recentPrefetches.addLast(now);
+        return true;
+    }
+
+    private static GenericDirWithContent list(BasePathContent dir) {
+        switch (dir.providerType) {
+            case XFILES_REMOTE:
+                return (MainActivity.usingRootHelperForLocal ?
+                        MainActivity.getRootHelperClient() : new RootHelperClientUsingPathContent()).listDirectory(dir);
+            case SFTP:
+                return MainActivity.sftpProvider.listDirectory(dir);
+            case SMB:
+                return MainActivity.smbProvider.listDirectory(dir);
+            default:
+                return null;
+        }
+    }
+
+    private void prefetch(List<BasePathContent> candidates, int g) {
+        prefetching.set(true);
+        try {
+            for (BasePathContent dir : candidates) {
+                if (g != generation) return;
+                if (cache.contains(dir)) continue;
+                if (!acquirePrefetchSlot()) return;
+                GenericDirWithContent dwc = list(dir);
+                if (dwc == null || dwc.errorCode != null || dwc.content == null) continue;
+                if (dwc.content.size() <= MAX_PREFETCH_ENTRIES) cache.put(dir,dwc.content);
+            }
+        }
+        catch (Exception e) {
+            Log.e(getClass().getName(),"Error during listing prefetch",e);
+        }
+        finally {
+            prefetching.remove();
+        }
+    }
+}
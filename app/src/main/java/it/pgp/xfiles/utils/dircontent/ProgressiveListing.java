@@ -0,0 +1,34 @@
+package it.pgp.xfiles.utils.dircontent;
+
+import java.io.IOException;
+import java.util.List;
+
+import it.pgp.xfiles.BrowserItem;
+
+/**
+ * Remaining part of a streamed directory listing, whose first entries have already been
+ * returned in {@link GenericDirWithContent#content} in order to be displayed immediately;
+ * to be consumed off the UI thread, see {@link GenericDirWithContent#remaining}
+ */
+
+public abstract class ProgressiveListing implements AutoCloseable {
+
+    public static final int FIRST_BATCH_SIZE = 100; // about a screenful of entries, for first paint
+    public static final int BATCH_SIZE = 1000;
+
+    protected boolean complete = false;
+
+    /**
+     * Reads up to maxItems entries, blocking; before completion, implementations may return fewer
+     * entries, or none, in order to bound the time spent in a call
+     */
+    public abstract List<BrowserItem> nextBatch(int maxItems) throws IOException;
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // releases underlying resources, also when the listing is abandoned before completion
+    @Override
+    public abstract void close();
+}
@@ -25,12 +25,9 @@ public class CopyMoveList {
         this.parentDir = parentDir;
         this.files = new ArrayList<>();
 
-        for(int i=0 ; i<ba.getCount() ; i++) {
-            BrowserItem b = ba.getItem(i);
-            if (b.isChecked()) {
-                File f = new File(this.parentDir,b.getFilename());
-                this.files.add(f);
-            }
+        for (BrowserItem b : ba.getSelectedItems()) {
+            File f = new File(this.parentDir,b.getFilename());
+            this.files.add(f);
         }
     }
 
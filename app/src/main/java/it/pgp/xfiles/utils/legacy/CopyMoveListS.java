@@ -28,11 +28,8 @@ public class CopyMoveListS implements Iterable<String> {
         this.providerType = providerType;
         this.files = new ArrayList<>();
 
-        for(int i=0 ; i<ba.getCount() ; i++) {
-            BrowserItem b = ba.getItem(i);
-            if (b.isChecked()) {
-                this.files.add(b.getFilename());
-            }
+        for (BrowserItem b : ba.getSelectedItems()) {
+            this.files.add(b.getFilename());
         }
     }
 
@@ -30,9 +30,9 @@ public class MultiAttributeComparator implements Comparator<BrowserItem> {
                 case FILENAME:
                     return o1.getFilename().compareTo(o2.getFilename());
                 case DATE:
-                    return o1.date.compareTo(o2.date);
+                    return Long.compare(o1.mtime,o2.mtime);
                 case SIZE:
-                    return o1.size.compareTo(o2.size);
+                    return Long.compare(o1.size,o2.size);
                 case TYPE:
                     return o1.getFileExt().compareTo(o2.getFileExt());
                 default:
@@ -48,13 +48,13 @@ public class MultiAttributeComparator implements Comparator<BrowserItem> {
                     else return -1;
                 case DATE:
                     if ((o1.isDirectory && o2.isDirectory)||(!o1.isDirectory && !o2.isDirectory)) {
-                        return o1.date.compareTo(o2.date); // both files or both dirs
+                        return Long.compare(o1.mtime,o2.mtime); // both files or both dirs
                     }
                     else if (!o1.isDirectory && o2.isDirectory) return 1;
                     else return -1;
                 case SIZE:
                     if ((o1.isDirectory && o2.isDirectory)||(!o1.isDirectory && !o2.isDirectory)) {
-                        return o1.size.compareTo(o2.size); // both files or both dirs
+                        return Long.compare(o1.size,o2.size); // both files or both dirs
                     }
                     else if (!o1.isDirectory && o2.isDirectory) return 1;
                     else return -1;
@@ -25,11 +25,8 @@ public class RelCopyMoveList {
         this.parentDir = parentDir;
         this.files = new ArrayList<>();
 
-        for(int i=0 ; i<ba.getCount() ; i++) {
-            BrowserItem b = ba.getItem(i);
-            if (b.isChecked()) {
-                this.files.add(b.getFilename()); // on first level, only one file name without slashes
-            }
+        for (BrowserItem b : ba.getSelectedItems()) {
+            this.files.add(b.getFilename()); // on first level, only one file name without slashes
         }
     }
 